@@ -0,0 +1,282 @@
+package io.nessus.indy.utils;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseResponseResult;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded LRU cache for immutable ledger artifacts, keyed by ledger id.
+ *
+ * Schemas, credential definitions and revocation registry definitions cannot change once they are on the ledger.
+ * The cache holds the parsed object json as returned by {@link ParseResponseResult#getObjectJson()}.
+ *
+ * An optional {@link DiskArtifactStore} acts as second tier, which serves artifacts across process restarts.
+ * Concurrent loads of the same missing artifact are coalesced into a single ledger read.
+ *
+ * A load reads and writes the disk tier on a thread of the cache, so that it does not block the caller or the
+ * libindy callback thread. Plain gets and puts access the disk tier on the calling thread.
+ * Close the cache before its store, so that the queued writes reach the disk.
+ */
+public class ArtifactCache implements AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private static final ArtifactCache INSTANCE = new ArtifactCache(DEFAULT_CAPACITY);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final Map<String, String> entries;
+	private final SingleFlight<String, String> loads = new SingleFlight<>();
+	private final DiskArtifactStore store;
+	private final ExecutorService diskExecutor;
+	private final int capacity;
+	private volatile IndyClient poolClient;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public ArtifactCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * @param store the disk tier, or null for a heap only cache
+	 */
+	public ArtifactCache(int capacity, DiskArtifactStore store) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.capacity = capacity;
+		this.store = store;
+		this.diskExecutor = store != null ? Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "ArtifactCache-" + store.getFile().getName());
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+		this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				boolean evict = size() > ArtifactCache.this.capacity;
+				if (evict) evictions.incrementAndGet();
+				return evict;
+			}
+		};
+	}
+
+	public static ArtifactCache getDefault() {
+		return INSTANCE;
+	}
+
+	public DiskArtifactStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Get the cached object json for the given ledger id, or null.
+	 */
+	public String get(String id) {
+		String json = getCached(id);
+		if (json == null) {
+			json = readStore(id);
+		}
+		if (json == null) {
+			misses.incrementAndGet();
+		}
+		return json;
+	}
+
+	public void put(String id, String json) {
+		synchronized (entries) {
+			entries.put(id, json);
+		}
+		writeStore(id, json);
+	}
+
+	/**
+	 * Get the cached object json for the given ledger id, or load and cache it on a miss.
+	 *
+	 * Concurrent callers that miss on the same id share the one load that is in flight.
+	 */
+	public CompletableFuture<String> load(String id, Supplier<CompletableFuture<String>> loader) {
+		String json = getCached(id);
+		if (json != null)
+			return CompletableFuture.completedFuture(json);
+		if (store == null)
+			return loads.execute(id, () -> loadFromLedger(id, loader));
+		return loads.execute(id, () -> CompletableFuture.supplyAsync(() -> readStore(id), diskExecutor)
+				.thenCompose(stored -> stored != null ? CompletableFuture.completedFuture(stored) : loadFromLedger(id, loader)));
+	}
+
+	private CompletableFuture<String> loadFromLedger(String id, Supplier<CompletableFuture<String>> loader) {
+		misses.incrementAndGet();
+		return loader.get().thenApply(val -> {
+			synchronized (entries) {
+				entries.put(id, val);
+			}
+			if (store != null) {
+				diskExecutor.execute(() -> writeStore(id, val));
+			}
+			return val;
+		});
+	}
+
+	// The heap tier
+	private String getCached(String id) {
+		String json;
+		synchronized (entries) {
+			json = entries.get(id);
+		}
+		if (json != null) {
+			hits.incrementAndGet();
+		}
+		return json;
+	}
+
+	// The disk tier, a hit also goes to the heap tier
+	private String readStore(String id) {
+		if (store == null)
+			return null;
+		String json = null;
+		try {
+			json = store.get(id);
+		} catch (IOException ex) {
+			log.warn("Cannot read artifact: " + id, ex);
+		}
+		if (json != null) {
+			diskHits.incrementAndGet();
+			synchronized (entries) {
+				entries.put(id, json);
+			}
+		}
+		return json;
+	}
+
+	private void writeStore(String id, String json) {
+		if (store != null) {
+			try {
+				store.put(id, json);
+			} catch (IOException ex) {
+				log.warn("Cannot write artifact: " + id, ex);
+			}
+		}
+	}
+
+	/**
+	 * Remove the given entry from the heap tier. The disk tier is append-only.
+	 */
+	public void remove(String id) {
+		synchronized (entries) {
+			entries.remove(id);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getDiskHitCount() {
+		return diskHits.get();
+	}
+
+	/**
+	 * The number of gets that found nothing and of loads that went to the ledger.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * The number of loads that joined a load in flight.
+	 */
+	public long getCoalescedCount() {
+		return loads.getCoalescedCount();
+	}
+
+	/**
+	 * Get the schema json for the given id, reading it from the ledger on a cache miss.
+	 */
+	public String getSchema(Pool pool, String submitterDid, String schemaId) throws InterruptedException, ExecutionException {
+		return getClient(pool).getSchema(submitterDid, schemaId).get();
+	}
+
+	/**
+	 * Get the credential definition json for the given id, reading it from the ledger on a cache miss.
+	 */
+	public String getCredDef(Pool pool, String submitterDid, String credDefId) throws InterruptedException, ExecutionException {
+		return getClient(pool).getCredDef(submitterDid, credDefId).get();
+	}
+
+	/**
+	 * Get the revocation registry definition json for the given id, reading it from the ledger on a cache miss.
+	 */
+	public String getRevocRegDef(Pool pool, String submitterDid, String revRegDefId) throws InterruptedException, ExecutionException {
+		return getClient(pool).getRevocRegDef(submitterDid, revRegDefId).get();
+	}
+
+	// One client per pool, the pool rarely changes
+	private IndyClient getClient(Pool pool) {
+		IndyClient client = poolClient;
+		if (client == null || client.getPool() != pool) {
+			client = new IndyClient(pool, this);
+			poolClient = client;
+		}
+		return client;
+	}
+
+	/**
+	 * Wait for the queued disk writes and stop the disk thread. The store stays open.
+	 */
+	@Override
+	public void close() {
+		if (diskExecutor != null) {
+			diskExecutor.shutdown();
+			try {
+				if (!diskExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+					log.warn("Disk writes still pending: {}", store.getFile());
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ArtifactCache[size=%d, capacity=%d, hits=%d, diskHits=%d, misses=%d, coalesced=%d, evictions=%d]",
+				size(), capacity, getHitCount(), getDiskHitCount(), getMissCount(), getCoalescedCount(), getEvictionCount());
+	}
+}
@@ -0,0 +1,156 @@
+package io.nessus.indy.utils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes raw credential attribute values as the integers that the anoncreds signatures are computed over.
+ *
+ * Indy only requires that 32-bit integers are encoded as themselves. Every other value is encoded as the
+ * SHA-256 digest of its UTF-8 bytes, read as an unsigned big-endian decimal integer, which is the encoding
+ * used by the Aries agents.
+ *
+ * Hashed encodings are kept in a bounded LRU cache, because issuers encode the same enumerated values over and over.
+ */
+public class AttributeEncoder {
+
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	private static final AttributeEncoder INSTANCE = new AttributeEncoder(DEFAULT_CAPACITY);
+
+	private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	});
+
+	private final Map<String, String> entries;
+	private final int capacity;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public AttributeEncoder(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > AttributeEncoder.this.capacity;
+			}
+		};
+	}
+
+	public static AttributeEncoder getDefault() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Encode the given raw value.
+	 */
+	public String encode(String raw) {
+
+		// A 32-bit integer encodes as itself, in canonical form
+		String int32 = toInt32(raw);
+		if (int32 != null)
+			return int32;
+
+		String encoded;
+		synchronized (entries) {
+			encoded = entries.get(raw);
+		}
+		if (encoded != null) {
+			hits.incrementAndGet();
+			return encoded;
+		}
+
+		misses.incrementAndGet();
+		byte[] digest = SHA256.get().digest(raw.getBytes(StandardCharsets.UTF_8));
+		encoded = new BigInteger(1, digest).toString();
+		synchronized (entries) {
+			entries.put(raw, encoded);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Encode all attributes of a credential.
+	 *
+	 * @param rawValues the raw values by attribute name
+	 * @return the credential values json, which has the 'raw' and 'encoded' value for every attribute
+	 */
+	public String encode(Map<String, String> rawValues) {
+		// Encode first, the writer is thread local
+		String[] encoded = new String[rawValues.size()];
+		int i = 0;
+		for (String raw : rawValues.values()) {
+			encoded[i++] = encode(raw);
+		}
+		JsonWriter writer = JsonWriter.local().beginObject();
+		i = 0;
+		for (Map.Entry<String, String> entry : rawValues.entrySet()) {
+			writer.name(entry.getKey()).beginObject()
+				.field("raw", entry.getValue())
+				.field("encoded", encoded[i++])
+				.endObject();
+		}
+		return writer.endObject().toString();
+	}
+
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	// Returns the canonical form of a 32-bit integer value, or null if the value is not one
+	static String toInt32(String raw) {
+		int len = raw.length();
+		if (len == 0 || len > 11)
+			return null;
+		int idx = 0;
+		boolean negative = false;
+		char first = raw.charAt(0);
+		if (first == '-' || first == '+') {
+			if (len == 1)
+				return null;
+			negative = first == '-';
+			idx = 1;
+		}
+		long value = 0;
+		for (int i = idx; i < len; i++) {
+			char ch = raw.charAt(i);
+			if (ch < '0' || ch > '9')
+				return null;
+			value = 10 * value + (ch - '0');
+		}
+		if (negative) value = -value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			return null;
+		boolean canonical = first != '+' && (raw.charAt(idx) != '0' || len == idx + 1) && !(negative && value == 0);
+		return canonical ? raw : Long.toString(value);
+	}
+}
@@ -0,0 +1,120 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+
+/**
+ * Creates many DIDs, keeping a bounded window of libindy calls in flight across all wallets.
+ */
+public class BulkDidCreator {
+
+	public static final int DEFAULT_WINDOW = 64;
+
+	private final int window;
+	private final IndyCalls calls;
+
+	public BulkDidCreator() {
+		this(DEFAULT_WINDOW, IndyCalls.getDefault());
+	}
+
+	public BulkDidCreator(int window, IndyCalls calls) {
+		if (window < 1)
+			throw new IllegalArgumentException("Invalid window: " + window);
+		this.window = window;
+		this.calls = calls;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Create the given number of random DIDs in the given wallet.
+	 */
+	public DidArray create(Wallet wallet, int count) throws InterruptedException, ExecutionException {
+		return create(Collections.singletonList(wallet), new String[count]).get(0);
+	}
+
+	/**
+	 * Create one DID per seed in the given wallet. A null seed creates a random DID.
+	 */
+	public DidArray create(Wallet wallet, String[] seeds) throws InterruptedException, ExecutionException {
+		return create(Collections.singletonList(wallet), seeds).get(0);
+	}
+
+	/**
+	 * Create one DID per seed in each of the given wallets, in parallel.
+	 *
+	 * @return the DIDs per wallet, in the order of the wallets and seeds
+	 */
+	public List<DidArray> create(List<Wallet> wallets, String[] seeds) throws InterruptedException, ExecutionException {
+
+		List<DidArray> results = new ArrayList<>();
+		Semaphore permits = new Semaphore(window);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		for (Wallet wallet : wallets) {
+			DidArray result = new DidArray(seeds.length);
+			results.add(result);
+			for (int i = 0; i < seeds.length && failure.get() == null; i++) {
+				int idx = i;
+				String didJson = seeds[i] != null ? new JSONObject().put("seed", seeds[i]).toString() : "{}";
+				permits.acquire();
+				calls.createAndStoreMyDid(wallet, didJson)
+					.whenComplete((res, th) -> {
+						if (th != null) failure.compareAndSet(null, th);
+						else result.set(idx, res.getDid(), res.getVerkey());
+						permits.release();
+					});
+			}
+		}
+
+		// Wait for the window to drain
+		permits.acquire(window);
+		permits.release(window);
+
+		Throwable th = failure.get();
+		if (th != null)
+			throw new ExecutionException("Cannot create DIDs", th);
+
+		return results;
+	}
+
+	/**
+	 * DIDs and their verkeys in two parallel arrays.
+	 */
+	public static class DidArray {
+
+		private final String[] dids;
+		private final String[] verkeys;
+
+		DidArray(int size) {
+			this.dids = new String[size];
+			this.verkeys = new String[size];
+		}
+
+		void set(int idx, String did, String verkey) {
+			dids[idx] = did;
+			verkeys[idx] = verkey;
+		}
+
+		public int size() {
+			return dids.length;
+		}
+
+		public String getDid(int idx) {
+			return dids[idx];
+		}
+
+		public String getVerkey(int idx) {
+			return verkeys[idx];
+		}
+	}
+}
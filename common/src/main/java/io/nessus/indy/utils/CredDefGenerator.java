@@ -0,0 +1,339 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the cred defs of an issuer in the background.
+ *
+ * Generating the CL keys of a cred def with revocation support takes seconds. A task reports the stage it is in
+ * and can be cancelled. A pre-generated cred def is stored in the wallet, but only published when asked to, for
+ * example when a new schema version is rolled out.
+ *
+ * Tasks are keyed by schema id and tag. Asking again for a cred def that is in progress returns the same task.
+ * A failed or cancelled task is replaced by a new one. If the cred def got stored in the wallet before, the new task
+ * only publishes it, since libindy does not store a cred def for the same schema and tag twice.
+ */
+public class CredDefGenerator implements AutoCloseable {
+
+	public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	public enum Stage {
+		QUEUED, RESOLVING, GENERATING, GENERATED, PUBLISHING, PUBLISHED, FAILED, CANCELLED
+	}
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, Task> tasks = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+	private final IndyClient client;
+	private final Wallet wallet;
+	private final String issuerDid;
+
+	public CredDefGenerator(IndyClient client, Wallet wallet, String issuerDid) {
+		this(client, wallet, issuerDid, DEFAULT_PARALLELISM);
+	}
+
+	/**
+	 * @param parallelism the number of cred defs that get generated at the same time
+	 */
+	public CredDefGenerator(IndyClient client, Wallet wallet, String issuerDid, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		this.client = client;
+		this.wallet = wallet;
+		this.issuerDid = issuerDid;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "CredDefGenerator-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start creating and publishing a cred def for the given schema.
+	 */
+	public Task generate(String schemaId, String tag, boolean supportRevocation) {
+		Task task = start(schemaId, tag, supportRevocation);
+		task.publish();
+		return task;
+	}
+
+	/**
+	 * Start creating a cred def for the given schema, without publishing it.
+	 */
+	public Task pregenerate(String schemaId, String tag, boolean supportRevocation) {
+		return start(schemaId, tag, supportRevocation);
+	}
+
+	/**
+	 * Get the latest task for the given schema and tag, or null.
+	 */
+	public Task getTask(String schemaId, String tag) {
+		return tasks.get(schemaId + ":" + tag);
+	}
+
+	public List<Task> getTasks() {
+		return new ArrayList<>(tasks.values());
+	}
+
+	/**
+	 * Cancel the tasks in progress and stop the generator.
+	 */
+	@Override
+	public void close() {
+		tasks.values().forEach(Task::cancel);
+		executor.shutdownNow();
+	}
+
+	private Task start(String schemaId, String tag, boolean supportRevocation) {
+		String key = schemaId + ":" + tag;
+		return tasks.compute(key, (k, task) -> {
+			if (task != null && task.getStage() != Stage.FAILED && task.getStage() != Stage.CANCELLED)
+				return task;
+			Task result = new Task(key, schemaId, tag, supportRevocation, task);
+			executor.execute(result::generate);
+			return result;
+		});
+	}
+
+	/**
+	 * The creation of one cred def.
+	 */
+	public class Task {
+
+		private final String key;
+		private final String schemaId;
+		private final String tag;
+		private final boolean supportRevocation;
+		private final long startNanos = System.nanoTime();
+		private final CompletableFuture<String> generated = new CompletableFuture<>();
+		private final CompletableFuture<String> published = new CompletableFuture<>();
+		// Completes when the libindy call returned, also for a cancelled task
+		private final CompletableFuture<Void> stored = new CompletableFuture<>();
+		private volatile Stage stage = Stage.QUEUED;
+		private volatile long endNanos;
+		private Task previous;
+		private boolean publish;
+		private String credDefId;
+		private String credDefJson;
+
+		Task(String key, String schemaId, String tag, boolean supportRevocation, Task previous) {
+			this.key = key;
+			this.schemaId = schemaId;
+			this.tag = tag;
+			this.supportRevocation = supportRevocation;
+			this.previous = previous;
+		}
+
+		public String getSchemaId() {
+			return schemaId;
+		}
+
+		public String getTag() {
+			return tag;
+		}
+
+		public boolean isSupportRevocation() {
+			return supportRevocation;
+		}
+
+		public Stage getStage() {
+			return stage;
+		}
+
+		/**
+		 * The cred def id, or null until it is generated.
+		 */
+		public synchronized String getCredDefId() {
+			return credDefId;
+		}
+
+		public synchronized String getCredDefJson() {
+			return credDefJson;
+		}
+
+		/**
+		 * Completes with the cred def id once the cred def is stored in the wallet.
+		 */
+		public CompletableFuture<String> getGenerated() {
+			return generated;
+		}
+
+		/**
+		 * Completes with the cred def id once the cred def is on the ledger.
+		 */
+		public CompletableFuture<String> getPublished() {
+			return published;
+		}
+
+		/**
+		 * The time since the task was started, or that it took to complete.
+		 */
+		public long getElapsed(TimeUnit unit) {
+			long end = endNanos;
+			return unit.convert((end != 0 ? end : System.nanoTime()) - startNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Publish the cred def once it is generated.
+		 */
+		public CompletableFuture<String> publish() {
+			synchronized (this) {
+				if (publish || isDone())
+					return published;
+				publish = true;
+				if (stage != Stage.GENERATED)
+					return published;
+			}
+			executor.execute(this::publishNow);
+			return published;
+		}
+
+		/**
+		 * Cancel the task unless it is published already.
+		 *
+		 * Libindy cannot abort key generation in progress. A cred def that is generated nonetheless stays in the
+		 * wallet and does not get published, unless it is asked for again.
+		 *
+		 * @return false if the task is done already
+		 */
+		public boolean cancel() {
+			synchronized (this) {
+				if (isDone() || stage == Stage.PUBLISHING)
+					return false;
+				if (stage == Stage.GENERATING) {
+					log.info("Cred def generation cancelled while in progress: {}", key);
+				}
+				complete(Stage.CANCELLED);
+			}
+			generated.cancel(false);
+			published.cancel(false);
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("CredDefTask[%s, stage=%s, elapsed=%dms]", key, stage, getElapsed(TimeUnit.MILLISECONDS));
+		}
+
+		private boolean isDone() {
+			return stage == Stage.PUBLISHED || stage == Stage.FAILED || stage == Stage.CANCELLED;
+		}
+
+		// Runs on the executor
+		private void generate() {
+			try {
+				if (!advance(Stage.RESOLVING))
+					return;
+
+				// Reuse the cred def that an earlier task stored, its generation may still be in progress
+				String[] credDef = null;
+				if (previous != null) {
+					previous.stored.get();
+					credDef = previous.getStoredCredDef();
+					previous = null;
+				}
+
+				if (credDef == null) {
+
+					// The cred def needs the schema as read from the ledger, which carries the seqNo
+					String schemaJson = client.getSchema(issuerDid, schemaId).get();
+					if (!advance(Stage.GENERATING))
+						return;
+
+					String configJson = new JSONObject().put("support_revocation", supportRevocation).toString();
+					IssuerCreateAndStoreCredentialDefResult result = client.getCalls()
+							.issuerCreateAndStoreCredentialDef(wallet, issuerDid, schemaJson, tag, null, configJson).get();
+					credDef = new String[] { result.getCredDefId(), result.getCredDefJson() };
+				}
+
+				boolean publishNow;
+				synchronized (this) {
+					credDefId = credDef[0];
+					credDefJson = credDef[1];
+					stored.complete(null);
+					if (!advance(Stage.GENERATED))
+						return;
+					publishNow = publish;
+				}
+				log.debug("Generated cred def in {}ms: {}", getElapsed(TimeUnit.MILLISECONDS), credDefId);
+				generated.complete(credDefId);
+				if (publishNow) {
+					publishNow();
+				}
+			} catch (Exception ex) {
+				fail(ex);
+			} finally {
+				stored.complete(null);
+			}
+		}
+
+		// The id and json of the cred def in the wallet, or null
+		private synchronized String[] getStoredCredDef() {
+			return credDefJson != null ? new String[] { credDefId, credDefJson } : null;
+		}
+
+		// Runs on the executor
+		private void publishNow() {
+			try {
+				String json;
+				synchronized (this) {
+					if (!advance(Stage.PUBLISHING))
+						return;
+					json = credDefJson;
+				}
+				String request = client.getCalls().buildCredDefRequest(issuerDid, json).get();
+				client.signAndSubmit(wallet, issuerDid, request).get();
+				synchronized (this) {
+					complete(Stage.PUBLISHED);
+				}
+				published.complete(credDefId);
+			} catch (Exception ex) {
+				fail(ex);
+			}
+		}
+
+		// A cancelled task does not move on
+		private synchronized boolean advance(Stage next) {
+			if (stage == Stage.CANCELLED)
+				return false;
+			stage = next;
+			return true;
+		}
+
+		// A failed or cancelled task stays until it is asked for again, so that its successor finds the stored cred def
+		private void complete(Stage last) {
+			stage = last;
+			endNanos = System.nanoTime();
+		}
+
+		private void fail(Exception ex) {
+			if (ex instanceof InterruptedException)
+				Thread.currentThread().interrupt();
+			Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+			synchronized (this) {
+				if (stage == Stage.CANCELLED)
+					return;
+				complete(Stage.FAILED);
+			}
+			log.error("Cannot create cred def: " + key, cause);
+			generated.completeExceptionally(cause);
+			published.completeExceptionally(cause);
+		}
+	}
+}
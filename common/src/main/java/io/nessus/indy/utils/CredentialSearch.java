@@ -0,0 +1,162 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.anoncreds.CredentialsSearchForProofReq;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily iterates over the credentials in a wallet that match the referents of a proof request.
+ *
+ * Pages are fetched on demand. The first page holds a single credential, because most callers only use the first match,
+ * and every further page doubles in size up to {@link #MAX_PAGE_SIZE}.
+ *
+ * The search handle is closed once every referent of the proof request was fetched with {@link #first(String)} or
+ * iterated to its end, or when this search is closed.
+ */
+public class CredentialSearch implements AutoCloseable {
+
+	public static final int INITIAL_PAGE_SIZE = 1;
+	public static final int MAX_PAGE_SIZE = 256;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final CredentialsSearchForProofReq search;
+	private final Set<String> pending = new HashSet<>();
+	private boolean closed;
+
+	private CredentialSearch(CredentialsSearchForProofReq search, String proofRequestJson) {
+		this.search = search;
+		JSONObject proofRequest = new JSONObject(proofRequestJson);
+		for (String key : new String[] { "requested_attributes", "requested_predicates" }) {
+			JSONObject referents = proofRequest.optJSONObject(key);
+			if (referents != null) {
+				pending.addAll(referents.keySet());
+			}
+		}
+	}
+
+	/**
+	 * Open a search for the given proof request.
+	 *
+	 * @param extraQueryJson the optional extra wql per referent, or null
+	 */
+	public static CredentialSearch open(Wallet wallet, String proofRequestJson, String extraQueryJson) throws InterruptedException, ExecutionException, IndyException {
+		CredentialsSearchForProofReq search = CredentialsSearchForProofReq.open(wallet, proofRequestJson, extraQueryJson).get();
+		return new CredentialSearch(search, proofRequestJson);
+	}
+
+	/**
+	 * Get the first credential that matches the given referent, or null if there is none.
+	 *
+	 * Each entry has the 'cred_info' and the 'interval' of the credential.
+	 */
+	public JSONObject first(String referent) {
+		Iterator<JSONObject> it = iterator(referent);
+		JSONObject result = it.hasNext() ? it.next() : null;
+		done(referent);
+		return result;
+	}
+
+	/**
+	 * Iterate over the credentials that match the given referent.
+	 *
+	 * The search for a referent can only be iterated once. A later iterator continues where an earlier one stopped,
+	 * and it is empty once this search is closed.
+	 */
+	public Iterator<JSONObject> iterator(String referent) {
+		return new PageIterator(referent);
+	}
+
+	public Stream<JSONObject> stream(String referent) {
+		Spliterator<JSONObject> spliterator = Spliterators.spliteratorUnknownSize(iterator(referent), Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false);
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			try {
+				search.closeSearch().get();
+			} catch (Exception ex) {
+				log.warn("Cannot close credential search", ex);
+			}
+		}
+	}
+
+	private synchronized void done(String referent) {
+		pending.remove(referent);
+		if (pending.isEmpty()) {
+			close();
+		}
+	}
+
+	// Nothing more to fetch once the search is closed
+	private synchronized JSONArray fetch(String referent, int count) {
+		if (closed)
+			return new JSONArray();
+		try {
+			return new JSONArray(search.fetchNextCredentials(referent, count).get());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted", ex);
+		} catch (ExecutionException | IndyException ex) {
+			throw new IllegalStateException("Cannot fetch credentials for: " + referent, ex);
+		}
+	}
+
+	private class PageIterator implements Iterator<JSONObject> {
+
+		final String referent;
+		final Deque<JSONObject> page = new ArrayDeque<>();
+		int pageSize = INITIAL_PAGE_SIZE;
+		boolean exhausted;
+
+		PageIterator(String referent) {
+			this.referent = referent;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (page.isEmpty() && !exhausted) {
+				JSONArray next = fetch(referent, pageSize);
+				for (int i = 0; i < next.length(); i++) {
+					page.add(next.getJSONObject(i));
+				}
+				if (next.length() < pageSize) {
+					exhausted = true;
+					done(referent);
+				}
+				pageSize = Math.min(2 * pageSize, MAX_PAGE_SIZE);
+			}
+			return !page.isEmpty();
+		}
+
+		@Override
+		public JSONObject next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return page.poll();
+		}
+	}
+}
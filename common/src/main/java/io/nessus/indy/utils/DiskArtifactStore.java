@@ -0,0 +1,251 @@
+package io.nessus.indy.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only, memory-mapped file of ledger artifact json, keyed by ledger id.
+ *
+ * Each record is laid out as [int keyLength][int valueLength][key][value] with UTF-8 encoded key and value.
+ * The offset index is rebuilt when the file is opened. A torn record at the end of the file is truncated.
+ * The file is mapped in chunks, which are extended as the file grows.
+ *
+ * Ledger ids are only unique within one ledger, so there is one store file per pool.
+ */
+public class DiskArtifactStore implements Closeable {
+
+	private static final int HEADER_SIZE = 8;
+	private static final long CHUNK_SIZE = 1L << 30;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final FileLock lock;
+
+	// key -> {value offset, value length}
+	private final Map<String, long[]> index = new HashMap<>();
+
+	// The last chunk may be shorter than CHUNK_SIZE
+	private final List<MappedByteBuffer> chunks = new ArrayList<>();
+	private long mappedSize;
+	private long endOffset;
+
+	/**
+	 * Open the store for the given pool in the indy home cache directory.
+	 */
+	public DiskArtifactStore(String poolName) throws IOException {
+		this(new File(EnvironmentUtils.getIndyHomePath("cache"), poolName + ".dat"));
+	}
+
+	/**
+	 * Open the store in the given file.
+	 *
+	 * When another store, in this or another process, appends to the same file, this one is read-only.
+	 * A read-only store picks up appended records when it misses a key.
+	 */
+	public DiskArtifactStore(File file) throws IOException {
+		FileUtils.forceMkdirParent(file);
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		try {
+			this.channel = raf.getChannel();
+
+			// Another store that appends to the same file owns it, we only read
+			FileLock fileLock = null;
+			try {
+				fileLock = channel.tryLock();
+			} catch (OverlappingFileLockException ex) {
+				// The owner is in this JVM
+			} catch (IOException ex) {
+				log.warn("Cannot lock artifact store: {}", file);
+			}
+			this.lock = fileLock;
+			if (lock == null) {
+				log.warn("Artifact store is locked, opening read-only: {}", file);
+			}
+
+			loadIndex();
+		} catch (IOException | RuntimeException ex) {
+			raf.close();
+			throw ex;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean isReadOnly() {
+		return lock == null;
+	}
+
+	public synchronized int size() {
+		return index.size();
+	}
+
+	public synchronized boolean contains(String key) throws IOException {
+		return lookup(key) != null;
+	}
+
+	/**
+	 * Get the stored value for the given key, or null.
+	 */
+	public synchronized String get(String key) throws IOException {
+		long[] pos = lookup(key);
+		if (pos == null)
+			return null;
+
+		byte[] bytes = new byte[(int) pos[1]];
+		read(pos[0], bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Append the given value, unless there already is a value for the key.
+	 *
+	 * @return true if the value was appended
+	 */
+	public synchronized boolean put(String key, String value) throws IOException {
+		if (isReadOnly() || index.containsKey(key))
+			return false;
+
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+
+		int recordSize = HEADER_SIZE + keyBytes.length + valueBytes.length;
+		ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+		buffer.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+		buffer.flip();
+
+		long offset = endOffset;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+
+		long valueOffset = endOffset + HEADER_SIZE + keyBytes.length;
+		index.put(key, new long[] { valueOffset, valueBytes.length });
+		endOffset = offset;
+		return true;
+	}
+
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (lock != null) {
+				channel.force(false);
+				lock.release();
+			}
+		} finally {
+			chunks.clear();
+			raf.close();
+		}
+	}
+
+	private void loadIndex() throws IOException {
+
+		long fileSize = channel.size();
+		scan(fileSize);
+
+		if (endOffset < fileSize && !isReadOnly()) {
+			log.warn("Truncate torn record at offset {}: {}", endOffset, file);
+			chunks.clear();
+			mappedSize = 0;
+			channel.truncate(endOffset);
+		}
+
+		log.debug("Loaded {} artifacts from {}", index.size(), file);
+	}
+
+	private long[] lookup(String key) throws IOException {
+		long[] pos = index.get(key);
+		if (pos == null && isReadOnly()) {
+			// The owner may have appended since we last looked
+			long fileSize = channel.size();
+			if (fileSize > endOffset) {
+				scan(fileSize);
+				pos = index.get(key);
+			}
+		}
+		return pos;
+	}
+
+	// Index the complete records between the end offset and the given size
+	private void scan(long fileSize) throws IOException {
+
+		byte[] header = new byte[HEADER_SIZE];
+		long offset = endOffset;
+		while (offset + HEADER_SIZE <= fileSize) {
+			read(offset, header);
+			ByteBuffer buffer = ByteBuffer.wrap(header);
+			int keyLength = buffer.getInt();
+			int valueLength = buffer.getInt();
+			if (keyLength < 0 || valueLength < 0 || offset + HEADER_SIZE + (long) keyLength + valueLength > fileSize)
+				break;
+
+			byte[] keyBytes = new byte[keyLength];
+			read(offset + HEADER_SIZE, keyBytes);
+
+			String key = new String(keyBytes, StandardCharsets.UTF_8);
+			index.put(key, new long[] { offset + HEADER_SIZE + keyLength, valueLength });
+			offset += HEADER_SIZE + keyLength + valueLength;
+		}
+		endOffset = offset;
+	}
+
+	private void read(long offset, byte[] bytes) throws IOException {
+		long end = offset + bytes.length;
+		if (end > mappedSize) {
+			remap(end);
+		}
+		int done = 0;
+		while (done < bytes.length) {
+			long pos = offset + done;
+			ByteBuffer chunk = chunks.get((int) (pos / CHUNK_SIZE)).duplicate();
+			chunk.position((int) (pos % CHUNK_SIZE));
+			int count = Math.min(bytes.length - done, chunk.remaining());
+			chunk.get(bytes, done, count);
+			done += count;
+		}
+	}
+
+	// Map the file up to its current size, which must cover the given end
+	private void remap(long end) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < end)
+			throw new IOException("Artifact record beyond end of file: " + file);
+
+		// Replace the short last chunk
+		if (mappedSize % CHUNK_SIZE != 0) {
+			chunks.remove(chunks.size() - 1);
+			mappedSize -= mappedSize % CHUNK_SIZE;
+		}
+		while (mappedSize < fileSize) {
+			long size = Math.min(CHUNK_SIZE, fileSize - mappedSize);
+			chunks.add(channel.map(MapMode.READ_ONLY, mappedSize, size));
+			mappedSize += size;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.ProverCreateCredentialRequestResult;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageReader;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageWriter;
+import org.hyperledger.indy.sdk.crypto.Crypto;
+import org.hyperledger.indy.sdk.crypto.CryptoResults.AuthDecryptResult;
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.did.DidResults.CreateAndStoreMyDidResult;
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseRegistryResponseResult;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseResponseResult;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+
+/**
+ * The libindy Ledger, Anoncreds, Did, Wallet, Crypto and BlobStorage calls, with their latency recorded in {@link IndyMetrics}.
+ *
+ * Every operation name is defined here, for example 'wallet.openWallet' or 'anoncreds.proverCreateProof'.
+ * Ledger requests are built and parsed here, the {@link IndyClient} submits them.
+ */
+public class IndyCalls {
+
+	private static final IndyCalls DEFAULT = new IndyCalls(IndyMetrics.getDefault());
+
+	private final IndyMetrics metrics;
+
+	public IndyCalls(IndyMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * The shared instance, which records in the default metrics.
+	 */
+	public static IndyCalls getDefault() {
+		return DEFAULT;
+	}
+
+	public IndyMetrics getMetrics() {
+		return metrics;
+	}
+
+	// Ledger
+
+	public CompletableFuture<String> signRequest(Wallet wallet, String submitterDid, String request) {
+		return metrics.timed("ledger.signRequest", () -> Ledger.signRequest(wallet, submitterDid, request));
+	}
+
+	public CompletableFuture<String> buildNymRequest(String submitterDid, String targetDid, String verkey, String alias, String role) {
+		return metrics.timed("ledger.buildNymRequest", () -> Ledger.buildNymRequest(submitterDid, targetDid, verkey, alias, role));
+	}
+
+	public CompletableFuture<String> buildSchemaRequest(String submitterDid, String schemaJson) {
+		return metrics.timed("ledger.buildSchemaRequest", () -> Ledger.buildSchemaRequest(submitterDid, schemaJson));
+	}
+
+	public CompletableFuture<String> buildGetSchemaRequest(String submitterDid, String schemaId) {
+		return metrics.timed("ledger.buildGetSchemaRequest", () -> Ledger.buildGetSchemaRequest(submitterDid, schemaId));
+	}
+
+	public CompletableFuture<ParseResponseResult> parseGetSchemaResponse(String response) {
+		return metrics.timed("ledger.parseGetSchemaResponse", () -> Ledger.parseGetSchemaResponse(response));
+	}
+
+	public CompletableFuture<String> buildCredDefRequest(String submitterDid, String credDefJson) {
+		return metrics.timed("ledger.buildCredDefRequest", () -> Ledger.buildCredDefRequest(submitterDid, credDefJson));
+	}
+
+	public CompletableFuture<String> buildGetCredDefRequest(String submitterDid, String credDefId) {
+		return metrics.timed("ledger.buildGetCredDefRequest", () -> Ledger.buildGetCredDefRequest(submitterDid, credDefId));
+	}
+
+	public CompletableFuture<ParseResponseResult> parseGetCredDefResponse(String response) {
+		return metrics.timed("ledger.parseGetCredDefResponse", () -> Ledger.parseGetCredDefResponse(response));
+	}
+
+	public CompletableFuture<String> buildRevocRegDefRequest(String submitterDid, String revRegDefJson) {
+		return metrics.timed("ledger.buildRevocRegDefRequest", () -> Ledger.buildRevocRegDefRequest(submitterDid, revRegDefJson));
+	}
+
+	public CompletableFuture<String> buildGetRevocRegDefRequest(String submitterDid, String revRegDefId) {
+		return metrics.timed("ledger.buildGetRevocRegDefRequest", () -> Ledger.buildGetRevocRegDefRequest(submitterDid, revRegDefId));
+	}
+
+	public CompletableFuture<ParseResponseResult> parseGetRevocRegDefResponse(String response) {
+		return metrics.timed("ledger.parseGetRevocRegDefResponse", () -> Ledger.parseGetRevocRegDefResponse(response));
+	}
+
+	public CompletableFuture<String> buildRevocRegEntryRequest(String submitterDid, String revRegDefId, String revDefType, String valueJson) {
+		return metrics.timed("ledger.buildRevocRegEntryRequest", () -> Ledger.buildRevocRegEntryRequest(submitterDid, revRegDefId, revDefType, valueJson));
+	}
+
+	public CompletableFuture<String> buildGetRevocRegRequest(String submitterDid, String revRegDefId, long timestamp) {
+		return metrics.timed("ledger.buildGetRevocRegRequest", () -> Ledger.buildGetRevocRegRequest(submitterDid, revRegDefId, timestamp));
+	}
+
+	public CompletableFuture<ParseRegistryResponseResult> parseGetRevocRegResponse(String response) {
+		return metrics.timed("ledger.parseGetRevocRegResponse", () -> Ledger.parseGetRevocRegResponse(response));
+	}
+
+	public CompletableFuture<String> buildGetRevocRegDeltaRequest(String submitterDid, String revRegDefId, long from, long to) {
+		return metrics.timed("ledger.buildGetRevocRegDeltaRequest", () -> Ledger.buildGetRevocRegDeltaRequest(submitterDid, revRegDefId, from, to));
+	}
+
+	public CompletableFuture<ParseRegistryResponseResult> parseGetRevocRegDeltaResponse(String response) {
+		return metrics.timed("ledger.parseGetRevocRegDeltaResponse", () -> Ledger.parseGetRevocRegDeltaResponse(response));
+	}
+
+	// Anoncreds
+
+	public CompletableFuture<IssuerCreateSchemaResult> issuerCreateSchema(String issuerDid, String name, String version, String attrsJson) {
+		return metrics.timed("anoncreds.issuerCreateSchema", () -> Anoncreds.issuerCreateSchema(issuerDid, name, version, attrsJson));
+	}
+
+	public CompletableFuture<IssuerCreateAndStoreCredentialDefResult> issuerCreateAndStoreCredentialDef(Wallet wallet, String issuerDid, String schemaJson, String tag, String signatureType, String configJson) {
+		return metrics.timed("anoncreds.issuerCreateAndStoreCredentialDef", () -> Anoncreds.issuerCreateAndStoreCredentialDef(wallet, issuerDid, schemaJson, tag, signatureType, configJson));
+	}
+
+	public CompletableFuture<IssuerCreateAndStoreRevocRegResult> issuerCreateAndStoreRevocReg(Wallet wallet, String issuerDid, String revocDefType, String tag, String credDefId, String configJson, BlobStorageWriter tailsWriter) {
+		return metrics.timed("anoncreds.issuerCreateAndStoreRevocReg", () -> Anoncreds.issuerCreateAndStoreRevocReg(wallet, issuerDid, revocDefType, tag, credDefId, configJson, tailsWriter));
+	}
+
+	public CompletableFuture<String> issuerCreateCredentialOffer(Wallet wallet, String credDefId) {
+		return metrics.timed("anoncreds.issuerCreateCredentialOffer", () -> Anoncreds.issuerCreateCredentialOffer(wallet, credDefId));
+	}
+
+	public CompletableFuture<IssuerCreateCredentialResult> issuerCreateCredential(Wallet wallet, String credOfferJson, String credReqJson, String credValuesJson, String revRegId, int blobStorageReaderHandle) {
+		return metrics.timed("anoncreds.issuerCreateCredential", () -> Anoncreds.issuerCreateCredential(wallet, credOfferJson, credReqJson, credValuesJson, revRegId, blobStorageReaderHandle));
+	}
+
+	public CompletableFuture<String> issuerRevokeCredential(Wallet wallet, int blobStorageReaderHandle, String revRegId, String credRevocId) {
+		return metrics.timed("anoncreds.issuerRevokeCredential", () -> Anoncreds.issuerRevokeCredential(wallet, blobStorageReaderHandle, revRegId, credRevocId));
+	}
+
+	public CompletableFuture<String> issuerMergeRevocationRegistryDeltas(String revRegDelta, String otherRevRegDelta) {
+		return metrics.timed("anoncreds.issuerMergeRevocationRegistryDeltas", () -> Anoncreds.issuerMergeRevocationRegistryDeltas(revRegDelta, otherRevRegDelta));
+	}
+
+	public CompletableFuture<String> proverCreateMasterSecret(Wallet wallet, String masterSecretId) {
+		return metrics.timed("anoncreds.proverCreateMasterSecret", () -> Anoncreds.proverCreateMasterSecret(wallet, masterSecretId));
+	}
+
+	public CompletableFuture<ProverCreateCredentialRequestResult> proverCreateCredentialReq(Wallet wallet, String proverDid, String credOfferJson, String credDefJson, String masterSecretId) {
+		return metrics.timed("anoncreds.proverCreateCredentialReq", () -> Anoncreds.proverCreateCredentialReq(wallet, proverDid, credOfferJson, credDefJson, masterSecretId));
+	}
+
+	public CompletableFuture<String> proverStoreCredential(Wallet wallet, String credId, String credReqMetadataJson, String credJson, String credDefJson, String revRegDefJson) {
+		return metrics.timed("anoncreds.proverStoreCredential", () -> Anoncreds.proverStoreCredential(wallet, credId, credReqMetadataJson, credJson, credDefJson, revRegDefJson));
+	}
+
+	public CompletableFuture<String> proverCreateProof(Wallet wallet, String proofRequestJson, String requestedCredentialsJson, String masterSecretId, String schemasJson, String credDefsJson, String revStatesJson) {
+		return metrics.timed("anoncreds.proverCreateProof", () -> Anoncreds.proverCreateProof(wallet, proofRequestJson, requestedCredentialsJson, masterSecretId, schemasJson, credDefsJson, revStatesJson));
+	}
+
+	public CompletableFuture<Boolean> verifierVerifyProof(String proofRequestJson, String proofJson, String schemasJson, String credDefsJson, String revRegDefsJson, String revRegsJson) {
+		return metrics.timed("anoncreds.verifierVerifyProof", () -> Anoncreds.verifierVerifyProof(proofRequestJson, proofJson, schemasJson, credDefsJson, revRegDefsJson, revRegsJson));
+	}
+
+	public CompletableFuture<String> createRevocationState(int blobStorageReaderHandle, String revRegDefJson, String revRegDeltaJson, long timestamp, String credRevId) {
+		return metrics.timed("anoncreds.createRevocationState", () -> Anoncreds.createRevocationState(blobStorageReaderHandle, revRegDefJson, revRegDeltaJson, timestamp, credRevId));
+	}
+
+	public CompletableFuture<String> updateRevocationState(int blobStorageReaderHandle, String revStateJson, String revRegDefJson, String revRegDeltaJson, long timestamp, String credRevId) {
+		return metrics.timed("anoncreds.updateRevocationState", () -> Anoncreds.updateRevocationState(blobStorageReaderHandle, revStateJson, revRegDefJson, revRegDeltaJson, timestamp, credRevId));
+	}
+
+	public CompletableFuture<String> generateNonce() {
+		return metrics.timed("anoncreds.generateNonce", () -> Anoncreds.generateNonce());
+	}
+
+	// Did
+
+	public CompletableFuture<CreateAndStoreMyDidResult> createAndStoreMyDid(Wallet wallet, String didJson) {
+		return metrics.timed("did.createAndStoreMyDid", () -> Did.createAndStoreMyDid(wallet, didJson));
+	}
+
+	public CompletableFuture<String> keyForDid(Pool pool, Wallet wallet, String did) {
+		return metrics.timed("did.keyForDid", () -> Did.keyForDid(pool, wallet, did));
+	}
+
+	public CompletableFuture<String> keyForLocalDid(Wallet wallet, String did) {
+		return metrics.timed("did.keyForLocalDid", () -> Did.keyForLocalDid(wallet, did));
+	}
+
+	// Wallet
+
+	public CompletableFuture<Void> createWallet(String config, String credentials) {
+		return metrics.timed("wallet.createWallet", () -> Wallet.createWallet(config, credentials));
+	}
+
+	public CompletableFuture<Wallet> openWallet(String config, String credentials) {
+		return metrics.timed("wallet.openWallet", () -> Wallet.openWallet(config, credentials));
+	}
+
+	public CompletableFuture<Void> closeWallet(Wallet wallet) {
+		return metrics.timed("wallet.closeWallet", () -> wallet.closeWallet());
+	}
+
+	public CompletableFuture<Void> deleteWallet(String config, String credentials) {
+		return metrics.timed("wallet.deleteWallet", () -> Wallet.deleteWallet(config, credentials));
+	}
+
+	public CompletableFuture<String> generateWalletKey(String config) {
+		return metrics.timed("wallet.generateWalletKey", () -> Wallet.generateWalletKey(config));
+	}
+
+	// Crypto
+
+	public CompletableFuture<String> createKey(Wallet wallet, String keyJson) {
+		return metrics.timed("crypto.createKey", () -> Crypto.createKey(wallet, keyJson));
+	}
+
+	public CompletableFuture<byte[]> cryptoSign(Wallet wallet, String signerVk, byte[] message) {
+		return metrics.timed("crypto.cryptoSign", () -> Crypto.cryptoSign(wallet, signerVk, message));
+	}
+
+	public CompletableFuture<Boolean> cryptoVerify(String signerVk, byte[] message, byte[] signature) {
+		return metrics.timed("crypto.cryptoVerify", () -> Crypto.cryptoVerify(signerVk, message, signature));
+	}
+
+	public CompletableFuture<byte[]> authCrypt(Wallet wallet, String senderVk, String recipientVk, byte[] message) {
+		return metrics.timed("crypto.authCrypt", () -> Crypto.authCrypt(wallet, senderVk, recipientVk, message));
+	}
+
+	public CompletableFuture<AuthDecryptResult> authDecrypt(Wallet wallet, String recipientVk, byte[] encryptedMessage) {
+		return metrics.timed("crypto.authDecrypt", () -> Crypto.authDecrypt(wallet, recipientVk, encryptedMessage));
+	}
+
+	public CompletableFuture<byte[]> anonCrypt(String recipientVk, byte[] message) {
+		return metrics.timed("crypto.anonCrypt", () -> Crypto.anonCrypt(recipientVk, message));
+	}
+
+	public CompletableFuture<byte[]> anonDecrypt(Wallet wallet, String recipientVk, byte[] encryptedMessage) {
+		return metrics.timed("crypto.anonDecrypt", () -> Crypto.anonDecrypt(wallet, recipientVk, encryptedMessage));
+	}
+
+	// BlobStorage
+
+	public CompletableFuture<BlobStorageReader> openReader(String type, String configJson) {
+		return metrics.timed("blobStorage.openReader", () -> BlobStorageReader.openReader(type, configJson));
+	}
+
+	public CompletableFuture<BlobStorageWriter> openWriter(String type, String configJson) {
+		return metrics.timed("blobStorage.openWriter", () -> BlobStorageWriter.openWriter(type, configJson));
+	}
+}
@@ -0,0 +1,184 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseRegistryResponseResult;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseResponseResult;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+
+/**
+ * A non-blocking ledger client that composes the futures returned by libindy.
+ *
+ * No operation waits on a future, continuations run on the libindy callback thread.
+ * Immutable artifacts are read through the given {@link ArtifactCache}, which does its disk I/O on a thread of its own.
+ * Identical revocation registry reads that are in flight concurrently share one ledger request.
+ *
+ * Requests go to the pool through a {@link LedgerTransport}, which may also be an in-process stand-in.
+ * The latency of every libindy call is recorded in the given {@link IndyMetrics}.
+ */
+public class IndyClient {
+
+	private final Pool pool;
+	private final LedgerTransport transport;
+	private final ArtifactCache cache;
+	private final IndyMetrics metrics;
+	private final IndyCalls calls;
+	private final SingleFlight<String, ParseRegistryResponseResult> registryReads = new SingleFlight<>();
+
+	public IndyClient(Pool pool) {
+		this(pool, ArtifactCache.getDefault());
+	}
+
+	public IndyClient(Pool pool, ArtifactCache cache) {
+		this(pool, LedgerTransport.forPool(pool), cache, IndyMetrics.getDefault());
+	}
+
+	/**
+	 * A client that submits through the given lease, which is invalidated on a pool failure.
+	 */
+	public IndyClient(PoolManager.Lease lease, ArtifactCache cache) {
+		this(lease.getPool(), lease.getTransport(), cache, IndyMetrics.getDefault());
+	}
+
+	public IndyClient(LedgerTransport transport, ArtifactCache cache) {
+		this(null, transport, cache, IndyMetrics.getDefault());
+	}
+
+	public IndyClient(LedgerTransport transport, ArtifactCache cache, IndyMetrics metrics) {
+		this(null, transport, cache, metrics);
+	}
+
+	private IndyClient(Pool pool, LedgerTransport transport, ArtifactCache cache, IndyMetrics metrics) {
+		this.pool = pool;
+		this.transport = transport;
+		this.cache = cache;
+		this.metrics = metrics;
+		this.calls = new IndyCalls(metrics);
+	}
+
+	/**
+	 * The pool, or null if this client uses some other transport.
+	 */
+	public Pool getPool() {
+		return pool;
+	}
+
+	public LedgerTransport getTransport() {
+		return transport;
+	}
+
+	public ArtifactCache getArtifactCache() {
+		return cache;
+	}
+
+	public IndyMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * The libindy calls, timed in the metrics of this client.
+	 */
+	public IndyCalls getCalls() {
+		return calls;
+	}
+
+	/**
+	 * A libindy call that may throw synchronously.
+	 */
+	@FunctionalInterface
+	public interface IndyCall<T> {
+		CompletableFuture<T> call() throws IndyException;
+	}
+
+	/**
+	 * Run the given call and turn a synchronous failure into a failed future.
+	 */
+	public static <T> CompletableFuture<T> async(IndyCall<T> call) {
+		try {
+			return call.call();
+		} catch (IndyException | RuntimeException ex) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			future.completeExceptionally(ex);
+			return future;
+		}
+	}
+
+	/**
+	 * Submit the given request and complete exceptionally if the ledger does not reply.
+	 */
+	public CompletableFuture<String> submit(String request) {
+		return transmit(request)
+				.thenApply(IndyClient::checkReply);
+	}
+
+	public CompletableFuture<String> sign(Wallet wallet, String submitterDid, String request) {
+		return calls.signRequest(wallet, submitterDid, request);
+	}
+
+	public CompletableFuture<String> signAndSubmit(Wallet wallet, String submitterDid, String request) {
+		return sign(wallet, submitterDid, request)
+				.thenCompose(this::submit);
+	}
+
+	public CompletableFuture<String> getSchema(String submitterDid, String schemaId) {
+		return cache.load(schemaId, () -> calls.buildGetSchemaRequest(submitterDid, schemaId)
+				.thenCompose(this::transmit)
+				.thenCompose(calls::parseGetSchemaResponse)
+				.thenApply(ParseResponseResult::getObjectJson));
+	}
+
+	public CompletableFuture<String> getCredDef(String submitterDid, String credDefId) {
+		return cache.load(credDefId, () -> calls.buildGetCredDefRequest(submitterDid, credDefId)
+				.thenCompose(this::transmit)
+				.thenCompose(calls::parseGetCredDefResponse)
+				.thenApply(ParseResponseResult::getObjectJson));
+	}
+
+	public CompletableFuture<String> getRevocRegDef(String submitterDid, String revRegDefId) {
+		return cache.load(revRegDefId, () -> calls.buildGetRevocRegDefRequest(submitterDid, revRegDefId)
+				.thenCompose(this::transmit)
+				.thenCompose(calls::parseGetRevocRegDefResponse)
+				.thenApply(ParseResponseResult::getObjectJson));
+	}
+
+	/**
+	 * Get the accumulated revocation registry state at the given time.
+	 */
+	public CompletableFuture<ParseRegistryResponseResult> getRevocReg(String submitterDid, String revRegDefId, long timestamp) {
+		String key = revRegDefId + "@" + timestamp;
+		return registryReads.execute(key, () -> calls.buildGetRevocRegRequest(submitterDid, revRegDefId, timestamp)
+				.thenCompose(this::transmit)
+				.thenCompose(calls::parseGetRevocRegResponse));
+	}
+
+	/**
+	 * Get the revocation registry delta for the given interval. A negative from gets the delta since registry creation.
+	 */
+	public CompletableFuture<ParseRegistryResponseResult> getRevocRegDelta(String submitterDid, String revRegDefId, long from, long to) {
+		String key = revRegDefId + "@" + from + ":" + to;
+		return registryReads.execute(key, () -> calls.buildGetRevocRegDeltaRequest(submitterDid, revRegDefId, from, to)
+				.thenCompose(this::transmit)
+				.thenCompose(calls::parseGetRevocRegDeltaResponse));
+	}
+
+	// Submit without checking the reply, the parse functions report a NACK themselves
+	private CompletableFuture<String> transmit(String request) {
+		return metrics.timed(IndyMetrics.submitOperation(request), () -> transport.submit(request));
+	}
+
+	/**
+	 * Return the given response, or throw a {@link LedgerNackException} if it is not a REPLY.
+	 */
+	public static String checkReply(String response) {
+		JSONObject json = new JSONObject(response);
+		String op = json.optString("op");
+		if (!"REPLY".equals(op)) {
+			String reason = json.optString("reason", response);
+			throw new LedgerNackException(op, reason);
+		}
+		return response;
+	}
+}
@@ -0,0 +1,152 @@
+package io.nessus.indy.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.utils.IndyClient.IndyCall;
+import io.nessus.indy.utils.LatencyHistogram.Snapshot;
+
+/**
+ * Latency histograms per libindy operation.
+ *
+ * Operations are named by API and function, for example 'anoncreds.proverCreateProof'.
+ * Ledger submits are named by txn type, for example 'ledger.submit.GET_SCHEMA'.
+ */
+public class IndyMetrics implements IndyMetricsMXBean {
+
+	public static final String OBJECT_NAME = "io.nessus.indy:type=IndyMetrics";
+
+	private static final Map<String, String> TXN_TYPES = new HashMap<>();
+	static {
+		TXN_TYPES.put("1", "NYM");
+		TXN_TYPES.put("100", "ATTRIB");
+		TXN_TYPES.put("101", "SCHEMA");
+		TXN_TYPES.put("102", "CRED_DEF");
+		TXN_TYPES.put("104", "GET_ATTR");
+		TXN_TYPES.put("105", "GET_NYM");
+		TXN_TYPES.put("107", "GET_SCHEMA");
+		TXN_TYPES.put("108", "GET_CRED_DEF");
+		TXN_TYPES.put("113", "REVOC_REG_DEF");
+		TXN_TYPES.put("114", "REVOC_REG_ENTRY");
+		TXN_TYPES.put("115", "GET_REVOC_REG_DEF");
+		TXN_TYPES.put("116", "GET_REVOC_REG");
+		TXN_TYPES.put("117", "GET_REVOC_REG_DELTA");
+	}
+
+	private static final IndyMetrics DEFAULT = new IndyMetrics();
+	static {
+		DEFAULT.register(OBJECT_NAME);
+	}
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * The shared instance, which is also registered with the platform MBean server.
+	 */
+	public static IndyMetrics getDefault() {
+		return DEFAULT;
+	}
+
+	public LatencyHistogram getHistogram(String operation) {
+		return histograms.computeIfAbsent(operation, op -> new LatencyHistogram());
+	}
+
+	public void record(String operation, long nanos, boolean error) {
+		getHistogram(operation).record(nanos, error);
+	}
+
+	/**
+	 * Run the given call and record the time until its future completes.
+	 */
+	public <T> CompletableFuture<T> timed(String operation, IndyCall<T> call) {
+		long start = System.nanoTime();
+		return IndyClient.async(call).whenComplete((val, th) -> record(operation, System.nanoTime() - start, th != null));
+	}
+
+	/**
+	 * The operation name of submitting the given request, like 'ledger.submit.GET_SCHEMA'.
+	 */
+	public static String submitOperation(String request) {
+		String type;
+		try {
+			JSONObject operation = new JSONObject(request).optJSONObject("operation");
+			type = operation != null ? operation.optString("type", "UNKNOWN") : "UNKNOWN";
+		} catch (RuntimeException ex) {
+			type = "UNKNOWN";
+		}
+		return "ledger.submit." + TXN_TYPES.getOrDefault(type, type);
+	}
+
+	/**
+	 * Register this instance with the platform MBean server under the given name.
+	 */
+	public boolean register(String objectName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName oname = new ObjectName(objectName);
+			if (!server.isRegistered(oname)) {
+				server.registerMBean(this, oname);
+			}
+			return true;
+		} catch (JMException | RuntimeException ex) {
+			log.warn("Cannot register metrics: " + objectName, ex);
+			return false;
+		}
+	}
+
+	@Override
+	public List<String> getOperations() {
+		List<String> result = new ArrayList<>(histograms.keySet());
+		Collections.sort(result);
+		return result;
+	}
+
+	@Override
+	public List<Snapshot> getSnapshots() {
+		return new ArrayList<>(snapshot().values());
+	}
+
+	@Override
+	public Snapshot getSnapshot(String operation) {
+		LatencyHistogram histogram = histograms.get(operation);
+		return histogram != null ? histogram.snapshot(operation) : null;
+	}
+
+	/**
+	 * Snapshots of all operations, sorted by name.
+	 */
+	public Map<String, Snapshot> snapshot() {
+		Map<String, Snapshot> result = new TreeMap<>();
+		histograms.forEach((op, histogram) -> result.put(op, histogram.snapshot(op)));
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		histograms.values().forEach(LatencyHistogram::reset);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("IndyMetrics");
+		snapshot().values().forEach(snapshot -> sb.append("\n  ").append(snapshot));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,19 @@
+package io.nessus.indy.utils;
+
+import java.util.List;
+
+import io.nessus.indy.utils.LatencyHistogram.Snapshot;
+
+/**
+ * The JMX view of {@link IndyMetrics}, with latencies in microseconds.
+ */
+public interface IndyMetricsMXBean {
+
+	List<String> getOperations();
+
+	List<Snapshot> getSnapshots();
+
+	Snapshot getSnapshot(String operation);
+
+	void reset();
+}
@@ -0,0 +1,329 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+
+import io.nessus.indy.utils.RevocationRegistryPool.Registry;
+
+/**
+ * Issues credentials for many credential requests in parallel.
+ *
+ * Without a registry pool the credentials are not revocable and every issuance runs on its own thread.
+ * With a registry pool every credential takes a slot in an active registry of its cred def. Issuances into the
+ * same registry run one at a time through the {@link RevocationBatcher}, so that libindy hands out the revocation
+ * indexes in order, issuances into different registries run in parallel. A pool with as many active registries
+ * per cred def as the pipeline has threads keeps all of them busy. The registry deltas are published in batches,
+ * a revocable credential is complete once its delta is on the ledger.
+ *
+ * A batch keeps a bounded window of credentials in creation and the caller blocks while it is full.
+ */
+public class IssuancePipeline implements AutoCloseable {
+
+	public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	private final IndyClient client;
+	private final Wallet wallet;
+	private final int parallelism;
+	private final int window;
+	private final ExecutorService executor;
+	private final RevocationRegistryPool registries;
+	private final RevocationBatcher batcher;
+
+	/**
+	 * Issue credentials that are not revocable.
+	 */
+	public IssuancePipeline(IndyClient client, Wallet wallet) {
+		this(client, wallet, DEFAULT_PARALLELISM, null, null);
+	}
+
+	/**
+	 * @param parallelism the number of credentials that get created at the same time
+	 * @param registries the registries for revocable credentials, or null
+	 * @param batcher the batcher that publishes the registry deltas, required with registries
+	 */
+	public IssuancePipeline(IndyClient client, Wallet wallet, int parallelism, RevocationRegistryPool registries, RevocationBatcher batcher) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		if (registries != null && batcher == null)
+			throw new IllegalArgumentException("Revocable issuance needs a batcher");
+		this.client = client;
+		this.wallet = wallet;
+		this.parallelism = parallelism;
+		this.registries = registries;
+		this.batcher = batcher;
+		this.window = 4 * parallelism;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "IssuancePipeline-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Issue a credential for the given credential request.
+	 */
+	public CompletableFuture<IssuedCredential> issue(String credOfferJson, String credReqJson, String credValuesJson) {
+		return create(credOfferJson, credReqJson, credValuesJson).thenCompose(published -> published);
+	}
+
+	/**
+	 * Issue credentials for the given requests and wait for all of them to complete.
+	 *
+	 * The window only bounds the credentials in creation, created credentials wait for their registry entry
+	 * outside of it. The pending deltas are published once the last request is created.
+	 */
+	public Report issue(Stream<IssuanceEntry> entries) throws InterruptedException {
+
+		Semaphore permits = new Semaphore(window);
+		List<IssuanceResult> results = new ArrayList<>();
+		long start = System.nanoTime();
+
+		try {
+			entries.forEachOrdered(entry -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted", ex);
+				}
+				IssuanceResult result = new IssuanceResult(entry);
+				results.add(result);
+				long itemStart = System.nanoTime();
+				create(entry.credOfferJson, entry.credReqJson, entry.credValuesJson)
+					.whenComplete((published, th) -> {
+						permits.release();
+						if (th != null) {
+							result.complete(null, th, System.nanoTime() - itemStart);
+						} else {
+							published.whenComplete((cred, th2) -> result.complete(cred, th2, System.nanoTime() - itemStart));
+						}
+					});
+			});
+		} catch (IllegalStateException ex) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			throw ex;
+		}
+
+		// Wait for the window to drain
+		permits.acquire(window);
+		permits.release(window);
+
+		if (batcher != null) {
+			batcher.flush();
+		}
+		for (IssuanceResult result : results) {
+			result.done.await();
+		}
+
+		return new Report(results, System.nanoTime() - start);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	// The outer future completes when the credential is created, the inner one when it is published
+	private CompletableFuture<CompletableFuture<IssuedCredential>> create(String credOfferJson, String credReqJson, String credValuesJson) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return createNow(credOfferJson, credReqJson, credValuesJson);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new CompletionException(ex);
+			} catch (ExecutionException ex) {
+				throw new CompletionException(ex.getCause());
+			} catch (Exception ex) {
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+
+	// Runs on the executor, blocking a thread for every credential in creation
+	private CompletableFuture<IssuedCredential> createNow(String credOfferJson, String credReqJson, String credValuesJson) throws Exception {
+
+		if (registries == null) {
+			IssuerCreateCredentialResult result = client.getCalls().issuerCreateCredential(wallet, credOfferJson, credReqJson, credValuesJson, null, 0).get();
+			return CompletableFuture.completedFuture(new IssuedCredential(result.getCredentialJson(), null, null));
+		}
+
+		String credDefId = new JSONObject(credOfferJson).getString("cred_def_id");
+		Registry registry = registries.acquire(credDefId);
+		String revRegId = registry.getRevRegId();
+		int readerHandle = registry.getTailsReader().getHandle();
+
+		IssuerCreateCredentialResult[] created = new IssuerCreateCredentialResult[1];
+		CompletableFuture<String> published = batcher.update(revRegId, () -> {
+			created[0] = client.getCalls().issuerCreateCredential(wallet, credOfferJson, credReqJson, credValuesJson, revRegId, readerHandle).get();
+			return created[0].getRevocRegDeltaJson();
+		});
+		IssuedCredential issued = new IssuedCredential(created[0].getCredentialJson(), revRegId, created[0].getRevocId());
+		return published.thenApply(response -> issued);
+	}
+
+	/**
+	 * A credential request and the values to issue for it.
+	 */
+	public static class IssuanceEntry {
+
+		final String credOfferJson;
+		final String credReqJson;
+		final String credValuesJson;
+
+		public IssuanceEntry(String credOfferJson, String credReqJson, String credValuesJson) {
+			this.credOfferJson = credOfferJson;
+			this.credReqJson = credReqJson;
+			this.credValuesJson = credValuesJson;
+		}
+
+		public String getCredOfferJson() {
+			return credOfferJson;
+		}
+
+		public String getCredReqJson() {
+			return credReqJson;
+		}
+
+		public String getCredValuesJson() {
+			return credValuesJson;
+		}
+	}
+
+	/**
+	 * An issued credential and its place in a revocation registry.
+	 */
+	public static class IssuedCredential {
+
+		private final String credentialJson;
+		private final String revRegId;
+		private final String credRevId;
+
+		IssuedCredential(String credentialJson, String revRegId, String credRevId) {
+			this.credentialJson = credentialJson;
+			this.revRegId = revRegId;
+			this.credRevId = credRevId;
+		}
+
+		public String getCredentialJson() {
+			return credentialJson;
+		}
+
+		/**
+		 * The revocation registry id, or null if the credential is not revocable.
+		 */
+		public String getRevRegId() {
+			return revRegId;
+		}
+
+		public String getCredRevId() {
+			return credRevId;
+		}
+	}
+
+	public static class IssuanceResult {
+
+		private final IssuanceEntry entry;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile IssuedCredential credential;
+		private volatile Throwable error;
+		private volatile long nanos;
+
+		IssuanceResult(IssuanceEntry entry) {
+			this.entry = entry;
+		}
+
+		void complete(IssuedCredential credential, Throwable error, long nanos) {
+			this.credential = credential;
+			this.error = error;
+			this.nanos = nanos;
+			done.countDown();
+		}
+
+		public IssuanceEntry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * The issued credential, or null.
+		 */
+		public IssuedCredential getCredential() {
+			return credential;
+		}
+
+		/**
+		 * The error that prevented issuance, or null.
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		public long getLatency(TimeUnit unit) {
+			return unit.convert(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	public static class Report {
+
+		private final List<IssuanceResult> results;
+		private final long elapsedNanos;
+
+		Report(List<IssuanceResult> results, long elapsedNanos) {
+			this.results = Collections.unmodifiableList(results);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public List<IssuanceResult> getResults() {
+			return results;
+		}
+
+		public int getIssuedCount() {
+			return (int) results.stream().filter(res -> res.getError() == null).count();
+		}
+
+		public int getFailureCount() {
+			return (int) results.stream().filter(res -> res.getError() != null).count();
+		}
+
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Issued credentials per second.
+		 */
+		public double getThroughput() {
+			return elapsedNanos > 0 ? getIssuedCount() * 1e9 / elapsedNanos : 0.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("IssuanceReport[count=%d, issued=%d, failed=%d, elapsed=%dms, throughput=%.1f/s]",
+					results.size(), getIssuedCount(), getFailureCount(), getElapsed(TimeUnit.MILLISECONDS), getThroughput());
+		}
+	}
+}
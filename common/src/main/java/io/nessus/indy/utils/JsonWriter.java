@@ -0,0 +1,166 @@
+package io.nessus.indy.utils;
+
+/**
+ * A minimal streaming JSON writer that appends to a reusable {@link StringBuilder}.
+ *
+ * It does not validate the document structure, callers are expected to pair begin and end calls.
+ */
+public class JsonWriter {
+
+	private static final ThreadLocal<JsonWriter> LOCAL = ThreadLocal.withInitial(JsonWriter::new);
+
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	private StringBuilder sb = new StringBuilder(512);
+
+	// One bit per nesting level, set when the next value is the first in its container
+	private long firstFlags = 1L;
+	private int depth;
+	private boolean afterName;
+
+	/**
+	 * Get the writer of the current thread, reset for a new document.
+	 *
+	 * The writer must not be used across calls that might use it themselves.
+	 */
+	public static JsonWriter local() {
+		return LOCAL.get().reset();
+	}
+
+	public JsonWriter reset() {
+		if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+			sb = new StringBuilder(512);
+		} else {
+			sb.setLength(0);
+		}
+		firstFlags = 1L;
+		depth = 0;
+		afterName = false;
+		return this;
+	}
+
+	public JsonWriter beginObject() {
+		beforeValue();
+		sb.append('{');
+		push();
+		return this;
+	}
+
+	public JsonWriter endObject() {
+		depth--;
+		sb.append('}');
+		return this;
+	}
+
+	public JsonWriter beginArray() {
+		beforeValue();
+		sb.append('[');
+		push();
+		return this;
+	}
+
+	public JsonWriter endArray() {
+		depth--;
+		sb.append(']');
+		return this;
+	}
+
+	public JsonWriter name(String name) {
+		beforeValue();
+		string(name);
+		sb.append(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonWriter value(String value) {
+		beforeValue();
+		if (value == null) {
+			sb.append("null");
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	public JsonWriter value(long value) {
+		beforeValue();
+		sb.append(value);
+		return this;
+	}
+
+	public JsonWriter value(boolean value) {
+		beforeValue();
+		sb.append(value);
+		return this;
+	}
+
+	/**
+	 * Append the given json as is, for example a document that was serialized before.
+	 */
+	public JsonWriter rawValue(String json) {
+		beforeValue();
+		sb.append(json);
+		return this;
+	}
+
+	public JsonWriter field(String name, String value) {
+		return name(name).value(value);
+	}
+
+	public JsonWriter field(String name, long value) {
+		return name(name).value(value);
+	}
+
+	public JsonWriter field(String name, boolean value) {
+		return name(name).value(value);
+	}
+
+	@Override
+	public String toString() {
+		return sb.toString();
+	}
+
+	private void push() {
+		if (++depth >= 64)
+			throw new IllegalStateException("Nesting too deep");
+		firstFlags |= 1L << depth;
+	}
+
+	private void beforeValue() {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		long bit = 1L << depth;
+		if ((firstFlags & bit) != 0) {
+			firstFlags &= ~bit;
+		} else {
+			sb.append(',');
+		}
+	}
+
+	private void string(String value) {
+		sb.append('"');
+		int len = value.length();
+		for (int i = 0; i < len; i++) {
+			char ch = value.charAt(i);
+			switch (ch) {
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				case '\b': sb.append("\\b"); break;
+				case '\f': sb.append("\\f"); break;
+				default:
+					if (ch < 0x20 || ch == '\u2028' || ch == '\u2029') {
+						sb.append(String.format("\\u%04x", (int) ch));
+					} else {
+						sb.append(ch);
+					}
+			}
+		}
+		sb.append('"');
+	}
+}
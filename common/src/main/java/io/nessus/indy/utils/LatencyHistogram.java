@@ -0,0 +1,202 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values are recorded in nanoseconds. Each power of two range is split into 32 linear sub-buckets,
+ * which bounds the relative error of a reported percentile to about 3%, over the whole range of long.
+ */
+public class LatencyHistogram {
+
+	// Values below 2^PRECISION_BITS are counted exactly
+	private static final int PRECISION_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << (PRECISION_BITS - 1);
+	private static final int BUCKET_COUNT = (63 - PRECISION_BITS + 1) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Record a successful operation that took the given nanos.
+	 */
+	public void record(long nanos) {
+		record(nanos, false);
+	}
+
+	public void record(long nanos, boolean error) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+		if (error) errors.increment();
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		errors.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Get the value at the given percentile in the given unit.
+	 */
+	public long getValueAtPercentile(double percentile, TimeUnit unit) {
+		return unit.convert(valueAtPercentile(copyCounts(), percentile), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Take a consistent view of the recorded values.
+	 */
+	public Snapshot snapshot(String operation) {
+		long[] snapshot = copyCounts();
+		long total = 0;
+		for (long c : snapshot) {
+			total += c;
+		}
+		long mean = total > 0 ? sum.sum() / total : 0;
+		return new Snapshot(operation, total, errors.sum(), mean,
+				valueAtPercentile(snapshot, 50.0),
+				valueAtPercentile(snapshot, 90.0),
+				valueAtPercentile(snapshot, 99.0),
+				valueAtPercentile(snapshot, 99.9),
+				max.get());
+	}
+
+	static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKETS)
+			return (int) value;
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int shift = msb - (PRECISION_BITS - 1);
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	// The highest value that falls into the given bucket
+	static long highestValueOf(int index) {
+		if (index < 2 * SUB_BUCKETS)
+			return index;
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+		long next = (sub + 1) << shift;
+		return next > 0 ? next - 1 : Long.MAX_VALUE;
+	}
+
+	private long[] copyCounts() {
+		long[] result = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			result[i] = counts.get(i);
+		}
+		return result;
+	}
+
+	private long valueAtPercentile(long[] snapshot, double percentile) {
+		long total = 0;
+		for (long c : snapshot) {
+			total += c;
+		}
+		if (total == 0)
+			return 0;
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= target)
+				return Math.min(highestValueOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * The latency percentiles of one operation, in microseconds.
+	 */
+	public static class Snapshot {
+
+		private final String operation;
+		private final long count;
+		private final long errorCount;
+		private final long mean;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+		private final long max;
+
+		Snapshot(String operation, long count, long errorCount, long mean, long p50, long p90, long p99, long p999, long max) {
+			this.operation = operation;
+			this.count = count;
+			this.errorCount = errorCount;
+			this.mean = micros(mean);
+			this.p50 = micros(p50);
+			this.p90 = micros(p90);
+			this.p99 = micros(p99);
+			this.p999 = micros(p999);
+			this.max = micros(max);
+		}
+
+		private static long micros(long nanos) {
+			return TimeUnit.NANOSECONDS.toMicros(nanos);
+		}
+
+		public String getOperation() {
+			return operation;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getErrorCount() {
+			return errorCount;
+		}
+
+		public long getMean() {
+			return mean;
+		}
+
+		public long getP50() {
+			return p50;
+		}
+
+		public long getP90() {
+			return p90;
+		}
+
+		public long getP99() {
+			return p99;
+		}
+
+		public long getP999() {
+			return p999;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s[count=%d, errors=%d, mean=%dus, p50=%dus, p90=%dus, p99=%dus, p999=%dus, max=%dus]",
+					operation, count, errorCount, mean, p50, p90, p99, p999, max);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package io.nessus.indy.utils;
+
+/**
+ * The ledger answered a request with a REQNACK or REJECT instead of a REPLY.
+ *
+ * Unlike a transport failure, sending the same request again gets the same answer.
+ */
+public class LedgerNackException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String op;
+	private final String reason;
+
+	public LedgerNackException(String op, String reason) {
+		super(op + ": " + reason);
+		this.op = op;
+		this.reason = reason;
+	}
+
+	/**
+	 * True if the given failure, or one of its causes, is a ledger NACK.
+	 */
+	public static boolean isNack(Throwable th) {
+		while (th != null) {
+			if (th instanceof LedgerNackException)
+				return true;
+			th = th.getCause();
+		}
+		return false;
+	}
+
+	/**
+	 * The op of the response, REQNACK or REJECT.
+	 */
+	public String getOp() {
+		return op;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+}
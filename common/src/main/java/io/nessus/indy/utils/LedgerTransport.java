@@ -0,0 +1,22 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.pool.Pool;
+
+/**
+ * Submits a signed request json to the ledger and completes with the response json.
+ */
+@FunctionalInterface
+public interface LedgerTransport {
+
+	CompletableFuture<String> submit(String request);
+
+	/**
+	 * A transport that submits to the given pool.
+	 */
+	static LedgerTransport forPool(Pool pool) {
+		return request -> IndyClient.async(() -> Ledger.submitRequest(pool, request));
+	}
+}
@@ -0,0 +1,192 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+
+/**
+ * Writes NYM transactions in bulk, keeping a bounded window of signed requests in flight.
+ */
+public class NymOnboarder {
+
+	public static final int DEFAULT_WINDOW = 32;
+
+	private final IndyClient client;
+	private final int window;
+
+	public NymOnboarder(IndyClient client) {
+		this(client, DEFAULT_WINDOW);
+	}
+
+	public NymOnboarder(IndyClient client, int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("Invalid window: " + window);
+		this.client = client;
+		this.window = window;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Onboard the given entries and wait for all writes to complete.
+	 *
+	 * The calling thread feeds the window and blocks while it is full.
+	 */
+	public Report onboard(Stream<NymEntry> entries) throws InterruptedException {
+
+		Semaphore permits = new Semaphore(window);
+		List<NymResult> results = new ArrayList<>();
+		long start = System.nanoTime();
+
+		try {
+			entries.forEachOrdered(entry -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted", ex);
+				}
+				NymResult result = new NymResult(entry);
+				results.add(result);
+				long itemStart = System.nanoTime();
+				client.getCalls().buildNymRequest(entry.submitterDid, entry.targetDid, entry.verkey, null, entry.role)
+					.thenCompose(req -> client.signAndSubmit(entry.wallet, entry.submitterDid, req))
+					.whenComplete((res, th) -> {
+						result.complete(res, th, System.nanoTime() - itemStart);
+						permits.release();
+					});
+			});
+		} catch (IllegalStateException ex) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			throw ex;
+		}
+
+		// Wait for the window to drain
+		permits.acquire(window);
+		permits.release(window);
+
+		return new Report(results, System.nanoTime() - start);
+	}
+
+	/**
+	 * A NYM write of the target DID, signed by the submitter.
+	 */
+	public static class NymEntry {
+
+		final Wallet wallet;
+		final String submitterDid;
+		final String targetDid;
+		final String verkey;
+		final String role;
+
+		public NymEntry(Wallet wallet, String submitterDid, String targetDid, String verkey, String role) {
+			this.wallet = wallet;
+			this.submitterDid = submitterDid;
+			this.targetDid = targetDid;
+			this.verkey = verkey;
+			this.role = role;
+		}
+
+		public String getSubmitterDid() {
+			return submitterDid;
+		}
+
+		public String getTargetDid() {
+			return targetDid;
+		}
+
+		public String getVerkey() {
+			return verkey;
+		}
+
+		public String getRole() {
+			return role;
+		}
+	}
+
+	public static class NymResult {
+
+		private final NymEntry entry;
+		private volatile String response;
+		private volatile Throwable error;
+		private volatile long nanos;
+
+		NymResult(NymEntry entry) {
+			this.entry = entry;
+		}
+
+		void complete(String response, Throwable error, long nanos) {
+			this.response = response;
+			this.error = error;
+			this.nanos = nanos;
+		}
+
+		public NymEntry getEntry() {
+			return entry;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		public String getResponse() {
+			return response;
+		}
+
+		public Throwable getError() {
+			return error;
+		}
+
+		public long getLatency(TimeUnit unit) {
+			return unit.convert(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	public static class Report {
+
+		private final List<NymResult> results;
+		private final long elapsedNanos;
+
+		Report(List<NymResult> results, long elapsedNanos) {
+			this.results = Collections.unmodifiableList(results);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public List<NymResult> getResults() {
+			return results;
+		}
+
+		public int getSuccessCount() {
+			return (int) results.stream().filter(NymResult::isSuccess).count();
+		}
+
+		public int getFailureCount() {
+			return results.size() - getSuccessCount();
+		}
+
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Completed writes per second, including failed ones.
+		 */
+		public double getThroughput() {
+			return elapsedNanos > 0 ? results.size() * 1e9 / elapsedNanos : 0.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("NymReport[count=%d, failed=%d, elapsed=%dms, throughput=%.1f/s]",
+					results.size(), getFailureCount(), getElapsed(TimeUnit.MILLISECONDS), getThroughput());
+		}
+	}
+}
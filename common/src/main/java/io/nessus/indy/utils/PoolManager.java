@@ -0,0 +1,293 @@
+package io.nessus.indy.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.pool.InvalidPoolException;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.hyperledger.indy.sdk.pool.PoolLedgerTerminatedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one open {@link Pool} handle per pool name and leases it to concurrent callers.
+ *
+ * A handle is closed once it was not leased for the idle timeout. A handle is invalidated when a request submitted
+ * through a lease transport fails with a pool failure, the next lease then reopens the pool. The invalid handle is
+ * closed once its last lease is released.
+ */
+public class PoolManager implements AutoCloseable {
+
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+	private static final PoolManager INSTANCE = new PoolManager(DEFAULT_IDLE_TIMEOUT);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, PoolEntry> entries = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler;
+	private final long idleTimeout;
+
+	/**
+	 * @param idleTimeout time in milliseconds an unused handle stays open
+	 */
+	public PoolManager(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "PoolManager");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static PoolManager getDefault() {
+		return INSTANCE;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Lease the open handle for the given pool, creating the pool ledger config and opening the pool as needed.
+	 *
+	 * The returned lease must be closed when the caller is done with the pool.
+	 */
+	public Lease lease(String poolName) throws IOException, InterruptedException, ExecutionException, IndyException {
+		PoolEntry entry = entries.computeIfAbsent(poolName, PoolEntry::new);
+		return entry.acquire();
+	}
+
+	/**
+	 * A transport that leases the pool for every request, so that it reopens the pool after a pool failure.
+	 */
+	public LedgerTransport transport(String poolName) {
+		return request -> {
+			Lease lease;
+			try {
+				lease = lease(poolName);
+			} catch (Exception ex) {
+				if (ex instanceof InterruptedException) {
+					Thread.currentThread().interrupt();
+				}
+				CompletableFuture<String> future = new CompletableFuture<>();
+				future.completeExceptionally(ex);
+				return future;
+			}
+			return lease.submit(request).whenComplete((res, th) -> lease.close());
+		};
+	}
+
+	/**
+	 * True if the given pool has an open handle.
+	 */
+	public boolean isOpen(String poolName) {
+		PoolEntry entry = entries.get(poolName);
+		return entry != null && entry.isOpen();
+	}
+
+	/**
+	 * True if the given failure indicates that the pool handle is no longer usable.
+	 */
+	public static boolean isPoolFailure(Throwable th) {
+		while (th != null) {
+			if (th instanceof InvalidPoolException || th instanceof PoolLedgerTerminatedException)
+				return true;
+			th = th.getCause();
+		}
+		return false;
+	}
+
+	/**
+	 * Close all pool handles that are not leased, regardless of the idle timeout.
+	 */
+	public void closeIdle() {
+		for (PoolEntry entry : new ArrayList<>(entries.values())) {
+			entry.closeIfIdle();
+		}
+	}
+
+	/**
+	 * Close all pool handles and stop the idle timer.
+	 */
+	@Override
+	public void close() {
+		List<PoolEntry> all = new ArrayList<>(entries.values());
+		entries.clear();
+		for (PoolEntry entry : all) {
+			entry.closeQuietly();
+		}
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * A reference counted lease on an open pool handle.
+	 */
+	public static class Lease implements AutoCloseable {
+
+		private final PoolEntry entry;
+		private final Handle handle;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(PoolEntry entry, Handle handle) {
+			this.entry = entry;
+			this.handle = handle;
+		}
+
+		public String getPoolName() {
+			return entry.poolName;
+		}
+
+		public Pool getPool() {
+			if (released.get())
+				throw new IllegalStateException("Lease already closed: " + entry.poolName);
+			return handle.pool;
+		}
+
+		/**
+		 * A transport that submits to the leased handle and invalidates it on a pool failure.
+		 */
+		public LedgerTransport getTransport() {
+			return this::submit;
+		}
+
+		/**
+		 * Mark the leased handle as dead, so that the next lease reopens the pool.
+		 *
+		 * The handle is closed once its last lease is released.
+		 */
+		public void invalidate() {
+			entry.invalidate(handle);
+		}
+
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) {
+				entry.release(handle);
+			}
+		}
+
+		private CompletableFuture<String> submit(String request) {
+			return IndyClient.async(() -> Ledger.submitRequest(getPool(), request))
+					.whenComplete((res, th) -> {
+						if (th != null && isPoolFailure(th)) {
+							invalidate();
+						}
+					});
+		}
+	}
+
+	// An open pool and the number of its leases
+	private static class Handle {
+
+		final Pool pool;
+		int refCount;
+
+		Handle(Pool pool) {
+			this.pool = pool;
+		}
+	}
+
+	private class PoolEntry {
+
+		final String poolName;
+
+		// The handle that new leases get, or null
+		Handle current;
+		ScheduledFuture<?> closeTask;
+
+		PoolEntry(String poolName) {
+			this.poolName = poolName;
+		}
+
+		synchronized Lease acquire() throws IOException, InterruptedException, ExecutionException, IndyException {
+
+			cancelCloseTask();
+			if (current == null) {
+				current = new Handle(openPool());
+			}
+
+			current.refCount++;
+			return new Lease(this, current);
+		}
+
+		synchronized void release(Handle handle) {
+			handle.refCount--;
+			if (handle.refCount > 0)
+				return;
+			if (handle != current) {
+				// An invalidated handle that other leases still held
+				closeQuietly(handle);
+			} else if (scheduler.isShutdown()) {
+				closeQuietly(handle);
+				current = null;
+			} else {
+				closeTask = scheduler.schedule(this::closeIfIdle, idleTimeout, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		synchronized void invalidate(Handle handle) {
+			if (handle == current) {
+				log.warn("Invalid pool handle: {}", poolName);
+				cancelCloseTask();
+				current = null;
+				if (handle.refCount == 0) {
+					closeQuietly(handle);
+				}
+			}
+		}
+
+		synchronized boolean isOpen() {
+			return current != null;
+		}
+
+		synchronized void closeIfIdle() {
+			if (current != null && current.refCount == 0) {
+				log.info("Close idle pool: {}", poolName);
+				closeQuietly(current);
+				current = null;
+			}
+		}
+
+		// Handles that are still leased are closed when their last lease is released
+		synchronized void closeQuietly() {
+			cancelCloseTask();
+			if (current != null) {
+				closeQuietly(current);
+				current = null;
+			}
+		}
+
+		private void closeQuietly(Handle handle) {
+			try {
+				handle.pool.closePoolLedger().get();
+			} catch (Exception ex) {
+				log.warn("Cannot close pool: " + poolName, ex);
+			}
+		}
+
+		private void cancelCloseTask() {
+			if (closeTask != null) {
+				closeTask.cancel(false);
+				closeTask = null;
+			}
+		}
+
+		private Pool openPool() throws IOException, InterruptedException, ExecutionException, IndyException {
+			log.info("Open pool: {}", poolName);
+			PoolUtils.createPoolLedgerConfig(poolName);
+			return Pool.openPoolLedger(poolName, "{}").get();
+		}
+	}
+}
@@ -1,57 +1,139 @@
 package io.nessus.indy.utils;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.hyperledger.indy.sdk.IndyException;
 import org.hyperledger.indy.sdk.pool.Pool;
 import org.hyperledger.indy.sdk.pool.PoolJSONParameters;
+import org.hyperledger.indy.sdk.pool.PoolLedgerConfigExistsException;
+import org.json.JSONArray;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Borrowed from ...
- * indy-sdk/../wrappers/java/src/test/java/org/hyperledger/indy/sdk/utils/PoolUtils.java 
+ * indy-sdk/../wrappers/java/src/test/java/org/hyperledger/indy/sdk/utils/PoolUtils.java
  */
 public class PoolUtils {
 
 	private static final String DEFAULT_POOL_NAME = "default_pool";
-	
-	private static File createGenesisTxnFile(String filename) throws IOException {
-		String path = EnvironmentUtils.getTmpPath(filename);
-		String testPoolIp = EnvironmentUtils.getTestPoolIP();
-
-		String[] defaultTxns = new String[]{
-				String.format("{\"reqSignature\":{},\"txn\":{\"data\":{\"data\":{\"alias\":\"Node1\",\"blskey\":\"4N8aUNHSgjQVgkpm8nhNEfDf6txHznoYREg9kirmJrkivgL4oSEimFF6nsQ6M41QvhM2Z33nves5vfSn9n1UwNFJBYtWVnHYMATn76vLuL3zU88KyeAYcHfsih3He6UHcXDxcaecHVz6jhCYz1P2UZn2bDVruL5wXpehgBfBaLKm3Ba\",\"blskey_pop\":\"RahHYiCvoNCtPTrVtP7nMC5eTYrsUA8WjXbdhNc8debh1agE9bGiJxWBXYNFbnJXoXhWFMvyqhqhRoq737YQemH5ik9oL7R4NTTCz2LEZhkgLJzB3QRQqJyBNyv7acbdHrAT8nQ9UkLbaVL9NBpnWXBTw4LEMePaSHEw66RzPNdAX1\",\"client_ip\":\"%s\",\"client_port\":9702,\"node_ip\":\"%s\",\"node_port\":9701,\"services\":[\"VALIDATOR\"]},\"dest\":\"Gw6pDLhcBcoQesN72qfotTgFa7cbuqZpkX3Xo6pLhPhv\"},\"metadata\":{\"from\":\"Th7MpTaRZVRYnPiabds81Y\"},\"type\":\"0\"},\"txnMetadata\":{\"seqNo\":1,\"txnId\":\"fea82e10e894419fe2bea7d96296a6d46f50f93f9eeda954ec461b2ed2950b62\"},\"ver\":\"1\"}", testPoolIp, testPoolIp),
-				String.format("{\"reqSignature\":{},\"txn\":{\"data\":{\"data\":{\"alias\":\"Node2\",\"blskey\":\"37rAPpXVoxzKhz7d9gkUe52XuXryuLXoM6P6LbWDB7LSbG62Lsb33sfG7zqS8TK1MXwuCHj1FKNzVpsnafmqLG1vXN88rt38mNFs9TENzm4QHdBzsvCuoBnPH7rpYYDo9DZNJePaDvRvqJKByCabubJz3XXKbEeshzpz4Ma5QYpJqjk\",\"blskey_pop\":\"Qr658mWZ2YC8JXGXwMDQTzuZCWF7NK9EwxphGmcBvCh6ybUuLxbG65nsX4JvD4SPNtkJ2w9ug1yLTj6fgmuDg41TgECXjLCij3RMsV8CwewBVgVN67wsA45DFWvqvLtu4rjNnE9JbdFTc1Z4WCPA3Xan44K1HoHAq9EVeaRYs8zoF5\",\"client_ip\":\"%s\",\"client_port\":9704,\"node_ip\":\"%s\",\"node_port\":9703,\"services\":[\"VALIDATOR\"]},\"dest\":\"8ECVSk179mjsjKRLWiQtssMLgp6EPhWXtaYyStWPSGAb\"},\"metadata\":{\"from\":\"EbP4aYNeTHL6q385GuVpRV\"},\"type\":\"0\"},\"txnMetadata\":{\"seqNo\":2,\"txnId\":\"1ac8aece2a18ced660fef8694b61aac3af08ba875ce3026a160acbc3a3af35fc\"},\"ver\":\"1\"}\n", testPoolIp, testPoolIp),
-				String.format("{\"reqSignature\":{},\"txn\":{\"data\":{\"data\":{\"alias\":\"Node3\",\"blskey\":\"3WFpdbg7C5cnLYZwFZevJqhubkFALBfCBBok15GdrKMUhUjGsk3jV6QKj6MZgEubF7oqCafxNdkm7eswgA4sdKTRc82tLGzZBd6vNqU8dupzup6uYUf32KTHTPQbuUM8Yk4QFXjEf2Usu2TJcNkdgpyeUSX42u5LqdDDpNSWUK5deC5\",\"blskey_pop\":\"QwDeb2CkNSx6r8QC8vGQK3GRv7Yndn84TGNijX8YXHPiagXajyfTjoR87rXUu4G4QLk2cF8NNyqWiYMus1623dELWwx57rLCFqGh7N4ZRbGDRP4fnVcaKg1BcUxQ866Ven4gw8y4N56S5HzxXNBZtLYmhGHvDtk6PFkFwCvxYrNYjh\",\"client_ip\":\"%s\",\"client_port\":9706,\"node_ip\":\"%s\",\"node_port\":9705,\"services\":[\"VALIDATOR\"]},\"dest\":\"DKVxG2fXXTU8yT5N7hGEbXB3dfdAnYv1JczDUHpmDxya\"},\"metadata\":{\"from\":\"4cU41vWW82ArfxJxHkzXPG\"},\"type\":\"0\"},\"txnMetadata\":{\"seqNo\":3,\"txnId\":\"7e9f355dffa78ed24668f0e0e369fd8c224076571c51e2ea8be5f26479edebe4\"},\"ver\":\"1\"}\n", testPoolIp, testPoolIp),
-				String.format("{\"reqSignature\":{},\"txn\":{\"data\":{\"data\":{\"alias\":\"Node4\",\"blskey\":\"2zN3bHM1m4rLz54MJHYSwvqzPchYp8jkHswveCLAEJVcX6Mm1wHQD1SkPYMzUDTZvWvhuE6VNAkK3KxVeEmsanSmvjVkReDeBEMxeDaayjcZjFGPydyey1qxBHmTvAnBKoPydvuTAqx5f7YNNRAdeLmUi99gERUU7TD8KfAa6MpQ9bw\",\"blskey_pop\":\"RPLagxaR5xdimFzwmzYnz4ZhWtYQEj8iR5ZU53T2gitPCyCHQneUn2Huc4oeLd2B2HzkGnjAff4hWTJT6C7qHYB1Mv2wU5iHHGFWkhnTX9WsEAbunJCV2qcaXScKj4tTfvdDKfLiVuU2av6hbsMztirRze7LvYBkRHV3tGwyCptsrP\",\"client_ip\":\"%s\",\"client_port\":9708,\"node_ip\":\"%s\",\"node_port\":9707,\"services\":[\"VALIDATOR\"]},\"dest\":\"4PS3EDQ3dW1tci1Bp6543CfuuebjFrg36kLAUcskGfaA\"},\"metadata\":{\"from\":\"TWwCRQRZ2ZHMJFn9TzLp7W\"},\"type\":\"0\"},\"txnMetadata\":{\"seqNo\":4,\"txnId\":\"aa5e817d7cc626170eca175822029339a444eb0ee8f0bd20d3b0b76e566fb008\"},\"ver\":\"1\"}", testPoolIp, testPoolIp)
-		};
-
-		File file = new File(path);
-
-		FileUtils.forceMkdirParent(file);
-
-		FileWriter fw = new FileWriter(file);
-		for (String defaultTxn : defaultTxns) {
-			fw.write(defaultTxn);
-			fw.write("\n");
+
+	/**
+	 * System property that points to the genesis txns, either a file path or a 'classpath:' resource.
+	 */
+	public static final String GENESIS_PROPERTY = "indy.pool.genesis";
+
+	/**
+	 * Environment variable that is used when the system property is not set.
+	 */
+	public static final String GENESIS_ENV = "INDY_POOL_GENESIS";
+
+	/**
+	 * The default genesis txns, as in etc/pool-genesis.txs
+	 */
+	public static final String DEFAULT_GENESIS = "classpath:pool-genesis.txs";
+
+	// The IP that the genesis template uses for all nodes
+	private static final String GENESIS_TEMPLATE_IP = "127.0.0.1";
+
+	private static byte[] genesisContent;
+	private static File genesisFile;
+
+	/**
+	 * Get the location of the genesis txns from the system property, the environment or the default.
+	 */
+	public static String getGenesisLocation() {
+		String location = System.getProperty(GENESIS_PROPERTY);
+		if (location == null)
+			location = System.getenv(GENESIS_ENV);
+		return location != null ? location : DEFAULT_GENESIS;
+	}
+
+	/**
+	 * Get the genesis txns file with the test pool IP substituted.
+	 *
+	 * The content is loaded once and the file is only rewritten when its content differs.
+	 */
+	public static synchronized File getGenesisTxnFile() throws IOException {
+
+		// Already verified in this process, only check that it was not removed
+		if (genesisFile != null && genesisFile.length() == genesisContent.length)
+			return genesisFile;
+
+		if (genesisContent == null) {
+			String content = new String(loadGenesis(getGenesisLocation()), StandardCharsets.UTF_8);
+			String testPoolIp = EnvironmentUtils.getTestPoolIP();
+			content = content.replace("\"" + GENESIS_TEMPLATE_IP + "\"", "\"" + testPoolIp + "\"");
+			genesisContent = content.getBytes(StandardCharsets.UTF_8);
 		}
 
-		fw.close();
+		File file = new File(EnvironmentUtils.getTmpPath("pool-genesis.txs"));
+		if (!file.isFile() || !MessageDigest.isEqual(sha256(genesisContent), sha256(FileUtils.readFileToByteArray(file)))) {
+			FileUtils.writeByteArrayToFile(file, genesisContent);
+		}
 
+		genesisFile = file;
 		return file;
 	}
 
-	public static String createPoolLedgerConfig() throws IOException, InterruptedException, java.util.concurrent.ExecutionException, IndyException {
+	public static String createPoolLedgerConfig() throws IOException, InterruptedException, ExecutionException, IndyException {
 		return createPoolLedgerConfig(DEFAULT_POOL_NAME);
 	}
-	
-	public static String createPoolLedgerConfig(String name) throws IOException, InterruptedException, java.util.concurrent.ExecutionException, IndyException {
-		File genesisTxnFile = createGenesisTxnFile("temp.txn");
+
+	/**
+	 * Create the pool ledger config with the given name, unless it already exists.
+	 */
+	public static String createPoolLedgerConfig(String name) throws IOException, InterruptedException, ExecutionException, IndyException {
+		if (poolLedgerConfigExists(name))
+			return name;
+		File genesisTxnFile = getGenesisTxnFile();
 		PoolJSONParameters.CreatePoolLedgerConfigJSONParameter createPoolLedgerConfigJSONParameter
 				= new PoolJSONParameters.CreatePoolLedgerConfigJSONParameter(genesisTxnFile.getAbsolutePath());
-		Pool.createPoolLedgerConfig(name, createPoolLedgerConfigJSONParameter.toJson()).get();
+		try {
+			Pool.createPoolLedgerConfig(name, createPoolLedgerConfigJSONParameter.toJson()).get();
+		} catch (ExecutionException ex) {
+			if (!(ex.getCause() instanceof PoolLedgerConfigExistsException))
+				throw ex;
+		}
 		return name;
 	}
+
+	public static boolean poolLedgerConfigExists(String name) throws InterruptedException, ExecutionException, IndyException {
+		JSONArray pools = new JSONArray(Pool.listPools().get());
+		for (int i = 0; i < pools.length(); i++) {
+			if (name.equals(pools.getJSONObject(i).optString("pool")))
+				return true;
+		}
+		return false;
+	}
+
+	private static byte[] loadGenesis(String location) throws IOException {
+		if (location.startsWith("classpath:")) {
+			String resource = location.substring("classpath:".length());
+			try (InputStream in = PoolUtils.class.getClassLoader().getResourceAsStream(resource)) {
+				if (in == null)
+					throw new FileNotFoundException("Genesis resource not found: " + resource);
+				return IOUtils.toByteArray(in);
+			}
+		}
+		try (InputStream in = new FileInputStream(location)) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	private static byte[] sha256(byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
 }
@@ -0,0 +1,128 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the proof request json with a {@link JsonWriter}.
+ *
+ * Restrictions are given as cred def ids, which is the common case. Each one becomes a restriction of its own,
+ * so that a credential from any of the given cred defs is accepted.
+ */
+public class ProofRequestBuilder {
+
+	private final String name;
+	private final String version;
+	private final String nonce;
+	private final List<Attribute> attributes = new ArrayList<>();
+	private final List<Predicate> predicates = new ArrayList<>();
+	private Long nonRevokedFrom;
+	private Long nonRevokedTo;
+
+	public ProofRequestBuilder(String name, String version, String nonce) {
+		this.name = name;
+		this.version = version;
+		this.nonce = nonce;
+	}
+
+	/**
+	 * Request an attribute, which is self attested unless restricted to the given cred defs.
+	 */
+	public ProofRequestBuilder attribute(String referent, String attrName, String... credDefIds) {
+		attributes.add(new Attribute(referent, attrName, credDefIds));
+		return this;
+	}
+
+	/**
+	 * Request a predicate like 'average >= 4' over an attribute from the given cred defs.
+	 */
+	public ProofRequestBuilder predicate(String referent, String attrName, String pType, long pValue, String... credDefIds) {
+		predicates.add(new Predicate(referent, attrName, pType, pValue, credDefIds));
+		return this;
+	}
+
+	/**
+	 * Require credentials that are not revoked in the given interval. A null bound is left open.
+	 */
+	public ProofRequestBuilder nonRevoked(Long from, Long to) {
+		this.nonRevokedFrom = from;
+		this.nonRevokedTo = to;
+		return this;
+	}
+
+	public String build() {
+		JsonWriter writer = JsonWriter.local();
+		writer.beginObject()
+			.field("nonce", nonce)
+			.field("name", name)
+			.field("version", version);
+
+		writer.name("requested_attributes").beginObject();
+		for (Attribute attr : attributes) {
+			writer.name(attr.referent).beginObject().field("name", attr.name);
+			restrictions(writer, attr.credDefIds);
+			writer.endObject();
+		}
+		writer.endObject();
+
+		writer.name("requested_predicates").beginObject();
+		for (Predicate pred : predicates) {
+			writer.name(pred.referent).beginObject()
+				.field("name", pred.name)
+				.field("p_type", pred.pType)
+				.field("p_value", pred.pValue);
+			restrictions(writer, pred.credDefIds);
+			writer.endObject();
+		}
+		writer.endObject();
+
+		if (nonRevokedFrom != null || nonRevokedTo != null) {
+			writer.name("non_revoked").beginObject();
+			if (nonRevokedFrom != null) writer.field("from", nonRevokedFrom);
+			if (nonRevokedTo != null) writer.field("to", nonRevokedTo);
+			writer.endObject();
+		}
+
+		return writer.endObject().toString();
+	}
+
+	private static void restrictions(JsonWriter writer, String[] credDefIds) {
+		if (credDefIds.length > 0) {
+			writer.name("restrictions").beginArray();
+			for (String credDefId : credDefIds) {
+				writer.beginObject().field("cred_def_id", credDefId).endObject();
+			}
+			writer.endArray();
+		}
+	}
+
+	private static class Attribute {
+
+		final String referent;
+		final String name;
+		final String[] credDefIds;
+
+		Attribute(String referent, String name, String[] credDefIds) {
+			this.referent = referent;
+			this.name = name;
+			this.credDefIds = credDefIds;
+		}
+	}
+
+	private static class Predicate {
+
+		final String referent;
+		final String name;
+		final String pType;
+		final long pValue;
+		final String[] credDefIds;
+
+		Predicate(String referent, String name, String pType, long pValue, String[] credDefIds) {
+			this.referent = referent;
+			this.name = name;
+			this.pType = pType;
+			this.pValue = pValue;
+			this.credDefIds = credDefIds;
+		}
+	}
+}
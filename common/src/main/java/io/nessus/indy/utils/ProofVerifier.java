@@ -0,0 +1,356 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseRegistryResponseResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Verifies proofs in parallel, resolving the ledger artifacts of every proof through an {@link IndyClient}.
+ *
+ * Schemas, cred defs and revocation registry definitions come from the client's artifact cache, concurrent reads
+ * of the same revocation registry state are coalesced. The verifications run on a fixed number of threads.
+ * A batch keeps a bounded window of proofs in flight and the caller blocks while it is full.
+ *
+ * An optional {@link VerificationCache} returns the earlier result for a proof that is submitted again.
+ */
+public class ProofVerifier implements AutoCloseable {
+
+	public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	private final IndyClient client;
+	private final String submitterDid;
+	private final int parallelism;
+	private final int window;
+	private final ExecutorService executor;
+	private final VerificationCache cache;
+
+	public ProofVerifier(IndyClient client, String submitterDid) {
+		this(client, submitterDid, DEFAULT_PARALLELISM);
+	}
+
+	/**
+	 * @param submitterDid the DID that submits the ledger reads
+	 * @param parallelism the number of proofs that get verified at the same time
+	 */
+	public ProofVerifier(IndyClient client, String submitterDid, int parallelism) {
+		this(client, submitterDid, parallelism, null);
+	}
+
+	/**
+	 * @param cache the cache for verification results, or null
+	 */
+	public ProofVerifier(IndyClient client, String submitterDid, int parallelism, VerificationCache cache) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		this.client = client;
+		this.submitterDid = submitterDid;
+		this.parallelism = parallelism;
+		this.cache = cache;
+		// Enough to resolve the artifacts of the next proofs while the current ones verify
+		this.window = 4 * parallelism;
+		AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "ProofVerifier-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public VerificationCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Verify the given proof against its proof request.
+	 */
+	public CompletableFuture<Boolean> verify(String proofRequestJson, String proofJson) {
+		if (cache != null)
+			return IndyClient.async(() -> cache.load(proofRequestJson, proofJson, () -> verifyUncached(proofRequestJson, proofJson)));
+		return verifyUncached(proofRequestJson, proofJson);
+	}
+
+	/**
+	 * Verify the given proofs and wait for all verifications to complete.
+	 *
+	 * The calling thread feeds the window and blocks while it is full.
+	 */
+	public Report verify(Stream<ProofEntry> entries) throws InterruptedException {
+
+		Semaphore permits = new Semaphore(window);
+		List<ProofResult> results = new ArrayList<>();
+		long start = System.nanoTime();
+
+		try {
+			entries.forEachOrdered(entry -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted", ex);
+				}
+				ProofResult result = new ProofResult(entry);
+				results.add(result);
+				long itemStart = System.nanoTime();
+				verify(entry.proofRequestJson, entry.proofJson)
+					.whenComplete((res, th) -> {
+						result.complete(res, th, System.nanoTime() - itemStart);
+						permits.release();
+					});
+			});
+		} catch (IllegalStateException ex) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			throw ex;
+		}
+
+		// Wait for the window to drain
+		permits.acquire(window);
+		permits.release(window);
+
+		return new Report(results, System.nanoTime() - start);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private CompletableFuture<Boolean> verifyUncached(String proofRequestJson, String proofJson) {
+		return IndyClient.async(() -> resolve(proofJson))
+				.thenApplyAsync(artifacts -> verifyNow(proofRequestJson, proofJson, artifacts), executor);
+	}
+
+	// Runs on the executor, blocking a thread for every verification in progress
+	private Boolean verifyNow(String proofRequestJson, String proofJson, Artifacts artifacts) {
+		try {
+			return client.getCalls().verifierVerifyProof(proofRequestJson, proofJson,
+					artifacts.getSchemas(), artifacts.getCredDefs(), artifacts.getRevRegDefs(), artifacts.getRevRegs()).get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new CompletionException(ex);
+		} catch (ExecutionException ex) {
+			throw new CompletionException(ex.getCause());
+		}
+	}
+
+	private CompletableFuture<Artifacts> resolve(String proofJson) {
+
+		Artifacts artifacts = new Artifacts();
+		List<CompletableFuture<?>> futures = new ArrayList<>();
+
+		JSONArray identifiers = new JSONObject(proofJson).getJSONArray("identifiers");
+		for (int i = 0; i < identifiers.length(); i++) {
+			JSONObject identifier = identifiers.getJSONObject(i);
+			String schemaId = identifier.getString("schema_id");
+			String credDefId = identifier.getString("cred_def_id");
+			String revRegId = identifier.optString("rev_reg_id", null);
+			if (artifacts.add(artifacts.schemas, schemaId)) {
+				futures.add(client.getSchema(submitterDid, schemaId).thenAccept(json -> artifacts.put(artifacts.schemas, schemaId, json)));
+			}
+			if (artifacts.add(artifacts.credDefs, credDefId)) {
+				futures.add(client.getCredDef(submitterDid, credDefId).thenAccept(json -> artifacts.put(artifacts.credDefs, credDefId, json)));
+			}
+			if (revRegId != null) {
+				long timestamp = identifier.getLong("timestamp");
+				if (artifacts.add(artifacts.revRegDefs, revRegId)) {
+					futures.add(client.getRevocRegDef(submitterDid, revRegId).thenAccept(json -> artifacts.put(artifacts.revRegDefs, revRegId, json)));
+				}
+				String key = revRegId + "@" + timestamp;
+				if (artifacts.add(artifacts.revRegs, key)) {
+					futures.add(client.getRevocReg(submitterDid, revRegId, timestamp)
+						.thenApply(ParseRegistryResponseResult::getObjectJson)
+						.thenAccept(json -> artifacts.put(artifacts.revRegs, key, json)));
+				}
+			}
+		}
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+				.thenApply(nil -> artifacts);
+	}
+
+	// The object json by ledger id, revocation registries by id and timestamp
+	private static class Artifacts {
+
+		final Map<String, String> schemas = new TreeMap<>();
+		final Map<String, String> credDefs = new TreeMap<>();
+		final Map<String, String> revRegDefs = new TreeMap<>();
+		final Map<String, String> revRegs = new TreeMap<>();
+
+		// Reserve the given key, so that every artifact is read once
+		synchronized boolean add(Map<String, String> map, String key) {
+			return map.putIfAbsent(key, "") == null;
+		}
+
+		synchronized void put(Map<String, String> map, String key, String json) {
+			map.put(key, json);
+		}
+
+		synchronized String getSchemas() {
+			return toJson(schemas);
+		}
+
+		synchronized String getCredDefs() {
+			return toJson(credDefs);
+		}
+
+		synchronized String getRevRegDefs() {
+			return toJson(revRegDefs);
+		}
+
+		// {revRegId: {timestamp: revReg}}, the keys are sorted so that the entries of a registry are adjacent
+		synchronized String getRevRegs() {
+			JsonWriter writer = JsonWriter.local().beginObject();
+			String current = null;
+			for (Map.Entry<String, String> entry : revRegs.entrySet()) {
+				String key = entry.getKey();
+				int idx = key.lastIndexOf('@');
+				String revRegId = key.substring(0, idx);
+				if (!revRegId.equals(current)) {
+					if (current != null) writer.endObject();
+					writer.name(revRegId).beginObject();
+					current = revRegId;
+				}
+				writer.name(key.substring(idx + 1)).rawValue(entry.getValue());
+			}
+			if (current != null) writer.endObject();
+			return writer.endObject().toString();
+		}
+
+		private static String toJson(Map<String, String> map) {
+			JsonWriter writer = JsonWriter.local().beginObject();
+			for (Map.Entry<String, String> entry : map.entrySet()) {
+				writer.name(entry.getKey()).rawValue(entry.getValue());
+			}
+			return writer.endObject().toString();
+		}
+	}
+
+	/**
+	 * A proof and the proof request it answers.
+	 */
+	public static class ProofEntry {
+
+		final String proofRequestJson;
+		final String proofJson;
+
+		public ProofEntry(String proofRequestJson, String proofJson) {
+			this.proofRequestJson = proofRequestJson;
+			this.proofJson = proofJson;
+		}
+
+		public String getProofRequestJson() {
+			return proofRequestJson;
+		}
+
+		public String getProofJson() {
+			return proofJson;
+		}
+	}
+
+	public static class ProofResult {
+
+		private final ProofEntry entry;
+		private volatile boolean verified;
+		private volatile Throwable error;
+		private volatile long nanos;
+
+		ProofResult(ProofEntry entry) {
+			this.entry = entry;
+		}
+
+		void complete(Boolean verified, Throwable error, long nanos) {
+			this.verified = Boolean.TRUE.equals(verified);
+			this.error = error;
+			this.nanos = nanos;
+		}
+
+		public ProofEntry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * True if the proof was verified and is valid.
+		 */
+		public boolean isVerified() {
+			return verified;
+		}
+
+		/**
+		 * The error that prevented verification, or null.
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		public long getLatency(TimeUnit unit) {
+			return unit.convert(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	public static class Report {
+
+		private final List<ProofResult> results;
+		private final long elapsedNanos;
+
+		Report(List<ProofResult> results, long elapsedNanos) {
+			this.results = Collections.unmodifiableList(results);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public List<ProofResult> getResults() {
+			return results;
+		}
+
+		public int getVerifiedCount() {
+			return (int) results.stream().filter(ProofResult::isVerified).count();
+		}
+
+		public int getRejectedCount() {
+			return (int) results.stream().filter(res -> res.getError() == null && !res.isVerified()).count();
+		}
+
+		public int getFailureCount() {
+			return (int) results.stream().filter(res -> res.getError() != null).count();
+		}
+
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Completed verifications per second, including failed ones.
+		 */
+		public double getThroughput() {
+			return elapsedNanos > 0 ? results.size() * 1e9 / elapsedNanos : 0.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ProofReport[count=%d, verified=%d, rejected=%d, failed=%d, elapsed=%dms, throughput=%.1f/s]",
+					results.size(), getVerifiedCount(), getRejectedCount(), getFailureCount(), getElapsed(TimeUnit.MILLISECONDS), getThroughput());
+		}
+	}
+}
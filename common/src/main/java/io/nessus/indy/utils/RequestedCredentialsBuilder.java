@@ -0,0 +1,89 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the requested credentials json for creating a proof with a {@link JsonWriter}.
+ */
+public class RequestedCredentialsBuilder {
+
+	private final List<String[]> selfAttested = new ArrayList<>();
+	private final List<Entry> attributes = new ArrayList<>();
+	private final List<Entry> predicates = new ArrayList<>();
+
+	public RequestedCredentialsBuilder selfAttested(String referent, String value) {
+		selfAttested.add(new String[] { referent, value });
+		return this;
+	}
+
+	/**
+	 * Use the given credential for an attribute.
+	 *
+	 * @param timestamp the time of the revocation state, or null for a credential that cannot be revoked
+	 */
+	public RequestedCredentialsBuilder attribute(String referent, String credId, boolean revealed, Long timestamp) {
+		attributes.add(new Entry(referent, credId, revealed, timestamp));
+		return this;
+	}
+
+	public RequestedCredentialsBuilder attribute(String referent, String credId) {
+		return attribute(referent, credId, true, null);
+	}
+
+	public RequestedCredentialsBuilder predicate(String referent, String credId, Long timestamp) {
+		predicates.add(new Entry(referent, credId, false, timestamp));
+		return this;
+	}
+
+	public RequestedCredentialsBuilder predicate(String referent, String credId) {
+		return predicate(referent, credId, null);
+	}
+
+	public String build() {
+		JsonWriter writer = JsonWriter.local();
+		writer.beginObject();
+
+		writer.name("self_attested_attributes").beginObject();
+		for (String[] attr : selfAttested) {
+			writer.field(attr[0], attr[1]);
+		}
+		writer.endObject();
+
+		writer.name("requested_attributes").beginObject();
+		for (Entry entry : attributes) {
+			writer.name(entry.referent).beginObject()
+				.field("cred_id", entry.credId)
+				.field("revealed", entry.revealed);
+			if (entry.timestamp != null) writer.field("timestamp", entry.timestamp);
+			writer.endObject();
+		}
+		writer.endObject();
+
+		writer.name("requested_predicates").beginObject();
+		for (Entry entry : predicates) {
+			writer.name(entry.referent).beginObject()
+				.field("cred_id", entry.credId);
+			if (entry.timestamp != null) writer.field("timestamp", entry.timestamp);
+			writer.endObject();
+		}
+		writer.endObject();
+
+		return writer.endObject().toString();
+	}
+
+	private static class Entry {
+
+		final String referent;
+		final String credId;
+		final boolean revealed;
+		final Long timestamp;
+
+		Entry(String referent, String credId, boolean revealed, Long timestamp) {
+			this.referent = referent;
+			this.credId = credId;
+			this.revealed = revealed;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,308 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the registry deltas of an issuer and publishes one merged registry entry per registry and window.
+ *
+ * Revocations are applied to the issuer wallet right away, so that the caller learns about an invalid revocation.
+ * Their deltas are merged and the caller's future completes once the merged entry is on the ledger.
+ *
+ * The ledger only accepts an entry whose previous accumulator matches the current one. All updates of a registry
+ * must therefore be published in the order they were made, which is why issuance can be run through here too.
+ *
+ * An entry that cannot be sent stays pending, later deltas are merged after it and the next flush tries again.
+ * An entry that the ledger rejects, or that still cannot be sent after the configured number of attempts, leaves the
+ * wallet ahead of the ledger. The registry is then out of sync: its pending deltas are dropped, their callers fail,
+ * later updates are refused and the out of sync listener is told. Repairing the registry is up to the issuer.
+ */
+public class RevocationBatcher implements AutoCloseable {
+
+	public static final long DEFAULT_WINDOW = 1000L;
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, Batch> batches = new ConcurrentHashMap<>();
+	private final Set<String> outOfSync = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService scheduler;
+	private final IndyClient client;
+	private final TailsStore tailsStore;
+	private final Wallet wallet;
+	private final String issuerDid;
+	private final long window;
+	private final int maxAttempts;
+
+	private final AtomicLong deltas = new AtomicLong();
+	private final AtomicLong entries = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private volatile BiConsumer<String, Throwable> outOfSyncListener;
+
+	public RevocationBatcher(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid) {
+		this(client, tailsStore, wallet, issuerDid, DEFAULT_WINDOW);
+	}
+
+	public RevocationBatcher(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid, long window) {
+		this(client, tailsStore, wallet, issuerDid, window, DEFAULT_MAX_ATTEMPTS);
+	}
+
+	/**
+	 * @param window time in milliseconds between publications
+	 * @param maxAttempts the number of flushes that try to send an entry before its registry is out of sync
+	 */
+	public RevocationBatcher(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid, long window, int maxAttempts) {
+		if (window < 1)
+			throw new IllegalArgumentException("Invalid window: " + window);
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("Invalid max attempts: " + maxAttempts);
+		this.client = client;
+		this.tailsStore = tailsStore;
+		this.wallet = wallet;
+		this.issuerDid = issuerDid;
+		this.window = window;
+		this.maxAttempts = maxAttempts;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "RevocationBatcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::flushQuietly, window, window, TimeUnit.MILLISECONDS);
+	}
+
+	public long getWindow() {
+		return window;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * Set the listener that gets the id of a registry that went out of sync, and the failure that caused it.
+	 */
+	public void setOutOfSyncListener(BiConsumer<String, Throwable> listener) {
+		this.outOfSyncListener = listener;
+	}
+
+	/**
+	 * Revoke the given credential in the issuer wallet and queue its delta.
+	 *
+	 * @return the future ledger response for the registry entry that contains the revocation
+	 */
+	public CompletableFuture<String> revoke(String revRegId, String credRevId) throws InterruptedException, ExecutionException, IndyException {
+		String revRegDefJson = client.getRevocRegDef(issuerDid, revRegId).get();
+		int readerHandle = tailsStore.getReaderFor(revRegDefJson).getHandle();
+		return update(revRegId, () -> client.getCalls().issuerRevokeCredential(wallet, readerHandle, revRegId, credRevId).get());
+	}
+
+	/**
+	 * Run the given update of a registry in the issuer wallet, for example an issuance, and queue the delta it returns.
+	 *
+	 * Updates of the same registry run one at a time, so that their deltas are queued in the order they were made.
+	 *
+	 * @return the future ledger response for the registry entry that contains the delta
+	 */
+	public CompletableFuture<String> update(String revRegId, RegistryUpdate update) throws InterruptedException, ExecutionException, IndyException {
+		Batch batch = batches.computeIfAbsent(revRegId, Batch::new);
+		synchronized (batch) {
+			if (outOfSync.contains(revRegId))
+				throw new IllegalStateException("Registry out of sync with the ledger: " + revRegId);
+			return batch.add(update.apply());
+		}
+	}
+
+	/**
+	 * A change of a revocation registry in the issuer wallet that returns the registry delta.
+	 */
+	@FunctionalInterface
+	public interface RegistryUpdate {
+		String apply() throws InterruptedException, ExecutionException, IndyException;
+	}
+
+	/**
+	 * Publish the pending deltas of every registry now.
+	 */
+	public synchronized void flush() {
+		for (Batch batch : new ArrayList<>(batches.values())) {
+			String merged;
+			List<CompletableFuture<String>> waiters;
+			synchronized (batch) {
+				merged = batch.merged;
+				waiters = batch.waiters;
+				batch.merged = null;
+				batch.waiters = new ArrayList<>();
+			}
+			if (merged != null) {
+				publishEntry(batch, merged, waiters);
+			}
+		}
+	}
+
+	/**
+	 * The number of deltas that were queued.
+	 */
+	public long getDeltaCount() {
+		return deltas.get();
+	}
+
+	/**
+	 * The number of registry entries that were written.
+	 */
+	public long getEntryCount() {
+		return entries.get();
+	}
+
+	/**
+	 * The number of failed publications that were kept for the next flush.
+	 */
+	public long getRetryCount() {
+		return retries.get();
+	}
+
+	/**
+	 * The registries whose wallet state is ahead of the ledger.
+	 */
+	public Set<String> getOutOfSync() {
+		return Collections.unmodifiableSet(outOfSync);
+	}
+
+	public boolean isOutOfSync(String revRegId) {
+		return outOfSync.contains(revRegId);
+	}
+
+	/**
+	 * Publish the pending deltas and stop the timer.
+	 *
+	 * Callers of an entry that still cannot be published fail, the wallet stays ahead of the ledger.
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdown();
+		flush();
+		for (Batch batch : batches.values()) {
+			synchronized (batch) {
+				if (batch.merged != null) {
+					log.error("Registry entry not published, the wallet is ahead of the ledger: {}", batch.revRegId);
+					IllegalStateException ex = new IllegalStateException("Registry entry not published: " + batch.revRegId);
+					batch.waiters.forEach(f -> f.completeExceptionally(ex));
+					batch.waiters = new ArrayList<>();
+				}
+			}
+		}
+	}
+
+	// Publication waits for the ledger reply, so that the next entry of the registry follows this one
+	private void publishEntry(Batch batch, String merged, List<CompletableFuture<String>> waiters) {
+		try {
+			String request = client.getCalls().buildRevocRegEntryRequest(issuerDid, batch.revRegId, "CL_ACCUM", merged).get();
+			String response = client.signAndSubmit(wallet, issuerDid, request).get();
+			synchronized (batch) {
+				batch.attempts = 0;
+			}
+			entries.incrementAndGet();
+			log.debug("Published {} deltas for: {}", waiters.size(), batch.revRegId);
+			waiters.forEach(f -> f.complete(response));
+		} catch (Exception ex) {
+			if (ex instanceof InterruptedException)
+				Thread.currentThread().interrupt();
+			Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+			if (LedgerNackException.isNack(cause)) {
+				// The same entry would be rejected again
+				outOfSync(batch, waiters, cause);
+			} else {
+				retry(batch, merged, waiters, cause);
+			}
+		}
+	}
+
+	// Put the unpublished delta back in front of the deltas that were queued meanwhile
+	private void retry(Batch batch, String failed, List<CompletableFuture<String>> failedWaiters, Throwable cause) {
+		retries.incrementAndGet();
+		synchronized (batch) {
+			if (++batch.attempts >= maxAttempts) {
+				outOfSync(batch, failedWaiters, cause);
+				return;
+			}
+			try {
+				batch.merged = batch.merged != null ? batch.merge(failed, batch.merged) : failed;
+			} catch (Exception ex) {
+				if (ex instanceof InterruptedException)
+					Thread.currentThread().interrupt();
+				outOfSync(batch, failedWaiters, ex);
+				return;
+			}
+			List<CompletableFuture<String>> waiters = new ArrayList<>(failedWaiters);
+			waiters.addAll(batch.waiters);
+			batch.waiters = waiters;
+			log.warn("Cannot publish registry entry for: {}, attempt {} of {}: {}", batch.revRegId, batch.attempts, maxAttempts, cause.toString());
+		}
+	}
+
+	// Drop the pending deltas, none of them can be published on top of the ledger state
+	private void outOfSync(Batch batch, List<CompletableFuture<String>> failedWaiters, Throwable cause) {
+		List<CompletableFuture<String>> waiters = new ArrayList<>(failedWaiters);
+		synchronized (batch) {
+			outOfSync.add(batch.revRegId);
+			waiters.addAll(batch.waiters);
+			batch.merged = null;
+			batch.waiters = new ArrayList<>();
+			batch.attempts = 0;
+		}
+		log.error("Registry out of sync, the wallet is ahead of the ledger: " + batch.revRegId, cause);
+		waiters.forEach(f -> f.completeExceptionally(cause));
+		BiConsumer<String, Throwable> listener = outOfSyncListener;
+		if (listener != null) {
+			listener.accept(batch.revRegId, cause);
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException ex) {
+			log.error("Cannot flush revocations", ex);
+		}
+	}
+
+	// The merged delta of one registry that is not published yet
+	private class Batch {
+
+		final String revRegId;
+		String merged;
+		List<CompletableFuture<String>> waiters = new ArrayList<>();
+		int attempts;
+
+		Batch(String revRegId) {
+			this.revRegId = revRegId;
+		}
+
+		// Called while holding the batch lock
+		CompletableFuture<String> add(String delta) throws InterruptedException, ExecutionException, IndyException {
+			merged = merged != null ? merge(merged, delta) : delta;
+			deltas.incrementAndGet();
+			CompletableFuture<String> future = new CompletableFuture<>();
+			waiters.add(future);
+			return future;
+		}
+
+		String merge(String prev, String next) throws InterruptedException, ExecutionException, IndyException {
+			return client.getCalls().issuerMergeRevocationRegistryDeltas(prev, next).get();
+		}
+	}
+}
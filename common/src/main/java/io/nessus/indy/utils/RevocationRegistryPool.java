@@ -0,0 +1,333 @@
+package io.nessus.indy.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageWriter;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.utils.TailsStore.TailsReader;
+
+/**
+ * Keeps a number of active revocation registries and spare ones for every cred def of an issuer.
+ *
+ * Creating a registry generates its tails file and writes the definition and the first entry to the ledger.
+ * Spare registries are created on a background thread, so that they are ready when an active one is full.
+ *
+ * Issuances into one registry must run one after the other, since each of them changes the accumulator. The slots
+ * are therefore handed out round-robin over the active registries, so that as many issuances can run at the same
+ * time. Reservation and rollover happen under the lock of the cred def, no two issuances get the same slot.
+ */
+public class RevocationRegistryPool implements AutoCloseable {
+
+	public static final int DEFAULT_SPARE = 1;
+	public static final int DEFAULT_PARALLELISM = 1;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, CredDefRegistries> registries = new ConcurrentHashMap<>();
+	private final ExecutorService executor;
+	private final IndyClient client;
+	private final TailsStore tailsStore;
+	private final Wallet wallet;
+	private final String issuerDid;
+	private final int maxCredNum;
+	private final int spare;
+	private final int parallelism;
+
+	// Registry tags must be unique per cred def, also across restarts
+	private final AtomicLong tags = new AtomicLong(System.currentTimeMillis());
+	private final AtomicLong rollovers = new AtomicLong();
+	private final AtomicLong stalls = new AtomicLong();
+
+	public RevocationRegistryPool(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid, int maxCredNum) {
+		this(client, tailsStore, wallet, issuerDid, maxCredNum, DEFAULT_SPARE);
+	}
+
+	public RevocationRegistryPool(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid, int maxCredNum, int spare) {
+		this(client, tailsStore, wallet, issuerDid, maxCredNum, spare, DEFAULT_PARALLELISM);
+	}
+
+	/**
+	 * @param maxCredNum the number of credentials in every registry
+	 * @param spare the number of registries kept ready per cred def, with none a registry is created when needed
+	 * @param parallelism the number of active registries per cred def, usually that of the {@link IssuancePipeline}
+	 */
+	public RevocationRegistryPool(IndyClient client, TailsStore tailsStore, Wallet wallet, String issuerDid, int maxCredNum, int spare, int parallelism) {
+		if (maxCredNum < 1)
+			throw new IllegalArgumentException("Invalid max cred num: " + maxCredNum);
+		if (spare < 0)
+			throw new IllegalArgumentException("Invalid spare: " + spare);
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		this.client = client;
+		this.tailsStore = tailsStore;
+		this.wallet = wallet;
+		this.issuerDid = issuerDid;
+		this.maxCredNum = maxCredNum;
+		this.spare = spare;
+		this.parallelism = parallelism;
+		this.executor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "RevocationRegistryPool");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public int getMaxCredNum() {
+		return maxCredNum;
+	}
+
+	public int getSpare() {
+		return spare;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Start creating the active and spare registries for the given cred def.
+	 *
+	 * @return completes when the registries in creation are ready
+	 */
+	public CompletableFuture<Void> provision(String credDefId) {
+		CredDefRegistries entry = registries.computeIfAbsent(credDefId, CredDefRegistries::new);
+		synchronized (entry) {
+			entry.replenish();
+			return CompletableFuture.allOf(entry.ready.toArray(new CompletableFuture<?>[0]));
+		}
+	}
+
+	/**
+	 * Reserve one credential slot in an active registry of the given cred def.
+	 *
+	 * Consecutive calls get slots in different active registries. A full registry is replaced by the next ready
+	 * one. The caller only waits when no registry is active and none is ready. A slot that is reserved, but not
+	 * issued, stays unused.
+	 */
+	public Registry acquire(String credDefId) throws InterruptedException, ExecutionException, IndyException {
+		CredDefRegistries entry = registries.computeIfAbsent(credDefId, CredDefRegistries::new);
+		synchronized (entry) {
+			return entry.reserve();
+		}
+	}
+
+	/**
+	 * The number of registries that are ready or in creation for the given cred def.
+	 */
+	public int getReadyCount(String credDefId) {
+		CredDefRegistries entry = registries.get(credDefId);
+		if (entry == null)
+			return 0;
+		synchronized (entry) {
+			return entry.ready.size();
+		}
+	}
+
+	/**
+	 * The registries of the given cred def that currently take issuances.
+	 */
+	public List<Registry> getActive(String credDefId) {
+		CredDefRegistries entry = registries.get(credDefId);
+		if (entry == null)
+			return new ArrayList<>();
+		synchronized (entry) {
+			return new ArrayList<>(entry.active);
+		}
+	}
+
+	/**
+	 * The number of times an active registry was replaced.
+	 */
+	public long getRolloverCount() {
+		return rollovers.get();
+	}
+
+	/**
+	 * The number of rollovers that had to wait for a registry to be created.
+	 */
+	public long getStallCount() {
+		return stalls.get();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+		for (CredDefRegistries entry : registries.values()) {
+			synchronized (entry) {
+				entry.ready.forEach(future -> future.cancel(false));
+				entry.ready.clear();
+			}
+		}
+	}
+
+	private Registry createRegistry(String credDefId) throws InterruptedException, ExecutionException, IndyException {
+
+		String tag = "R" + Long.toString(tags.incrementAndGet(), 36);
+		String config = new JSONObject().put("issuance_type", "ISSUANCE_ON_DEMAND").put("max_cred_num", maxCredNum).toString();
+		BlobStorageWriter tailsWriter = tailsStore.openWriter();
+		IssuerCreateAndStoreRevocRegResult result = client.getCalls()
+				.issuerCreateAndStoreRevocReg(wallet, issuerDid, null, tag, credDefId, config, tailsWriter).get();
+		String revRegId = result.getRevRegId();
+		String revRegDefJson = result.getRevRegDefJson();
+
+		String defRequest = client.getCalls().buildRevocRegDefRequest(issuerDid, revRegDefJson).get();
+		client.signAndSubmit(wallet, issuerDid, defRequest).get();
+		String entryRequest = client.getCalls().buildRevocRegEntryRequest(issuerDid, revRegId, "CL_ACCUM", result.getRevRegEntryJson()).get();
+		client.signAndSubmit(wallet, issuerDid, entryRequest).get();
+
+		// Open and prefetch the tails before the first issuance needs them
+		TailsReader reader = tailsStore.getReaderFor(revRegDefJson);
+		log.debug("Created revocation registry: {}", revRegId);
+		return new Registry(revRegId, revRegDefJson, reader, maxCredNum);
+	}
+
+	// The registries of one cred def, guarded by its lock
+	private class CredDefRegistries {
+
+		final String credDefId;
+		final Deque<CompletableFuture<Registry>> ready = new ArrayDeque<>();
+		final List<Registry> active = new ArrayList<>();
+		int next;
+
+		CredDefRegistries(String credDefId) {
+			this.credDefId = credDefId;
+		}
+
+		// The registries that are missing from the active ones, plus the spare ones
+		void replenish() {
+			while (active.size() + ready.size() < parallelism + spare) {
+				ready.add(submit());
+			}
+		}
+
+		CompletableFuture<Registry> submit() {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return createRegistry(credDefId);
+				} catch (Exception ex) {
+					log.error("Cannot create revocation registry for: " + credDefId, ex);
+					if (ex instanceof InterruptedException)
+						Thread.currentThread().interrupt();
+					throw new CompletionException(ex instanceof ExecutionException ? ex.getCause() : ex);
+				}
+			}, executor);
+		}
+
+		Registry reserve() throws InterruptedException, ExecutionException {
+			try {
+				for (Registry registry : new ArrayList<>(active)) {
+					if (registry.isFull()) {
+						active.remove(registry);
+						rollovers.incrementAndGet();
+						log.info("Revocation registry full: {}", registry.revRegId);
+					}
+				}
+
+				// Ready registries fill the free places without waiting, a failed creation is dropped
+				while (active.size() < parallelism && !ready.isEmpty() && ready.peek().isDone()) {
+					CompletableFuture<Registry> future = ready.poll();
+					if (!future.isCompletedExceptionally()) {
+						activate(future.get());
+					}
+				}
+				if (active.isEmpty()) {
+					CompletableFuture<Registry> future = !ready.isEmpty() ? ready.poll() : submit();
+					stalls.incrementAndGet();
+					log.warn("Waiting for revocation registry of: {}", credDefId);
+					activate(future.get());
+				}
+
+				// Only this lock reserves slots, an active registry that is not full has one
+				Registry registry = active.get(next % active.size());
+				next = (next + 1) % active.size();
+				registry.reserve();
+				return registry;
+			} finally {
+				replenish();
+			}
+		}
+
+		void activate(Registry registry) {
+			log.debug("Revocation registry active: {}", registry.revRegId);
+			active.add(registry);
+		}
+	}
+
+	/**
+	 * A revocation registry on the ledger and the number of credentials issued from it.
+	 */
+	public static class Registry {
+
+		private final String revRegId;
+		private final String revRegDefJson;
+		private final TailsReader tailsReader;
+		private final int maxCredNum;
+		private final AtomicInteger reserved = new AtomicInteger();
+
+		Registry(String revRegId, String revRegDefJson, TailsReader tailsReader, int maxCredNum) {
+			this.revRegId = revRegId;
+			this.revRegDefJson = revRegDefJson;
+			this.tailsReader = tailsReader;
+			this.maxCredNum = maxCredNum;
+		}
+
+		public String getRevRegId() {
+			return revRegId;
+		}
+
+		public String getRevRegDefJson() {
+			return revRegDefJson;
+		}
+
+		public TailsReader getTailsReader() {
+			return tailsReader;
+		}
+
+		public int getMaxCredNum() {
+			return maxCredNum;
+		}
+
+		/**
+		 * The number of reserved slots.
+		 */
+		public int getReservedCount() {
+			return reserved.get();
+		}
+
+		public boolean isFull() {
+			return reserved.get() >= maxCredNum;
+		}
+
+		boolean reserve() {
+			int count;
+			do {
+				count = reserved.get();
+				if (count >= maxCredNum)
+					return false;
+			} while (!reserved.compareAndSet(count, count + 1));
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Registry[id=%s, reserved=%d, max=%d]", revRegId, getReservedCount(), maxCredNum);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseRegistryResponseResult;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last revocation state of every credential a holder proves and moves it forward as needed.
+ *
+ * Creating a revocation state from scratch touches the whole tails file. A cached state that lies in the requested
+ * non-revoked interval is used as is. A state that is too old is updated with the registry delta since its timestamp,
+ * which only covers the credentials issued or revoked since then.
+ *
+ * The timestamp of a state is that of the registry entry it was computed from. When there is no entry in the
+ * requested interval, the state of the last entry before it is still current. It is returned with a timestamp in
+ * the interval, at which the verifier reads the same registry state.
+ */
+public class RevocationStateStore {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, StateEntry> entries = new ConcurrentHashMap<>();
+	private final IndyClient client;
+	private final TailsStore tailsStore;
+	private final String submitterDid;
+
+	/**
+	 * @param submitterDid the DID that submits the ledger reads
+	 */
+	public RevocationStateStore(IndyClient client, TailsStore tailsStore, String submitterDid) {
+		this.client = client;
+		this.tailsStore = tailsStore;
+		this.submitterDid = submitterDid;
+	}
+
+	/**
+	 * Get a revocation state for the given credential in the given non-revoked interval.
+	 *
+	 * The timestamp of the returned state lies in the interval.
+	 *
+	 * @param from the start of the interval, or null
+	 * @param to the end of the interval
+	 */
+	public RevocationState getState(String revRegId, String credRevId, Long from, long to) throws InterruptedException, ExecutionException, IndyException {
+		StateEntry entry = entries.computeIfAbsent(revRegId + ":" + credRevId, key -> new StateEntry(revRegId, credRevId));
+		return entry.getState(from, to);
+	}
+
+	/**
+	 * The number of credentials with a cached state.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Drop the cached state for the given credential.
+	 */
+	public void remove(String revRegId, String credRevId) {
+		entries.remove(revRegId + ":" + credRevId);
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * A revocation state json and the ledger time it was computed for.
+	 */
+	public static class RevocationState {
+
+		private final String revRegId;
+		private final String json;
+		private final long timestamp;
+
+		RevocationState(String revRegId, String json, long timestamp) {
+			this.revRegId = revRegId;
+			this.json = json;
+			this.timestamp = timestamp;
+		}
+
+		public String getRevRegId() {
+			return revRegId;
+		}
+
+		public String getJson() {
+			return json;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		/**
+		 * The revocation states json that creating a proof takes, {revRegId: {timestamp: state}}.
+		 */
+		public String toStatesJson() {
+			return new JSONObject().put(revRegId, new JSONObject().put("" + timestamp, new JSONObject(json))).toString();
+		}
+
+		// The same state at a later time without a registry entry in between
+		RevocationState at(long later) {
+			String laterJson = new JSONObject(json).put("timestamp", later).toString();
+			return new RevocationState(revRegId, laterJson, later);
+		}
+	}
+
+	// Concurrent proofs with the same credential wait for one update
+	private class StateEntry {
+
+		final String revRegId;
+		final String credRevId;
+		RevocationState state;
+		// The state is known to be current up to this time
+		long currentTo;
+
+		StateEntry(String revRegId, String credRevId) {
+			this.revRegId = revRegId;
+			this.credRevId = credRevId;
+		}
+
+		synchronized RevocationState getState(Long from, long to) throws InterruptedException, ExecutionException, IndyException {
+
+			// Without a start, the state must be current at the end of the interval
+			long since = from != null ? from : to;
+			if (state != null && state.timestamp <= to && since <= currentTo)
+				return inInterval(state, from, to);
+
+			String revRegDefJson = client.getRevocRegDef(submitterDid, revRegId).get();
+			int readerHandle = tailsStore.getReaderFor(revRegDefJson).getHandle();
+
+			RevocationState result;
+			if (state != null && state.timestamp <= to) {
+				ParseRegistryResponseResult delta = client.getRevocRegDelta(submitterDid, revRegId, state.timestamp, to).get();
+				if (delta.getTimestamp() == state.timestamp) {
+					// No registry entry since the cached state
+					currentTo = Math.max(currentTo, to);
+					return inInterval(state, from, to);
+				}
+				log.debug("Update revocation state: {}:{} from {} to {}", revRegId, credRevId, state.timestamp, delta.getTimestamp());
+				RevocationState prev = state;
+				String json = client.getCalls().updateRevocationState(readerHandle, prev.json,
+						revRegDefJson, delta.getObjectJson(), delta.getTimestamp(), credRevId).get();
+				result = new RevocationState(revRegId, json, delta.getTimestamp());
+			} else {
+				ParseRegistryResponseResult delta = client.getRevocRegDelta(submitterDid, revRegId, -1, to).get();
+				log.debug("Create revocation state: {}:{} at {}", revRegId, credRevId, delta.getTimestamp());
+				String json = client.getCalls().createRevocationState(readerHandle,
+						revRegDefJson, delta.getObjectJson(), delta.getTimestamp(), credRevId).get();
+				result = new RevocationState(revRegId, json, delta.getTimestamp());
+			}
+
+			// A state for an earlier interval does not replace a later one
+			if (state == null || state.timestamp < result.timestamp) {
+				state = result;
+				currentTo = to;
+			}
+			return inInterval(result, from, to);
+		}
+
+		// The registry did not change between the state and the time it is known to be current to
+		private RevocationState inInterval(RevocationState result, Long from, long to) {
+			return from == null || result.timestamp >= from ? result : result.at(Math.min(to, currentTo));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package io.nessus.indy.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key, so that only the first caller runs the loader.
+ *
+ * Every concurrent duplicate waits on the result of that first call.
+ * Once the call completed, the next caller with the same key runs the loader again.
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+
+		CompletableFuture<V> promise = new CompletableFuture<>();
+		CompletableFuture<V> existing = inflight.putIfAbsent(key, promise);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return copy(existing);
+		}
+
+		CompletableFuture<V> future;
+		try {
+			future = loader.get();
+		} catch (RuntimeException ex) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(ex);
+		}
+
+		future.whenComplete((val, th) -> {
+			inflight.remove(key, promise);
+			if (th != null) promise.completeExceptionally(th);
+			else promise.complete(val);
+		});
+
+		return copy(promise);
+	}
+
+	/**
+	 * The number of calls in flight.
+	 */
+	public int size() {
+		return inflight.size();
+	}
+
+	/**
+	 * The number of calls that joined a call in flight.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	// A caller that completes or cancels its future must not affect the others
+	private CompletableFuture<V> copy(CompletableFuture<V> future) {
+		return future.thenApply(val -> val);
+	}
+}
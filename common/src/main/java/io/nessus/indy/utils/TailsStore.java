@@ -0,0 +1,253 @@
+package io.nessus.indy.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageReader;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageWriter;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one shared blob storage reader for the tails files in a base directory.
+ *
+ * Libindy cannot close a blob storage reader, so opening a reader for every issuance or revocation state leaks handles.
+ * The reader config only names the base directory and libindy opens the tails file by its hash on every read. The store
+ * therefore opens one reader and hands it to all threads, together with a {@link TailsReader} per tails hash.
+ *
+ * Libindy reads the tails itself. The store maps the tails file and prefetches it, so that those reads hit the page cache.
+ * Closing a tails reader drops the reference to its mapping, Java unmaps it once the buffers are garbage collected.
+ * The libindy handle stays valid until the process ends.
+ */
+public class TailsStore implements AutoCloseable {
+
+	/** The size of the tails file header */
+	public static final int HEADER_SIZE = 2;
+	/** The size of one tail, a point in G2 */
+	public static final int TAIL_SIZE = 128;
+
+	private static final TailsStore INSTANCE = new TailsStore(EnvironmentUtils.getIndyHomePath("tails"), true);
+
+	// Files above 2GB need more than one mapping
+	private static final long CHUNK_SIZE = 1L << 30;
+	private static final int PAGE_SIZE = 4096;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, TailsReader> readers = new ConcurrentHashMap<>();
+	private final String baseDir;
+	private final boolean prefetch;
+	private CompletableFuture<BlobStorageReader> blobReader;
+
+	/**
+	 * @param prefetch load every tails file into memory when its reader is opened
+	 */
+	public TailsStore(String baseDir, boolean prefetch) {
+		this.baseDir = baseDir;
+		this.prefetch = prefetch;
+	}
+
+	public static TailsStore getDefault() {
+		return INSTANCE;
+	}
+
+	public String getBaseDir() {
+		return baseDir;
+	}
+
+	/**
+	 * The blob storage config for the 'default' reader and writer type.
+	 */
+	public String getConfig() {
+		return new JSONObject().put("base_dir", baseDir).put("uri_pattern", "").toString();
+	}
+
+	/**
+	 * Open a writer for the tails file of a new revocation registry.
+	 */
+	public BlobStorageWriter openWriter() throws InterruptedException, ExecutionException, IndyException {
+		return IndyCalls.getDefault().openWriter("default", getConfig()).get();
+	}
+
+	/**
+	 * Get the shared reader for the tails file of the given revocation registry definition.
+	 */
+	public TailsReader getReaderFor(String revRegDefJson) throws InterruptedException, ExecutionException, IndyException {
+		String tailsHash = new JSONObject(revRegDefJson).getJSONObject("value").getString("tailsHash");
+		return getReader(tailsHash);
+	}
+
+	/**
+	 * Get the shared reader for the given tails hash, opening it as needed.
+	 *
+	 * The thread that opens the reader also prefetches the tails, others get the reader without waiting for that.
+	 */
+	public TailsReader getReader(String tailsHash) throws InterruptedException, ExecutionException, IndyException {
+		TailsReader reader = readers.get(tailsHash);
+		if (reader != null)
+			return reader;
+		TailsReader created = new TailsReader(tailsHash, new File(baseDir, tailsHash), getBlobReader());
+		reader = readers.putIfAbsent(tailsHash, created);
+		if (reader != null)
+			return reader;
+		log.debug("Open tails reader: {}", tailsHash);
+		if (prefetch) {
+			created.prefetch();
+		}
+		return created;
+	}
+
+	/**
+	 * The number of open readers.
+	 */
+	public int getReaderCount() {
+		return readers.size();
+	}
+
+	/**
+	 * Close the reader for the given tails hash, for example when its registry is retired.
+	 *
+	 * @return false if there is no such reader
+	 */
+	public boolean close(String tailsHash) {
+		TailsReader reader = readers.remove(tailsHash);
+		if (reader != null) {
+			reader.close();
+		}
+		return reader != null;
+	}
+
+	@Override
+	public void close() {
+		for (String tailsHash : new ArrayList<>(readers.keySet())) {
+			close(tailsHash);
+		}
+	}
+
+	// Opened once, a failed open is tried again
+	private BlobStorageReader getBlobReader() throws InterruptedException, ExecutionException {
+		CompletableFuture<BlobStorageReader> future;
+		synchronized (this) {
+			if (blobReader == null || blobReader.isCompletedExceptionally()) {
+				blobReader = IndyCalls.getDefault().openReader("default", getConfig());
+			}
+			future = blobReader;
+		}
+		return future.get();
+	}
+
+	/**
+	 * The blob storage reader for a tails file and the memory mapping of that file.
+	 */
+	public static class TailsReader {
+
+		private final String tailsHash;
+		private final File file;
+		private final BlobStorageReader reader;
+		private volatile List<MappedByteBuffer> chunks;
+		private volatile boolean closed;
+
+		private TailsReader(String tailsHash, File file, BlobStorageReader reader) {
+			this.tailsHash = tailsHash;
+			this.file = file;
+			this.reader = reader;
+		}
+
+		public String getTailsHash() {
+			return tailsHash;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * The libindy blob storage reader handle.
+		 */
+		public int getHandle() {
+			if (closed)
+				throw new IllegalStateException("Tails reader closed: " + tailsHash);
+			return reader.getBlobStorageReaderHandle();
+		}
+
+		/**
+		 * The number of tails in the file.
+		 */
+		public long getTailsCount() {
+			return Math.max(0, (file.length() - HEADER_SIZE) / TAIL_SIZE);
+		}
+
+		/**
+		 * Load the whole tails file into memory.
+		 */
+		public void prefetch() {
+			for (MappedByteBuffer chunk : chunks()) {
+				chunk.load();
+			}
+		}
+
+		/**
+		 * Load the given range of tails into memory.
+		 */
+		public void prefetch(long fromTail, long count) {
+			long start = HEADER_SIZE + fromTail * TAIL_SIZE;
+			long end = Math.min(file.length(), start + count * TAIL_SIZE);
+			List<MappedByteBuffer> mapped = chunks();
+			// Touch one byte per page
+			for (long pos = start; pos < end; pos += PAGE_SIZE - pos % PAGE_SIZE) {
+				mapped.get((int) (pos / CHUNK_SIZE)).get((int) (pos % CHUNK_SIZE));
+			}
+		}
+
+		public boolean isClosed() {
+			return closed;
+		}
+
+		// The buffers are unmapped when they are garbage collected
+		void close() {
+			closed = true;
+			chunks = null;
+		}
+
+		private List<MappedByteBuffer> chunks() {
+			if (closed)
+				throw new IllegalStateException("Tails reader closed: " + tailsHash);
+			List<MappedByteBuffer> result = chunks;
+			if (result == null) {
+				synchronized (this) {
+					result = chunks;
+					if (result == null) {
+						result = map();
+						chunks = result;
+					}
+				}
+			}
+			return result;
+		}
+
+		// The mapping stays valid after the channel is closed
+		private List<MappedByteBuffer> map() {
+			List<MappedByteBuffer> result = new ArrayList<>();
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				for (long pos = 0; pos < size; pos += CHUNK_SIZE) {
+					result.add(channel.map(MapMode.READ_ONLY, pos, Math.min(CHUNK_SIZE, size - pos)));
+				}
+			} catch (IOException ex) {
+				throw new IllegalStateException("Cannot map tails file: " + file, ex);
+			}
+			return result;
+		}
+	}
+}
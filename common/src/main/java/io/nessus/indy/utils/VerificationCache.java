@@ -0,0 +1,188 @@
+package io.nessus.indy.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+/**
+ * A bounded LRU cache of proof verification results with a time to live.
+ *
+ * Entries are keyed by a SHA-256 digest over the nonce and revocation interval of the proof request, the proof request
+ * and the proof. A proof that is resubmitted for a different nonce or interval never matches an earlier result.
+ * Only completed verifications are cached, a verification that failed with an error is tried again.
+ */
+public class VerificationCache {
+
+	public static final int DEFAULT_CAPACITY = 10000;
+	public static final long DEFAULT_TTL = 600000L;
+
+	private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	});
+
+	private final Map<String, Result> entries;
+	private final SingleFlight<String, Boolean> loads = new SingleFlight<>();
+	private final int capacity;
+	private final long ttlNanos;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public VerificationCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_TTL);
+	}
+
+	/**
+	 * @param ttl time in milliseconds a result stays valid
+	 */
+	public VerificationCache(int capacity, long ttl) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		if (ttl < 1)
+			throw new IllegalArgumentException("Invalid ttl: " + ttl);
+		this.capacity = capacity;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+		this.entries = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+				return size() > VerificationCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get the cached result for the given proof, or null.
+	 */
+	public Boolean get(String proofRequestJson, String proofJson) {
+		return get(digest(proofRequestJson, proofJson));
+	}
+
+	public void put(String proofRequestJson, String proofJson, boolean verified) {
+		put(digest(proofRequestJson, proofJson), verified);
+	}
+
+	/**
+	 * Get the cached result for the given proof, or verify and cache it on a miss.
+	 *
+	 * Concurrent callers that miss on the same proof share the one verification that is in flight.
+	 */
+	public CompletableFuture<Boolean> load(String proofRequestJson, String proofJson, Supplier<CompletableFuture<Boolean>> verifier) {
+		String key = digest(proofRequestJson, proofJson);
+		Boolean verified = get(key);
+		if (verified != null)
+			return CompletableFuture.completedFuture(verified);
+		return loads.execute(key, () -> verifier.get().thenApply(val -> {
+			put(key, val);
+			return val;
+		}));
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getTtl() {
+		return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of verifications that joined one in flight.
+	 */
+	public long getCoalescedCount() {
+		return loads.getCoalescedCount();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("VerificationCache[size=%d, capacity=%d, hits=%d, misses=%d, coalesced=%d]",
+				size(), capacity, getHitCount(), getMissCount(), getCoalescedCount());
+	}
+
+	private Boolean get(String key) {
+		synchronized (entries) {
+			Result entry = entries.get(key);
+			if (entry != null && System.nanoTime() - entry.expires < 0) {
+				hits.incrementAndGet();
+				return entry.verified;
+			}
+			if (entry != null) {
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	private void put(String key, boolean verified) {
+		synchronized (entries) {
+			entries.put(key, new Result(verified, System.nanoTime() + ttlNanos));
+		}
+	}
+
+	static String digest(String proofRequestJson, String proofJson) {
+		JSONObject proofRequest = new JSONObject(proofRequestJson);
+		JSONObject interval = proofRequest.optJSONObject("non_revoked");
+		MessageDigest md = SHA256.get();
+		update(md, proofRequest.getString("nonce"));
+		update(md, interval != null ? interval.optLong("from", -1) + ":" + interval.optLong("to", -1) : "");
+		update(md, proofRequestJson);
+		update(md, proofJson);
+		StringBuilder sb = new StringBuilder(64);
+		for (byte b : md.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	// Length prefixed, so that the fields cannot run into each other
+	private static void update(MessageDigest md, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		md.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+		md.update(bytes);
+	}
+
+	private static class Result {
+
+		final boolean verified;
+		final long expires;
+
+		Result(boolean verified, long expires) {
+			this.verified = verified;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package io.nessus.indy.utils;
+
+import org.json.JSONObject;
+
+/**
+ * The credentials json for creating and opening a wallet.
+ *
+ * A passphrase is stretched with ARGON2I_MOD by default, which takes about a second on every open.
+ * ARGON2I_INT is an order of magnitude faster. A RAW key, as generated by {@link WalletKeyStore}
+ * or provided by a key management service, is used as is and opens in microseconds.
+ */
+public class WalletCredentials {
+
+	public enum KeyDerivation {
+		ARGON2I_MOD, ARGON2I_INT, RAW
+	}
+
+	private final String key;
+	private final KeyDerivation keyDerivation;
+	private final String rekey;
+	private final KeyDerivation rekeyDerivation;
+
+	public WalletCredentials(String key, KeyDerivation keyDerivation) {
+		this(key, keyDerivation, null, null);
+	}
+
+	private WalletCredentials(String key, KeyDerivation keyDerivation, String rekey, KeyDerivation rekeyDerivation) {
+		if (key == null)
+			throw new IllegalArgumentException("Null key");
+		if (keyDerivation == null)
+			throw new IllegalArgumentException("Null key derivation");
+		this.key = key;
+		this.keyDerivation = keyDerivation;
+		this.rekey = rekey;
+		this.rekeyDerivation = rekeyDerivation;
+	}
+
+	public static WalletCredentials argon2iMod(String passphrase) {
+		return new WalletCredentials(passphrase, KeyDerivation.ARGON2I_MOD);
+	}
+
+	public static WalletCredentials argon2iInt(String passphrase) {
+		return new WalletCredentials(passphrase, KeyDerivation.ARGON2I_INT);
+	}
+
+	public static WalletCredentials raw(String rawKey) {
+		return new WalletCredentials(rawKey, KeyDerivation.RAW);
+	}
+
+	/**
+	 * Credentials that open the wallet with this key and change it to the given key.
+	 *
+	 * @param rekeyDerivation the derivation of the new key, or null for the derivation of this key
+	 */
+	public WalletCredentials withRekey(String rekey, KeyDerivation rekeyDerivation) {
+		if (rekey == null)
+			throw new IllegalArgumentException("Null rekey");
+		return new WalletCredentials(key, keyDerivation, rekey, rekeyDerivation != null ? rekeyDerivation : keyDerivation);
+	}
+
+	public KeyDerivation getKeyDerivation() {
+		return keyDerivation;
+	}
+
+	public String toJson() {
+		JSONObject json = new JSONObject()
+				.put("key", key)
+				.put("key_derivation_method", keyDerivation.name());
+		if (rekey != null) {
+			json.put("rekey", rekey);
+			json.put("rekey_derivation_method", rekeyDerivation.name());
+		}
+		return json.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "WalletCredentials[" + keyDerivation + (rekey != null ? ", rekey=" + rekeyDerivation : "") + "]";
+	}
+}
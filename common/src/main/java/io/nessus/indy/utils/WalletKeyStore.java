@@ -0,0 +1,152 @@
+package io.nessus.indy.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.FileUtils;
+import org.hyperledger.indy.sdk.IndyException;
+import org.json.JSONObject;
+
+/**
+ * Generates raw wallet keys and keeps them in files that only the owner can read.
+ *
+ * Keys live in the 'keys' directory of the indy home by default, one file per wallet id.
+ * Deployments that get their keys from a key management service can pass them to {@link WalletCredentials#raw(String)} directly.
+ */
+public class WalletKeyStore {
+
+	private final File directory;
+
+	public WalletKeyStore() {
+		this(new File(EnvironmentUtils.getIndyHomePath("keys")));
+	}
+
+	public WalletKeyStore(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Generate a new random raw key. This does not store the key.
+	 */
+	public static String generateKey() throws InterruptedException, ExecutionException, IndyException {
+		return IndyCalls.getDefault().generateWalletKey("{}").get();
+	}
+
+	/**
+	 * Generate a raw key that is derived from the given seed of 32 chars.
+	 */
+	public static String generateKey(String seed) throws InterruptedException, ExecutionException, IndyException {
+		return IndyCalls.getDefault().generateWalletKey(new JSONObject().put("seed", seed).toString()).get();
+	}
+
+	/**
+	 * Get the stored key for the given wallet, or null.
+	 */
+	public synchronized String getKey(String walletId) throws IOException {
+		File file = keyFile(walletId);
+		return file.isFile() ? FileUtils.readFileToString(file, StandardCharsets.UTF_8).trim() : null;
+	}
+
+	/**
+	 * Get the stored key for the given wallet, or generate and store a new one.
+	 */
+	public synchronized String getOrCreateKey(String walletId) throws IOException, InterruptedException, ExecutionException, IndyException {
+		String key = getKey(walletId);
+		if (key == null) {
+			key = generateKey();
+			putKey(walletId, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Store the given key. The directory and the file are created owner-only, before any key bytes are written.
+	 */
+	public synchronized void putKey(String walletId, String key) throws IOException {
+		File file = keyFile(walletId);
+		createDirectory();
+		Path tmp = new File(directory, file.getName() + ".tmp").toPath();
+		Files.deleteIfExists(tmp);
+		try {
+			createOwnerOnly(tmp, false);
+			Files.write(tmp, key.getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Delete the stored key for the given wallet, for example after the wallet was deleted.
+	 */
+	public synchronized boolean deleteKey(String walletId) {
+		return keyFile(walletId).delete();
+	}
+
+	/**
+	 * Raw credentials for the given wallet, with a key that is generated on first use.
+	 */
+	public WalletCredentials getCredentials(String walletId) throws IOException, InterruptedException, ExecutionException, IndyException {
+		return WalletCredentials.raw(getOrCreateKey(walletId));
+	}
+
+	private File keyFile(String walletId) {
+		if (walletId.isEmpty() || walletId.contains("/") || walletId.contains("\\") || walletId.startsWith("."))
+			throw new IllegalArgumentException("Invalid wallet id: " + walletId);
+		return new File(directory, walletId + ".key");
+	}
+
+	private void createDirectory() throws IOException {
+		Path path = directory.toPath();
+		if (Files.isDirectory(path))
+			return;
+		Path parent = path.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		try {
+			createOwnerOnly(path, true);
+		} catch (FileAlreadyExistsException ex) {
+			// Created concurrently
+		}
+	}
+
+	// Create with owner-only permissions, filesystems without posix permissions restrict them right after
+	private static void createOwnerOnly(Path path, boolean dir) throws IOException {
+		try {
+			FileAttribute<Set<PosixFilePermission>> attr = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(dir ? "rwx------" : "rw-------"));
+			if (dir) {
+				Files.createDirectory(path, attr);
+			} else {
+				Files.createFile(path, attr);
+			}
+		} catch (UnsupportedOperationException ex) {
+			if (dir) {
+				Files.createDirectory(path);
+			} else {
+				Files.createFile(path);
+			}
+			File file = path.toFile();
+			file.setReadable(false, false);
+			file.setReadable(true, true);
+			file.setWritable(false, false);
+			file.setWritable(true, true);
+			file.setExecutable(false, false);
+			file.setExecutable(dir, true);
+		}
+	}
+}
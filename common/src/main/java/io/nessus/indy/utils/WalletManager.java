@@ -0,0 +1,285 @@
+package io.nessus.indy.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps open {@link Wallet} handles keyed by wallet id and leases them to concurrent callers.
+ *
+ * Opening a wallet derives its key, which is expensive. A handle that is not leased stays open
+ * until the idle timeout, or until more than the max number of wallets are open, in which case
+ * the least recently used handles that are not leased get closed.
+ */
+public class WalletManager implements AutoCloseable {
+
+	public static final int DEFAULT_MAX_OPEN = 100;
+	public static final long DEFAULT_IDLE_TIMEOUT = 300000L;
+
+	private static final WalletManager INSTANCE = new WalletManager(DEFAULT_MAX_OPEN, DEFAULT_IDLE_TIMEOUT);
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentHashMap<String, WalletEntry> entries = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService scheduler;
+	private final int maxOpen;
+	private final long idleTimeout;
+
+	/**
+	 * @param maxOpen the number of open handles above which idle handles get closed
+	 * @param idleTimeout time in milliseconds an unused handle stays open
+	 */
+	public WalletManager(int maxOpen, long idleTimeout) {
+		if (maxOpen < 1)
+			throw new IllegalArgumentException("Invalid max open: " + maxOpen);
+		this.maxOpen = maxOpen;
+		this.idleTimeout = idleTimeout;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "WalletManager");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static WalletManager getDefault() {
+		return INSTANCE;
+	}
+
+	public int getMaxOpen() {
+		return maxOpen;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Lease the open handle for the given wallet, opening the wallet as needed.
+	 *
+	 * A wallet that is already open is only leased with the same credentials it was opened with.
+	 * The returned lease must be closed when the caller is done with the wallet.
+	 */
+	public Lease lease(String walletConfig, String walletCredentials) throws InterruptedException, ExecutionException, IndyException {
+		String walletId = new JSONObject(walletConfig).getString("id");
+		while (true) {
+			WalletEntry entry = entries.computeIfAbsent(walletId, WalletEntry::new);
+			Lease lease = entry.acquire(walletConfig, walletCredentials);
+			if (lease != null) {
+				evictOverflow();
+				return lease;
+			}
+			// The entry was closed and removed concurrently
+		}
+	}
+
+	/**
+	 * The number of open wallet handles.
+	 */
+	public int getOpenCount() {
+		return (int) entries.values().stream().filter(WalletEntry::isOpen).count();
+	}
+
+	/**
+	 * Close the handle for the given wallet unless it is leased, for example before the wallet gets deleted.
+	 *
+	 * @return false if the wallet is leased
+	 */
+	public boolean close(String walletId) {
+		WalletEntry entry = entries.get(walletId);
+		return entry == null || entry.closeIfIdle();
+	}
+
+	/**
+	 * Close all wallet handles that are not leased, regardless of the idle timeout.
+	 */
+	public void closeIdle() {
+		for (WalletEntry entry : new ArrayList<>(entries.values())) {
+			entry.closeIfIdle();
+		}
+	}
+
+	/**
+	 * Close all wallet handles and stop the idle timer.
+	 */
+	@Override
+	public void close() {
+		List<WalletEntry> all = new ArrayList<>(entries.values());
+		for (WalletEntry entry : all) {
+			entry.closeQuietly();
+		}
+		scheduler.shutdownNow();
+	}
+
+	// Called without holding an entry lock, entries are locked one at a time
+	private void evictOverflow() {
+		int overflow = getOpenCount() - maxOpen;
+		if (overflow <= 0)
+			return;
+		List<WalletEntry> idle = entries.values().stream()
+				.filter(WalletEntry::isIdle)
+				.sorted(Comparator.comparingLong(WalletEntry::getLastUsed))
+				.collect(Collectors.toList());
+		for (WalletEntry entry : idle) {
+			if (overflow <= 0) break;
+			if (entry.closeIfIdle()) overflow--;
+		}
+		if (overflow > 0) {
+			log.warn("{} wallets open, {} more than max, all others are leased", getOpenCount(), overflow);
+		}
+	}
+
+	private static byte[] digest(String credentials) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(credentials.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * A reference counted lease on an open wallet handle.
+	 */
+	public static class Lease implements AutoCloseable {
+
+		private final WalletEntry entry;
+		private final Wallet wallet;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(WalletEntry entry, Wallet wallet) {
+			this.entry = entry;
+			this.wallet = wallet;
+		}
+
+		public String getWalletId() {
+			return entry.walletId;
+		}
+
+		public Wallet getWallet() {
+			if (released.get())
+				throw new IllegalStateException("Lease already closed: " + entry.walletId);
+			return wallet;
+		}
+
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) {
+				entry.release();
+			}
+		}
+	}
+
+	private class WalletEntry {
+
+		final String walletId;
+
+		Wallet wallet;
+		byte[] credentialsDigest;
+		int refCount;
+		long lastUsed;
+		boolean removed;
+		ScheduledFuture<?> closeTask;
+
+		WalletEntry(String walletId) {
+			this.walletId = walletId;
+		}
+
+		synchronized Lease acquire(String walletConfig, String walletCredentials) throws InterruptedException, ExecutionException, IndyException {
+
+			if (removed)
+				return null;
+
+			if (closeTask != null) {
+				closeTask.cancel(false);
+				closeTask = null;
+			}
+
+			byte[] digest = digest(walletCredentials);
+			if (wallet == null) {
+				log.debug("Open wallet: {}", walletId);
+				try {
+					wallet = IndyCalls.getDefault().openWallet(walletConfig, walletCredentials).get();
+				} catch (InterruptedException | ExecutionException | RuntimeException ex) {
+					// Callers waiting on this entry retry with a new one
+					removed = true;
+					entries.remove(walletId, this);
+					throw ex;
+				}
+				credentialsDigest = digest;
+			} else if (!MessageDigest.isEqual(credentialsDigest, digest)) {
+				throw new IllegalArgumentException("Credentials do not match the open wallet: " + walletId);
+			}
+
+			refCount++;
+			lastUsed = System.nanoTime();
+			return new Lease(this, wallet);
+		}
+
+		synchronized void release() {
+			refCount--;
+			lastUsed = System.nanoTime();
+			if (refCount == 0 && wallet != null) {
+				if (scheduler.isShutdown()) {
+					closeQuietly();
+				} else {
+					closeTask = scheduler.schedule(this::closeIfIdle, idleTimeout, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+
+		synchronized boolean isOpen() {
+			return wallet != null;
+		}
+
+		synchronized boolean isIdle() {
+			return wallet != null && refCount == 0;
+		}
+
+		synchronized long getLastUsed() {
+			return lastUsed;
+		}
+
+		synchronized boolean closeIfIdle() {
+			if (refCount > 0)
+				return false;
+			if (wallet != null) {
+				log.debug("Close idle wallet: {}", walletId);
+				closeQuietly();
+			}
+			return true;
+		}
+
+		synchronized void closeQuietly() {
+			if (closeTask != null) {
+				closeTask.cancel(false);
+				closeTask = null;
+			}
+			if (wallet != null) {
+				try {
+					IndyCalls.getDefault().closeWallet(wallet).get();
+				} catch (Exception ex) {
+					log.warn("Cannot close wallet: " + walletId, ex);
+				}
+				wallet = null;
+			}
+			removed = true;
+			entries.remove(walletId, this);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package io.nessus.indy.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The anoncreds calls that dominate issuance, proof and verification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AnoncredsBenchmark {
+
+	AnoncredsFixture fixture;
+
+	@Setup
+	public void setup() throws Exception {
+		fixture = new AnoncredsFixture();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixture.close();
+	}
+
+	@Benchmark
+	public String issuerCreateCredential() throws Exception {
+		return fixture.issueTranscript().getCredentialJson();
+	}
+
+	@Benchmark
+	public String proverCreateProof() throws Exception {
+		return fixture.createProof();
+	}
+
+	@Benchmark
+	public boolean verifierVerifyProof() throws Exception {
+		return fixture.verifyProof();
+	}
+
+	@Benchmark
+	public String createRevocationState() throws Exception {
+		return fixture.createRevocationState(System.currentTimeMillis() / 1000);
+	}
+}
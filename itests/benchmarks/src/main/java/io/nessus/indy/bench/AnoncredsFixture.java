@@ -0,0 +1,194 @@
+package io.nessus.indy.bench;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.ProverCreateCredentialRequestResult;
+import org.hyperledger.indy.sdk.blob_storage.BlobStorageWriter;
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.RequestedCredentialsBuilder;
+import io.nessus.indy.utils.TailsStore;
+import io.nessus.indy.utils.TailsStore.TailsReader;
+
+/**
+ * The issuer and holder state of the GettingStarted workflow, created locally without a pool.
+ *
+ * Faber issues the Transcript, Acme issues the revocable Job-Certificate, both from the issuer wallet.
+ */
+public class AnoncredsFixture implements AutoCloseable {
+
+	final String issuerWalletConfig = walletConfig("bench-issuer");
+	final String proverWalletConfig = walletConfig("bench-prover");
+	final String walletKey = new JSONObject().put("key", "bench_wallet_key").toString();
+
+	final Wallet issuerWallet;
+	final Wallet proverWallet;
+	final String issuerDid;
+	final String proverDid;
+
+	final String transcriptSchemaId;
+	final String transcriptSchemaJson;
+	final String transcriptCredDefId;
+	final String transcriptCredDefJson;
+	final String transcriptCredOffer;
+	final String transcriptCredRequest;
+	final String transcriptCredValues;
+
+	final String jobCertificateSchemaId;
+	final String jobCertificateSchemaJson;
+	final String jobCertificateCredDefId;
+	final String revRegId;
+	final String revRegDefJson;
+	final String revRegDeltaJson;
+	final String jobCertificateCredRevId;
+	final TailsReader tailsReader;
+
+	final String masterSecretId;
+	final String proofRequestJson;
+	final String requestedCredentialsJson;
+	final String schemasJson;
+	final String credDefsJson;
+	final String proofJson;
+
+	public AnoncredsFixture() throws Exception {
+
+		Wallet.createWallet(issuerWalletConfig, walletKey).get();
+		Wallet.createWallet(proverWalletConfig, walletKey).get();
+		issuerWallet = Wallet.openWallet(issuerWalletConfig, walletKey).get();
+		proverWallet = Wallet.openWallet(proverWalletConfig, walletKey).get();
+		issuerDid = Did.createAndStoreMyDid(issuerWallet, "{}").get().getDid();
+		proverDid = Did.createAndStoreMyDid(proverWallet, "{}").get().getDid();
+
+		// Transcript
+
+		IssuerCreateSchemaResult schemaResult = Anoncreds.issuerCreateSchema(issuerDid, "Transcript", "1.2",
+				new JSONArray(Arrays.asList("first_name","last_name","degree","status","year","average","ssn")).toString()).get();
+		transcriptSchemaId = schemaResult.getSchemaId();
+		transcriptSchemaJson = schemaResult.getSchemaJson();
+
+		String configJson = new JSONObject().put("support_revocation", false).toString();
+		IssuerCreateAndStoreCredentialDefResult credDefResult = Anoncreds.issuerCreateAndStoreCredentialDef(issuerWallet, issuerDid, transcriptSchemaJson, "TAG1", null, configJson).get();
+		transcriptCredDefId = credDefResult.getCredDefId();
+		transcriptCredDefJson = credDefResult.getCredDefJson();
+
+		masterSecretId = Anoncreds.proverCreateMasterSecret(proverWallet, null).get();
+
+		transcriptCredOffer = Anoncreds.issuerCreateCredentialOffer(issuerWallet, transcriptCredDefId).get();
+		ProverCreateCredentialRequestResult credReqResult = Anoncreds.proverCreateCredentialReq(proverWallet, proverDid, transcriptCredOffer, transcriptCredDefJson, masterSecretId).get();
+		transcriptCredRequest = credReqResult.getCredentialRequestJson();
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("degree", "Bachelor of Science, Marketing");
+		rawValues.put("status", "graduated");
+		rawValues.put("ssn", "123-45-6789");
+		rawValues.put("year", "2015");
+		rawValues.put("average", "5");
+		transcriptCredValues = AttributeEncoder.getDefault().encode(rawValues);
+
+		String transcriptCredJson = issueTranscript().getCredentialJson();
+		String transcriptCredId = Anoncreds.proverStoreCredential(proverWallet, null, credReqResult.getCredentialRequestMetadataJson(), transcriptCredJson, transcriptCredDefJson, null).get();
+
+		// Job-Certificate
+
+		schemaResult = Anoncreds.issuerCreateSchema(issuerDid, "Job-Certificate", "0.2",
+				new JSONArray(Arrays.asList("first_name","last_name","salary","employee_status","experience")).toString()).get();
+		jobCertificateSchemaId = schemaResult.getSchemaId();
+		jobCertificateSchemaJson = schemaResult.getSchemaJson();
+
+		configJson = new JSONObject().put("support_revocation", true).toString();
+		credDefResult = Anoncreds.issuerCreateAndStoreCredentialDef(issuerWallet, issuerDid, jobCertificateSchemaJson, "TAG1", null, configJson).get();
+		jobCertificateCredDefId = credDefResult.getCredDefId();
+		String jobCertificateCredDefJson = credDefResult.getCredDefJson();
+
+		BlobStorageWriter tailsWriter = TailsStore.getDefault().openWriter();
+		String revRegDefConfig = new JSONObject().put("issuance_type", "ISSUANCE_ON_DEMAND").put("max_cred_num", 5).toString();
+		IssuerCreateAndStoreRevocRegResult revRegResult = Anoncreds.issuerCreateAndStoreRevocReg(issuerWallet, issuerDid, null, "TAG1", jobCertificateCredDefId, revRegDefConfig, tailsWriter).get();
+		revRegId = revRegResult.getRevRegId();
+		revRegDefJson = revRegResult.getRevRegDefJson();
+		tailsReader = TailsStore.getDefault().getReaderFor(revRegDefJson);
+
+		String jobCertificateCredOffer = Anoncreds.issuerCreateCredentialOffer(issuerWallet, jobCertificateCredDefId).get();
+		credReqResult = Anoncreds.proverCreateCredentialReq(proverWallet, proverDid, jobCertificateCredOffer, jobCertificateCredDefJson, masterSecretId).get();
+		rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("employee_status", "Permanent");
+		rawValues.put("salary", "2400");
+		rawValues.put("experience", "10");
+		String jobCertificateCredValues = AttributeEncoder.getDefault().encode(rawValues);
+		IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(issuerWallet, jobCertificateCredOffer, credReqResult.getCredentialRequestJson(),
+				jobCertificateCredValues, revRegId, tailsReader.getHandle()).get();
+		jobCertificateCredRevId = credResult.getRevocId();
+		revRegDeltaJson = credResult.getRevocRegDeltaJson();
+
+		// Job-Application proof over the Transcript
+
+		proofRequestJson = new ProofRequestBuilder("Job-Application", "0.1", "123432421212")
+			.attribute("attr1_referent", "degree", transcriptCredDefId)
+			.attribute("attr2_referent", "status", transcriptCredDefId)
+			.attribute("attr3_referent", "ssn", transcriptCredDefId)
+			.predicate("predicate1_referent", "average", ">=", 4, transcriptCredDefId)
+			.build();
+
+		requestedCredentialsJson = new RequestedCredentialsBuilder()
+			.attribute("attr1_referent", transcriptCredId)
+			.attribute("attr2_referent", transcriptCredId)
+			.attribute("attr3_referent", transcriptCredId)
+			.predicate("predicate1_referent", transcriptCredId)
+			.build();
+
+		schemasJson = new JSONObject().put(transcriptSchemaId, new JSONObject(transcriptSchemaJson)).toString();
+		credDefsJson = new JSONObject().put(transcriptCredDefId, new JSONObject(transcriptCredDefJson)).toString();
+		proofJson = createProof();
+	}
+
+	public IssuerCreateCredentialResult issueTranscript() throws Exception {
+		return Anoncreds.issuerCreateCredential(issuerWallet, transcriptCredOffer, transcriptCredRequest, transcriptCredValues, null, 0).get();
+	}
+
+	public String createProof() throws Exception {
+		return Anoncreds.proverCreateProof(proverWallet, proofRequestJson, requestedCredentialsJson, masterSecretId, schemasJson, credDefsJson, "{}").get();
+	}
+
+	public boolean verifyProof() throws Exception {
+		return Anoncreds.verifierVerifyProof(proofRequestJson, proofJson, schemasJson, credDefsJson, "{}", "{}").get();
+	}
+
+	public String createRevocationState(long timestamp) throws Exception {
+		return Anoncreds.createRevocationState(tailsReader.getHandle(), revRegDefJson, revRegDeltaJson, timestamp, jobCertificateCredRevId).get();
+	}
+
+	/**
+	 * Create a new Transcript cred def. Every call needs a unique tag.
+	 */
+	public String createCredDef(String tag) throws Exception {
+		String configJson = new JSONObject().put("support_revocation", false).toString();
+		return Anoncreds.issuerCreateAndStoreCredentialDef(issuerWallet, issuerDid, transcriptSchemaJson, tag, null, configJson).get().getCredDefId();
+	}
+
+	@Override
+	public void close() throws Exception {
+		issuerWallet.closeWallet().get();
+		proverWallet.closeWallet().get();
+		Wallet.deleteWallet(issuerWalletConfig, walletKey).get();
+		Wallet.deleteWallet(proverWalletConfig, walletKey).get();
+	}
+
+	static String walletConfig(String prefix) {
+		return new JSONObject().put("id", prefix + "-" + UUID.randomUUID()).toString();
+	}
+}
@@ -0,0 +1,33 @@
+package io.nessus.indy.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks that match the given pattern and writes the results as JSON.
+ *
+ * Usage: BenchmarkRunner [include-regex] [result-file]
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+
+		String include = args.length > 0 ? args[0] : ".*";
+		String result = args.length > 1 ? args[1] : "target/jmh-result.json";
+
+		// The forked JVMs need to find libindy the same way as this one
+		String libraryPath = System.getProperty("jna.library.path", "");
+
+		Options options = new OptionsBuilder()
+				.include(include)
+				.jvmArgsAppend("-Djna.library.path=" + libraryPath)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.shouldFailOnError(true)
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,76 @@
+package io.nessus.indy.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.indy.sdk.crypto.Crypto;
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.did.DidResults.CreateAndStoreMyDidResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Authenticated encryption between two parties, as used for every agent message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CryptoBenchmark {
+
+	@Param({ "256", "4096" })
+	int messageSize;
+
+	String walletConfig;
+	String walletKey;
+	Wallet wallet;
+	String senderVkey;
+	String recipientVkey;
+	byte[] message;
+	byte[] encrypted;
+
+	@Setup
+	public void setup() throws Exception {
+		walletConfig = AnoncredsFixture.walletConfig("bench-crypto");
+		walletKey = new JSONObject().put("key", "bench_wallet_key").toString();
+		Wallet.createWallet(walletConfig, walletKey).get();
+		wallet = Wallet.openWallet(walletConfig, walletKey).get();
+		CreateAndStoreMyDidResult sender = Did.createAndStoreMyDid(wallet, "{}").get();
+		CreateAndStoreMyDidResult recipient = Did.createAndStoreMyDid(wallet, "{}").get();
+		senderVkey = sender.getVerkey();
+		recipientVkey = recipient.getVerkey();
+		message = new byte[messageSize];
+		Arrays.fill(message, (byte) 'x');
+		encrypted = Crypto.authCrypt(wallet, senderVkey, recipientVkey, message).get();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		wallet.closeWallet().get();
+		Wallet.deleteWallet(walletConfig, walletKey).get();
+	}
+
+	@Benchmark
+	public byte[] authCrypt() throws Exception {
+		return Crypto.authCrypt(wallet, senderVkey, recipientVkey, message).get();
+	}
+
+	@Benchmark
+	public byte[] authDecrypt() throws Exception {
+		return Crypto.authDecrypt(wallet, recipientVkey, encrypted).get().getDecryptedMessage();
+	}
+}
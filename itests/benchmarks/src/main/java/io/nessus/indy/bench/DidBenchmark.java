@@ -0,0 +1,85 @@
+package io.nessus.indy.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.nessus.indy.utils.BulkDidCreator;
+import io.nessus.indy.utils.IndyCalls;
+import io.nessus.indy.utils.WalletCredentials;
+import io.nessus.indy.utils.WalletKeyStore;
+
+/**
+ * Serial DID creation, one blocking call after the other, compared to {@link BulkDidCreator}.
+ *
+ * Only the bulk benchmark depends on the window, so the serial baseline runs once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DidBenchmark {
+
+	static final int BATCH_SIZE = 100;
+
+	String walletConfig;
+	String walletKey;
+	Wallet wallet;
+
+	@Setup
+	public void setup() throws Exception {
+		walletConfig = AnoncredsFixture.walletConfig("bench-did");
+		walletKey = WalletCredentials.raw(WalletKeyStore.generateKey()).toJson();
+		Wallet.createWallet(walletConfig, walletKey).get();
+		wallet = Wallet.openWallet(walletConfig, walletKey).get();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		wallet.closeWallet().get();
+		Wallet.deleteWallet(walletConfig, walletKey).get();
+	}
+
+	@Benchmark
+	public String serial() throws Exception {
+		String did = null;
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			did = Did.createAndStoreMyDid(wallet, "{}").get().getDid();
+		}
+		return did;
+	}
+
+	@Benchmark
+	public BulkDidCreator.DidArray bulk(Window state) throws Exception {
+		return state.creator.create(wallet, BATCH_SIZE);
+	}
+
+	@State(Scope.Benchmark)
+	public static class Window {
+
+		@Param({ "8", "64" })
+		int window;
+
+		BulkDidCreator creator;
+
+		@Setup
+		public void setup() {
+			creator = new BulkDidCreator(window, IndyCalls.getDefault());
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package io.nessus.indy.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.ProverCreateCredentialRequestResult;
+import org.hyperledger.indy.sdk.did.DidResults.CreateAndStoreMyDidResult;
+import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseRegistryResponseResult;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.test.support.FakeLedger;
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.IndyCalls;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IndyConstants;
+import io.nessus.indy.utils.IssuancePipeline;
+import io.nessus.indy.utils.IssuancePipeline.IssuedCredential;
+import io.nessus.indy.utils.LatencyHistogram.Snapshot;
+import io.nessus.indy.utils.LatencyHistogram;
+import io.nessus.indy.utils.PoolManager;
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.RequestedCredentialsBuilder;
+import io.nessus.indy.utils.RevocationBatcher;
+import io.nessus.indy.utils.RevocationRegistryPool;
+import io.nessus.indy.utils.RevocationStateStore;
+import io.nessus.indy.utils.RevocationStateStore.RevocationState;
+import io.nessus.indy.utils.TailsStore;
+
+/**
+ * Runs the GettingStarted workflow for many holders concurrently and reports latency per phase.
+ *
+ * Faber issues the Transcript, Acme asks for a job application proof and issues the Job-Certificate,
+ * Thrift asks for a loan application proof with non-revocation, and finally Acme revokes the Job-Certificate.
+ *
+ * Holders arrive at the given rate and at most the given number of holders run at the same time.
+ * Job-Certificates are issued through an {@link IssuancePipeline} into as many revocation registries as holders run
+ * concurrently, their deltas and the revocations are published by a {@link RevocationBatcher}. Holders get their
+ * revocation states from a {@link RevocationStateStore}. Nothing in the workflow holds a lock across ledger I/O.
+ *
+ * A holder that waits for a free worker is still measured from its scheduled arrival, so that a slow system does
+ * not hide its backlog. The 'queue' phase is the time from arrival to pickup, the 'workflow' phase the time from
+ * arrival to completion. The other phases are service times.
+ */
+public class LoadGenerator implements AutoCloseable {
+
+	public static final String[] PHASES = { "queue", "onboard", "transcript", "jobApplication", "jobCertificate", "loanApplication", "quitJob", "workflow" };
+
+	static final String TRUSTEE_SEED = "000000000000000000000000Trustee1";
+
+	// Time in milliseconds between registry entries
+	static final long BATCH_WINDOW = 100L;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final IndyClient client;
+	private final IndyCalls calls;
+	private final Map<String, LatencyHistogram> phases = new LinkedHashMap<>();
+
+	private final String walletKey = new JSONObject().put("key", "load_wallet_key").toString();
+	private final String issuerWalletConfig = AnoncredsFixture.walletConfig("load-issuer");
+	private final Wallet issuerWallet;
+	private final String trusteeDid;
+	private final String faberDid;
+	private final String acmeDid;
+
+	private final String transcriptSchemaId;
+	private final String transcriptCredDefId;
+	private final String jobCertificateSchemaId;
+	private final String jobCertificateCredDefId;
+	private final RevocationRegistryPool registries;
+	private final RevocationBatcher batcher;
+	private final IssuancePipeline pipeline;
+	private final RevocationStateStore revocationStates;
+
+	/**
+	 * Create the issuers, schemas, cred defs and revocation registries for the given number of holders.
+	 *
+	 * @param parallelism the number of registries that take issuances at the same time, usually the concurrency
+	 */
+	public LoadGenerator(IndyClient client, int holders, int parallelism) throws Exception {
+		this.client = client;
+		this.calls = client.getCalls();
+		for (String phase : PHASES) {
+			phases.put(phase, new LatencyHistogram());
+		}
+
+		calls.createWallet(issuerWalletConfig, walletKey).get();
+		issuerWallet = calls.openWallet(issuerWalletConfig, walletKey).get();
+
+		String trusteeSeed = new JSONObject().put("seed", TRUSTEE_SEED).toString();
+		trusteeDid = calls.createAndStoreMyDid(issuerWallet, trusteeSeed).get().getDid();
+		faberDid = createEndorser();
+		acmeDid = createEndorser();
+
+		IssuerCreateSchemaResult schemaResult = calls.issuerCreateSchema(faberDid, "Transcript", "1.2",
+				new JSONArray(Arrays.asList("first_name","last_name","degree","status","year","average","ssn")).toString()).get();
+		transcriptSchemaId = schemaResult.getSchemaId();
+		signAndSubmit(faberDid, calls.buildSchemaRequest(faberDid, schemaResult.getSchemaJson()).get());
+
+		schemaResult = calls.issuerCreateSchema(acmeDid, "Job-Certificate", "0.2",
+				new JSONArray(Arrays.asList("first_name","last_name","salary","employee_status","experience")).toString()).get();
+		jobCertificateSchemaId = schemaResult.getSchemaId();
+		signAndSubmit(acmeDid, calls.buildSchemaRequest(acmeDid, schemaResult.getSchemaJson()).get());
+
+		// Cred defs need the schema as read from the ledger, which carries the seqNo
+
+		String configJson = new JSONObject().put("support_revocation", false).toString();
+		IssuerCreateAndStoreCredentialDefResult credDefResult = calls.issuerCreateAndStoreCredentialDef(issuerWallet, faberDid,
+				client.getSchema(faberDid, transcriptSchemaId).get(), "TAG1", null, configJson).get();
+		transcriptCredDefId = credDefResult.getCredDefId();
+		signAndSubmit(faberDid, calls.buildCredDefRequest(faberDid, credDefResult.getCredDefJson()).get());
+
+		configJson = new JSONObject().put("support_revocation", true).toString();
+		credDefResult = calls.issuerCreateAndStoreCredentialDef(issuerWallet, acmeDid,
+				client.getSchema(acmeDid, jobCertificateSchemaId).get(), "TAG1", null, configJson).get();
+		jobCertificateCredDefId = credDefResult.getCredDefId();
+		signAndSubmit(acmeDid, calls.buildCredDefRequest(acmeDid, credDefResult.getCredDefJson()).get());
+
+		// Every active registry takes its share of the holders, a spare one takes the rest
+		int maxCredNum = Math.max(1, (holders + parallelism - 1) / parallelism);
+		TailsStore tailsStore = TailsStore.getDefault();
+		registries = new RevocationRegistryPool(client, tailsStore, issuerWallet, acmeDid, maxCredNum, RevocationRegistryPool.DEFAULT_SPARE, parallelism);
+		registries.provision(jobCertificateCredDefId).get();
+		batcher = new RevocationBatcher(client, tailsStore, issuerWallet, acmeDid, BATCH_WINDOW);
+		pipeline = new IssuancePipeline(client, issuerWallet, parallelism, registries, batcher);
+		revocationStates = new RevocationStateStore(client, tailsStore, trusteeDid);
+	}
+
+	/**
+	 * Run the workflow for the given number of holders.
+	 *
+	 * @param rate the holder arrivals per second, or zero to start holders as soon as there is capacity
+	 */
+	public Report run(int holders, int concurrency, double rate) throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		List<Future<?>> futures = new ArrayList<>();
+		AtomicInteger failures = new AtomicInteger();
+		long start = System.nanoTime();
+		try {
+			for (int i = 0; i < holders; i++) {
+
+				// Open loop arrivals, a slow system does not slow down the arrivals
+				long due = System.nanoTime();
+				if (rate > 0) {
+					due = start + (long) (i * 1e9 / rate);
+					long wait = due - System.nanoTime();
+					if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+				}
+
+				String name = "holder" + i;
+				long arrival = due;
+				futures.add(executor.submit(() -> {
+					try {
+						runHolder(name, arrival);
+					} catch (Exception ex) {
+						failures.incrementAndGet();
+						log.warn("Workflow failed: " + name, ex);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+		phases.forEach((phase, histogram) -> snapshots.put(phase, histogram.snapshot(phase)));
+		return new Report(holders, failures.get(), elapsed, snapshots);
+	}
+
+	// The arrival is the time the holder was scheduled to start, not when a worker picked it up
+	void runHolder(String name, long arrival) throws Exception {
+
+		phases.get("queue").record(System.nanoTime() - arrival, false);
+		boolean error = true;
+		try {
+			Holder holder = phase("onboard", () -> onboard(name));
+			try {
+				phase("transcript", () -> getTranscript(holder));
+				phase("jobApplication", () -> applyForJob(holder));
+				phase("jobCertificate", () -> getJobCertificate(holder));
+				phase("loanApplication", () -> applyForLoan(holder));
+				phase("quitJob", () -> quitJob(holder));
+			} finally {
+				holder.close();
+			}
+			error = false;
+		} finally {
+			phases.get("workflow").record(System.nanoTime() - arrival, error);
+		}
+	}
+
+	Holder onboard(String name) throws Exception {
+		Holder holder = new Holder(name);
+		calls.createWallet(holder.walletConfig, walletKey).get();
+		holder.wallet = calls.openWallet(holder.walletConfig, walletKey).get();
+		CreateAndStoreMyDidResult didResult = calls.createAndStoreMyDid(holder.wallet, "{}").get();
+		holder.did = didResult.getDid();
+		String nymRequest = calls.buildNymRequest(trusteeDid, holder.did, didResult.getVerkey(), null, null).get();
+		signAndSubmit(trusteeDid, nymRequest);
+		holder.masterSecretId = calls.proverCreateMasterSecret(holder.wallet, null).get();
+		return holder;
+	}
+
+	Void getTranscript(Holder holder) throws Exception {
+		String credOffer = calls.issuerCreateCredentialOffer(issuerWallet, transcriptCredDefId).get();
+		String credDef = client.getCredDef(holder.did, transcriptCredDefId).get();
+		ProverCreateCredentialRequestResult credReq = calls.proverCreateCredentialReq(holder.wallet, holder.did, credOffer, credDef, holder.masterSecretId).get();
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("degree", "Bachelor of Science, Marketing");
+		rawValues.put("status", "graduated");
+		rawValues.put("ssn", "123-45-6789");
+		rawValues.put("year", "2015");
+		rawValues.put("average", "5");
+		String credValues = AttributeEncoder.getDefault().encode(rawValues);
+		IssuerCreateCredentialResult credResult = calls.issuerCreateCredential(issuerWallet, credOffer, credReq.getCredentialRequestJson(), credValues, null, 0).get();
+		holder.transcriptCredId = calls.proverStoreCredential(holder.wallet, null, credReq.getCredentialRequestMetadataJson(), credResult.getCredentialJson(), credDef, null).get();
+		return null;
+	}
+
+	Void applyForJob(Holder holder) throws Exception {
+		String proofRequest = new ProofRequestBuilder("Job-Application", "0.1", calls.generateNonce().get())
+			.attribute("attr1_referent", "degree", transcriptCredDefId)
+			.attribute("attr2_referent", "status", transcriptCredDefId)
+			.predicate("predicate1_referent", "average", ">=", 4, transcriptCredDefId)
+			.build();
+		String requestedCredentials = new RequestedCredentialsBuilder()
+			.attribute("attr1_referent", holder.transcriptCredId)
+			.attribute("attr2_referent", holder.transcriptCredId)
+			.predicate("predicate1_referent", holder.transcriptCredId)
+			.build();
+
+		String schemas = new JSONObject().put(transcriptSchemaId, new JSONObject(client.getSchema(holder.did, transcriptSchemaId).get())).toString();
+		String credDefs = new JSONObject().put(transcriptCredDefId, new JSONObject(client.getCredDef(holder.did, transcriptCredDefId).get())).toString();
+		String proof = calls.proverCreateProof(holder.wallet, proofRequest, requestedCredentials, holder.masterSecretId, schemas, credDefs, "{}").get();
+		if (!calls.verifierVerifyProof(proofRequest, proof, schemas, credDefs, "{}", "{}").get())
+			throw new IllegalStateException("Job application proof not accepted: " + holder.name);
+		return null;
+	}
+
+	Void getJobCertificate(Holder holder) throws Exception {
+		String credOffer = calls.issuerCreateCredentialOffer(issuerWallet, jobCertificateCredDefId).get();
+		String credDef = client.getCredDef(holder.did, jobCertificateCredDefId).get();
+		ProverCreateCredentialRequestResult credReq = calls.proverCreateCredentialReq(holder.wallet, holder.did, credOffer, credDef, holder.masterSecretId).get();
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("employee_status", "Permanent");
+		rawValues.put("salary", "2400");
+		rawValues.put("experience", "10");
+		String credValues = AttributeEncoder.getDefault().encode(rawValues);
+
+		// The pipeline completes once the registry delta is on the ledger
+		IssuedCredential issued = pipeline.issue(credOffer, credReq.getCredentialRequestJson(), credValues).get();
+
+		String revRegDef = client.getRevocRegDef(holder.did, issued.getRevRegId()).get();
+		holder.jobCertificateCredId = calls.proverStoreCredential(holder.wallet, null, credReq.getCredentialRequestMetadataJson(), issued.getCredentialJson(), credDef, revRegDef).get();
+		holder.jobCertificateRevRegId = issued.getRevRegId();
+		holder.jobCertificateCredRevId = issued.getCredRevId();
+		return null;
+	}
+
+	Void applyForLoan(Holder holder) throws Exception {
+		long now = System.currentTimeMillis() / 1000;
+		String proofRequest = new ProofRequestBuilder("Loan-Application-Basic", "0.1", calls.generateNonce().get())
+			.attribute("attr1_referent", "employee_status", jobCertificateCredDefId)
+			.predicate("predicate1_referent", "salary", ">=", 2000, jobCertificateCredDefId)
+			.nonRevoked(null, now)
+			.build();
+
+		String schemas = new JSONObject().put(jobCertificateSchemaId, new JSONObject(client.getSchema(holder.did, jobCertificateSchemaId).get())).toString();
+		String credDefs = new JSONObject().put(jobCertificateCredDefId, new JSONObject(client.getCredDef(holder.did, jobCertificateCredDefId).get())).toString();
+		String revRegId = holder.jobCertificateRevRegId;
+		String revRegDef = client.getRevocRegDef(holder.did, revRegId).get();
+		String revRegDefs = new JSONObject().put(revRegId, new JSONObject(revRegDef)).toString();
+
+		// The verifier reads the registry at the timestamp of the state, which no later entry changes
+		RevocationState revocationState = revocationStates.getState(revRegId, holder.jobCertificateCredRevId, null, now);
+		long timestamp = revocationState.getTimestamp();
+		String revStates = revocationState.toStatesJson();
+		ParseRegistryResponseResult revReg = client.getRevocReg(holder.did, revRegId, timestamp).get();
+
+		String requestedCredentials = new RequestedCredentialsBuilder()
+			.attribute("attr1_referent", holder.jobCertificateCredId, true, timestamp)
+			.predicate("predicate1_referent", holder.jobCertificateCredId, timestamp)
+			.build();
+		String proof = calls.proverCreateProof(holder.wallet, proofRequest, requestedCredentials, holder.masterSecretId, schemas, credDefs, revStates).get();
+
+		String revRegs = new JSONObject().put(revRegId, new JSONObject().put("" + revReg.getTimestamp(), new JSONObject(revReg.getObjectJson()))).toString();
+		if (!calls.verifierVerifyProof(proofRequest, proof, schemas, credDefs, revRegDefs, revRegs).get())
+			throw new IllegalStateException("Loan application proof not accepted: " + holder.name);
+		return null;
+	}
+
+	Void quitJob(Holder holder) throws Exception {
+		batcher.revoke(holder.jobCertificateRevRegId, holder.jobCertificateCredRevId).get();
+		revocationStates.remove(holder.jobCertificateRevRegId, holder.jobCertificateCredRevId);
+		return null;
+	}
+
+	@Override
+	public void close() throws Exception {
+		pipeline.close();
+		batcher.close();
+		registries.close();
+		calls.closeWallet(issuerWallet).get();
+		calls.deleteWallet(issuerWalletConfig, walletKey).get();
+	}
+
+	private String createEndorser() throws Exception {
+		CreateAndStoreMyDidResult didResult = calls.createAndStoreMyDid(issuerWallet, "{}").get();
+		String nymRequest = calls.buildNymRequest(trusteeDid, didResult.getDid(), didResult.getVerkey(), null, IndyConstants.ROLE_ENDORSER).get();
+		signAndSubmit(trusteeDid, nymRequest);
+		return didResult.getDid();
+	}
+
+	private String signAndSubmit(String submitterDid, String request) throws Exception {
+		return client.signAndSubmit(issuerWallet, submitterDid, request).get();
+	}
+
+	@FunctionalInterface
+	interface PhaseCall<T> {
+		T call() throws Exception;
+	}
+
+	private <T> T phase(String phase, PhaseCall<T> call) throws Exception {
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			T result = call.call();
+			error = false;
+			return result;
+		} finally {
+			phases.get(phase).record(System.nanoTime() - start, error);
+		}
+	}
+
+	class Holder implements AutoCloseable {
+
+		final String name;
+		final String walletConfig;
+		Wallet wallet;
+		String did;
+		String masterSecretId;
+		String transcriptCredId;
+		String jobCertificateCredId;
+		String jobCertificateRevRegId;
+		String jobCertificateCredRevId;
+
+		Holder(String name) {
+			this.name = name;
+			this.walletConfig = AnoncredsFixture.walletConfig("load-" + name);
+		}
+
+		@Override
+		public void close() throws Exception {
+			if (wallet != null) {
+				calls.closeWallet(wallet).get();
+				calls.deleteWallet(walletConfig, walletKey).get();
+			}
+		}
+	}
+
+	public static class Report {
+
+		private final int holders;
+		private final int failures;
+		private final long elapsedNanos;
+		private final Map<String, Snapshot> phases;
+
+		Report(int holders, int failures, long elapsedNanos, Map<String, Snapshot> phases) {
+			this.holders = holders;
+			this.failures = failures;
+			this.elapsedNanos = elapsedNanos;
+			this.phases = phases;
+		}
+
+		public int getHolders() {
+			return holders;
+		}
+
+		public int getFailures() {
+			return failures;
+		}
+
+		public long getElapsed(TimeUnit unit) {
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Completed workflows per second.
+		 */
+		public double getThroughput() {
+			return elapsedNanos > 0 ? (holders - failures) * 1e9 / elapsedNanos : 0.0;
+		}
+
+		public Map<String, Snapshot> getPhases() {
+			return phases;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(String.format("LoadReport[holders=%d, failed=%d, elapsed=%dms, throughput=%.2f/s]",
+					holders, failures, getElapsed(TimeUnit.MILLISECONDS), getThroughput()));
+			for (Snapshot snapshot : phases.values()) {
+				double rate = elapsedNanos > 0 ? snapshot.getCount() * 1e9 / elapsedNanos : 0.0;
+				sb.append(String.format("%n  %-16s count=%d, errors=%d, rate=%.2f/s, p50=%.1fms, p99=%.1fms", snapshot.getOperation(),
+						snapshot.getCount(), snapshot.getErrorCount(), rate, snapshot.getP50() / 1000.0, snapshot.getP99() / 1000.0));
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Usage: LoadGenerator [holders] [concurrency] [rate] [pool]
+	 *
+	 * Without a pool name, the workflow runs against an in-process {@link FakeLedger}.
+	 */
+	public static void main(String[] args) throws Exception {
+
+		int holders = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+		String poolName = args.length > 3 && !args[3].isEmpty() ? args[3] : null;
+
+		Pool.setProtocolVersion(IndyConstants.PROTOCOL_VERSION).get();
+
+		ArtifactCache cache = new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY);
+		if (poolName != null) {
+			// Every request leases the pool, so that a dead handle gets reopened
+			try (PoolManager poolManager = new PoolManager(PoolManager.DEFAULT_IDLE_TIMEOUT)) {
+				run(new IndyClient(poolManager.transport(poolName), cache), holders, concurrency, rate);
+			}
+		} else {
+			try (FakeLedger ledger = new FakeLedger()) {
+				ledger.setLatency(20, 10, TimeUnit.MILLISECONDS);
+				run(new IndyClient(ledger, cache), holders, concurrency, rate);
+			}
+		}
+	}
+
+	private static void run(IndyClient client, int holders, int concurrency, double rate) throws Exception {
+		try (LoadGenerator generator = new LoadGenerator(client, holders, concurrency)) {
+			Report report = generator.run(holders, concurrency, rate);
+			generator.log.info("{}", report);
+			generator.log.info("{}", client.getMetrics());
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package io.nessus.indy.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.nessus.indy.utils.WalletCredentials;
+import io.nessus.indy.utils.WalletCredentials.KeyDerivation;
+import io.nessus.indy.utils.WalletKeyStore;
+
+/**
+ * Wallet open and close, which is dominated by the key derivation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WalletBenchmark {
+
+	@Param({ "ARGON2I_MOD", "ARGON2I_INT", "RAW" })
+	KeyDerivation keyDerivation;
+
+	String walletConfig;
+	String walletKey;
+
+	@Setup
+	public void setup() throws Exception {
+		walletConfig = AnoncredsFixture.walletConfig("bench-wallet");
+		String key = keyDerivation == KeyDerivation.RAW ? WalletKeyStore.generateKey() : "bench_wallet_key";
+		walletKey = new WalletCredentials(key, keyDerivation).toJson();
+		Wallet.createWallet(walletConfig, walletKey).get();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		Wallet.deleteWallet(walletConfig, walletKey).get();
+	}
+
+	@Benchmark
+	public void openAndClose() throws Exception {
+		Wallet wallet = Wallet.openWallet(walletConfig, walletKey).get();
+		wallet.closeWallet().get();
+	}
+}
@@ -23,25 +23,23 @@ package io.nessus.indy.test;
 import static io.nessus.indy.utils.IndyConstants.ROLE_ENDORSER;
 import static io.nessus.indy.utils.IndyConstants.ROLE_TRUSTEE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
 import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
-import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
-import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
 import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
 import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.ProverCreateCredentialRequestResult;
-import org.hyperledger.indy.sdk.anoncreds.CredentialsSearchForProofReq;
-import org.hyperledger.indy.sdk.blob_storage.BlobStorageReader;
-import org.hyperledger.indy.sdk.blob_storage.BlobStorageWriter;
 import org.hyperledger.indy.sdk.did.Did;
 import org.hyperledger.indy.sdk.did.DidResults.CreateAndStoreMyDidResult;
 import org.hyperledger.indy.sdk.ledger.Ledger;
-import org.hyperledger.indy.sdk.ledger.LedgerResults.ParseResponseResult;
 import org.hyperledger.indy.sdk.pool.Pool;
 import org.hyperledger.indy.sdk.wallet.Wallet;
 import org.json.JSONArray;
@@ -50,9 +48,35 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.CredDefGenerator;
+import io.nessus.indy.utils.CredDefGenerator.Task;
+import io.nessus.indy.utils.CredentialSearch;
 import io.nessus.indy.utils.EnvironmentUtils;
+import io.nessus.indy.utils.IndyCalls;
+import io.nessus.indy.utils.IndyClient;
 import io.nessus.indy.utils.IndyConstants;
-import io.nessus.indy.utils.PoolUtils;
+import io.nessus.indy.utils.IndyMetrics;
+import io.nessus.indy.utils.IssuancePipeline;
+import io.nessus.indy.utils.IssuancePipeline.IssuedCredential;
+import io.nessus.indy.utils.NymOnboarder;
+import io.nessus.indy.utils.NymOnboarder.NymEntry;
+import io.nessus.indy.utils.NymOnboarder.NymResult;
+import io.nessus.indy.utils.NymOnboarder.Report;
+import io.nessus.indy.utils.PoolManager;
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.ProofVerifier;
+import io.nessus.indy.utils.RequestedCredentialsBuilder;
+import io.nessus.indy.utils.RevocationBatcher;
+import io.nessus.indy.utils.RevocationRegistryPool;
+import io.nessus.indy.utils.RevocationStateStore;
+import io.nessus.indy.utils.RevocationStateStore.RevocationState;
+import io.nessus.indy.utils.TailsStore;
+import io.nessus.indy.utils.TailsStore.TailsReader;
+import io.nessus.indy.utils.WalletCredentials;
+import io.nessus.indy.utils.WalletKeyStore;
+import io.nessus.indy.utils.WalletManager;
 
 /**
  * Start a local indy pool
@@ -72,8 +96,22 @@ public class GettingStartedTest {
 		
 		// Pool Ledger
 		String poolName;
+		PoolManager poolManager;
+		PoolManager.Lease poolLease;
 		Pool pool;
 		
+		// Immutable ledger artifacts
+		ArtifactCache artifactCache = new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY);
+		IndyClient client;
+		
+		// Open wallet handles, service wallets use raw keys
+		WalletKeyStore walletKeyStore = new WalletKeyStore();
+		WalletManager walletManager = new WalletManager(WalletManager.DEFAULT_MAX_OPEN, WalletManager.DEFAULT_IDLE_TIMEOUT);
+		List<WalletManager.Lease> walletLeases = new ArrayList<>();
+		
+		// Shared tails file readers
+		TailsStore tailsStore = new TailsStore(EnvironmentUtils.getIndyHomePath("tails"), true);
+		
 		// Trustee
 		String trusteeWalletConfig;
 		String trusteeWalletKey;
@@ -119,7 +157,11 @@ public class GettingStartedTest {
 		String jobCertificateCredDefId;
 		String jobCertificateCredOffer;
 		String jobCertificateCredRevocId;
+		CredDefGenerator credDefGenerator;
+		Task jobCertificateCredDefTask;
+		RevocationRegistryPool registryPool;
 		String revocRegistryId;
+		TailsReader tailsReader;
 		
 		// Thrift
 		String thriftWalletConfig;
@@ -226,6 +268,7 @@ public class GettingStartedTest {
 		 * A Credential Definition can be created and saved in the Ledger an Endorser. 
 		 */
 		
+		startJobCertificateCredentialDefinition(ctx);
 		createTranscriptCredentialDefinition(ctx);
 		createJobCertificateCredentialDefinition(ctx);
 		
@@ -279,6 +322,8 @@ public class GettingStartedTest {
 		
 		quitJobWithAcme(ctx);
 		
+		log.info("{}", IndyMetrics.getDefault());
+		
 		// Close and Delete Indy Pool Nodes
 		
 		closeAndDeletePoolLedger(ctx);
@@ -294,8 +339,11 @@ public class GettingStartedTest {
 		// Create ledger config from genesis txn file
 		
 		log.info("Create and open Ledger");
-		ctx.poolName = PoolUtils.createPoolLedgerConfig("pool1");
-		ctx.pool = Pool.openPoolLedger(ctx.poolName, "{}").get();
+		ctx.poolName = "pool1";
+		ctx.poolManager = new PoolManager(PoolManager.DEFAULT_IDLE_TIMEOUT);
+		ctx.poolLease = ctx.poolManager.lease(ctx.poolName);
+		ctx.pool = ctx.poolLease.getPool();
+		ctx.client = new IndyClient(ctx.poolLease, ctx.artifactCache);
 	}
 	
 	void createTrustee(Context ctx) throws Exception {
@@ -304,9 +352,9 @@ public class GettingStartedTest {
 		
 		log.info("Create wallet - Trustee");
 		ctx.trusteeWalletConfig = new JSONObject().put("id", "Trustee").toString();
-		ctx.trusteeWalletKey = new JSONObject().put("key", "trustee_wallet_key").toString();
+		ctx.trusteeWalletKey = ctx.walletKeyStore.getCredentials("Trustee").toJson();
 		Wallet.createWallet(ctx.trusteeWalletConfig, ctx.trusteeWalletKey).get();
-		ctx.trusteeWallet = Wallet.openWallet(ctx.trusteeWalletConfig, ctx.trusteeWalletKey).get();
+		ctx.trusteeWallet = leaseWallet(ctx, ctx.trusteeWalletConfig, ctx.trusteeWalletKey);
 		
 		// Create Trustee DID
 		
@@ -328,9 +376,9 @@ public class GettingStartedTest {
 		
 		log.info("Create wallet - Government");
 		ctx.governmentWalletConfig = new JSONObject().put("id", "Government").toString();
-		ctx.governmentWalletKey = new JSONObject().put("key", "government_wallet_key").toString();
+		ctx.governmentWalletKey = ctx.walletKeyStore.getCredentials("Government").toJson();
 		Wallet.createWallet(ctx.governmentWalletConfig, ctx.governmentWalletKey).get();
-		ctx.governmentWallet = Wallet.openWallet(ctx.governmentWalletConfig, ctx.governmentWalletKey).get();
+		ctx.governmentWallet = leaseWallet(ctx, ctx.governmentWalletConfig, ctx.governmentWalletKey);
 		
 		// Create and store Government DID
 		
@@ -362,9 +410,9 @@ public class GettingStartedTest {
 		
 		log.info("Create wallet - Faber");
 		ctx.faberWalletConfig = new JSONObject().put("id", "Faber").toString();
-		ctx.faberWalletKey = new JSONObject().put("key", "faber_wallet_key").toString();
+		ctx.faberWalletKey = ctx.walletKeyStore.getCredentials("Faber").toJson();
 		Wallet.createWallet(ctx.faberWalletConfig, ctx.faberWalletKey).get();
-		ctx.faberWallet = Wallet.openWallet(ctx.faberWalletConfig, ctx.faberWalletKey).get();
+		ctx.faberWallet = leaseWallet(ctx, ctx.faberWalletConfig, ctx.faberWalletKey);
 		
 		// Create and store Faber DID
 		
@@ -394,9 +442,9 @@ public class GettingStartedTest {
 		
 		log.info("Create wallet - Acme");
 		ctx.acmeWalletConfig = new JSONObject().put("id", "Acme").toString();
-		ctx.acmeWalletKey = new JSONObject().put("key", "acme_wallet_key").toString();
+		ctx.acmeWalletKey = ctx.walletKeyStore.getCredentials("Acme").toJson();
 		Wallet.createWallet(ctx.acmeWalletConfig, ctx.acmeWalletKey).get();
-		ctx.acmeWallet = Wallet.openWallet(ctx.acmeWalletConfig, ctx.acmeWalletKey).get();
+		ctx.acmeWallet = leaseWallet(ctx, ctx.acmeWalletConfig, ctx.acmeWalletKey);
 		
 		// Create and store Acme DID
 		
@@ -426,9 +474,9 @@ public class GettingStartedTest {
 		
 		log.info("Create wallet - Thrift");
 		ctx.thriftWalletConfig = new JSONObject().put("id", "Thrift").toString();
-		ctx.thriftWalletKey = new JSONObject().put("key", "thrift_wallet_key").toString();
+		ctx.thriftWalletKey = ctx.walletKeyStore.getCredentials("Thrift").toJson();
 		Wallet.createWallet(ctx.thriftWalletConfig, ctx.thriftWalletKey).get();
-		ctx.thriftWallet = Wallet.openWallet(ctx.thriftWalletConfig, ctx.thriftWalletKey).get();
+		ctx.thriftWallet = leaseWallet(ctx, ctx.thriftWalletConfig, ctx.thriftWalletKey);
 		
 		// Create and store Thrift DID
 		
@@ -449,48 +497,44 @@ public class GettingStartedTest {
 		CreateAndStoreMyDidResult didResult = Did.createAndStoreMyDid(ctx.governmentWallet, "{}").get();
 		ctx.governmentDidForAlice = didResult.getDid();
 		ctx.governmentVkeyForAlice = didResult.getVerkey();
-		
 		log.info("DID Government for Alice: did={}, vkey={}", ctx.governmentDidForAlice, ctx.governmentVkeyForAlice);
-		String nymRequest = Ledger.buildNymRequest(ctx.governmentDid, ctx.governmentDidForAlice, ctx.governmentVkeyForAlice, null, ROLE_ENDORSER).get();
-		signAndSubmitRequest(ctx, ctx.governmentWallet, ctx.governmentDid, nymRequest);
 
 		// Create and store Faber DID for Alice
 		
 		didResult = Did.createAndStoreMyDid(ctx.faberWallet, "{}").get();
 		ctx.faberDidForAlice = didResult.getDid();
 		ctx.faberVkeyForAlice = didResult.getVerkey();
-		
 		log.info("DID Faber for Alice: did={}, vkey={}", ctx.faberDidForAlice, ctx.faberVkeyForAlice);
-		nymRequest = Ledger.buildNymRequest(ctx.faberDid, ctx.faberDidForAlice, ctx.faberVkeyForAlice, null, ROLE_ENDORSER).get();
-		signAndSubmitRequest(ctx, ctx.faberWallet, ctx.faberDid, nymRequest);
 
 		// Create and store Acme DID for Alice
 		
 		didResult = Did.createAndStoreMyDid(ctx.acmeWallet, "{}").get();
 		ctx.acmeDidForAlice = didResult.getDid();
 		ctx.acmeVkeyForAlice = didResult.getVerkey();
-		
 		log.info("DID Acme for Alice: did={}, vkey={}", ctx.acmeDidForAlice, ctx.acmeVkeyForAlice);
-		nymRequest = Ledger.buildNymRequest(ctx.acmeDid, ctx.acmeDidForAlice, ctx.acmeVkeyForAlice, null, ROLE_ENDORSER).get();
-		signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDid, nymRequest);
 
 		// Create and store Thrift DID for Alice
 		
 		didResult = Did.createAndStoreMyDid(ctx.thriftWallet, "{}").get();
 		ctx.thriftDidForAlice = didResult.getDid();
 		ctx.thriftVkeyForAlice = didResult.getVerkey();
-		
 		log.info("DID Thrift for Alice: did={}, vkey={}", ctx.thriftDidForAlice, ctx.thriftVkeyForAlice);
-		nymRequest = Ledger.buildNymRequest(ctx.thriftDid, ctx.thriftDidForAlice, ctx.thriftVkeyForAlice, null, ROLE_ENDORSER).get();
-		signAndSubmitRequest(ctx, ctx.thriftWallet, ctx.thriftDid, nymRequest);
 
+		// These NYM writes are independent of each other and go to the Ledger concurrently
+		
+		onboard(ctx, 
+			new NymEntry(ctx.governmentWallet, ctx.governmentDid, ctx.governmentDidForAlice, ctx.governmentVkeyForAlice, ROLE_ENDORSER),
+			new NymEntry(ctx.faberWallet, ctx.faberDid, ctx.faberDidForAlice, ctx.faberVkeyForAlice, ROLE_ENDORSER),
+			new NymEntry(ctx.acmeWallet, ctx.acmeDid, ctx.acmeDidForAlice, ctx.acmeVkeyForAlice, ROLE_ENDORSER),
+			new NymEntry(ctx.thriftWallet, ctx.thriftDid, ctx.thriftDidForAlice, ctx.thriftVkeyForAlice, ROLE_ENDORSER));
+		
 		// Create Wallet for Alice
 		
 		log.info("Create wallet - Alice");
 		ctx.aliceWalletConfig = new JSONObject().put("id", "Alice").toString();
-		ctx.aliceWalletKey = new JSONObject().put("key", "alice").toString();
+		ctx.aliceWalletKey = WalletCredentials.argon2iMod("alice").toJson();
 		Wallet.createWallet(ctx.aliceWalletConfig, ctx.aliceWalletKey).get();
-		ctx.aliceWallet = Wallet.openWallet(ctx.aliceWalletConfig, ctx.aliceWalletKey).get();
+		ctx.aliceWallet = leaseWallet(ctx, ctx.aliceWalletConfig, ctx.aliceWalletKey);
 		
 		// Create and store Alice DID
 		
@@ -498,40 +542,36 @@ public class GettingStartedTest {
 		didResult = Did.createAndStoreMyDid(ctx.aliceWallet, aliceSeed).get();
 		ctx.aliceDid = didResult.getDid();
 		ctx.aliceVkey = didResult.getVerkey();
-		
 		log.info("DID Alice: did={}, vkey={}", ctx.aliceDid, ctx.aliceVkey);
-		nymRequest = Ledger.buildNymRequest(ctx.governmentDidForAlice, ctx.aliceDid, ctx.aliceVkey, null, null).get();
-		signAndSubmitRequest(ctx, ctx.governmentWallet, ctx.governmentDidForAlice, nymRequest);
 
 		// Create and store Alice DID for Faber
 		
 		didResult = Did.createAndStoreMyDid(ctx.aliceWallet, "{}").get();
 		ctx.aliceDidForFaber = didResult.getDid();
 		ctx.aliceVkeyForFaber = didResult.getVerkey();
-		
 		log.info("DID Alice for Faber: did={}, vkey={}", ctx.aliceDidForFaber, ctx.aliceVkeyForFaber);
-		nymRequest = Ledger.buildNymRequest(ctx.faberDidForAlice, ctx.aliceDidForFaber, ctx.aliceVkeyForFaber, null, null).get();
-		signAndSubmitRequest(ctx, ctx.faberWallet, ctx.faberDidForAlice, nymRequest);
 
 		// Create and store Alice DID for Acme
 		
 		didResult = Did.createAndStoreMyDid(ctx.aliceWallet, "{}").get();
 		ctx.aliceDidForAcme = didResult.getDid();
 		ctx.aliceVkeyForAcme = didResult.getVerkey();
-		
 		log.info("DID Alice for Acme: did={}, vkey={}", ctx.aliceDidForAcme, ctx.aliceVkeyForAcme);
-		nymRequest = Ledger.buildNymRequest(ctx.acmeDidForAlice, ctx.aliceDidForAcme, ctx.aliceVkeyForAcme, null, null).get();
-		signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDidForAlice, nymRequest);
 
 		// Create and store Alice DID for Thrift
 		
 		didResult = Did.createAndStoreMyDid(ctx.aliceWallet, "{}").get();
 		ctx.aliceDidForThrift = didResult.getDid();
 		ctx.aliceVkeyForThrift = didResult.getVerkey();
-		
 		log.info("DID Alice for Thrift: did={}, vkey={}", ctx.aliceDidForThrift, ctx.aliceVkeyForThrift);
-		nymRequest = Ledger.buildNymRequest(ctx.thriftDidForAlice, ctx.aliceDidForThrift, ctx.aliceVkeyForThrift, null, null).get();
-		signAndSubmitRequest(ctx, ctx.thriftWallet, ctx.thriftDidForAlice, nymRequest);
+		
+		// Alice's DIDs are written by the DIDs onboarded above
+		
+		onboard(ctx, 
+			new NymEntry(ctx.governmentWallet, ctx.governmentDidForAlice, ctx.aliceDid, ctx.aliceVkey, null),
+			new NymEntry(ctx.faberWallet, ctx.faberDidForAlice, ctx.aliceDidForFaber, ctx.aliceVkeyForFaber, null),
+			new NymEntry(ctx.acmeWallet, ctx.acmeDidForAlice, ctx.aliceDidForAcme, ctx.aliceVkeyForAcme, null),
+			new NymEntry(ctx.thriftWallet, ctx.thriftDidForAlice, ctx.aliceDidForThrift, ctx.aliceVkeyForThrift, null));
 	}
 
 	void createTranscriptSchema(Context ctx) throws Exception {
@@ -572,15 +612,13 @@ public class GettingStartedTest {
 		
 		// 1. Faber get the Transcript Credential Schema
 		
-		String getSchemaRequest = Ledger.buildGetSchemaRequest(ctx.faberDid, ctx.transcriptSchemaId).get();
-		String getSchemaResponse = Ledger.submitRequest(ctx.pool, getSchemaRequest).get();
-		ParseResponseResult parseSchemaResult = Ledger.parseGetSchemaResponse(getSchemaResponse).get();
-		log.info(getSchemaResponse);
+		String schemaJson = ctx.artifactCache.getSchema(ctx.pool, ctx.faberDid, ctx.transcriptSchemaId);
+		log.info(schemaJson);
 		
 		// 2. Faber creates the Credential Definition related to the received Credential Schema
 		
 		String configJson = new JSONObject().put("support_revocation", false).toString();
-		IssuerCreateAndStoreCredentialDefResult createCredDefResult = Anoncreds.issuerCreateAndStoreCredentialDef(ctx.faberWallet, ctx.faberDid, parseSchemaResult.getObjectJson(), "TAG1", null, configJson).get();
+		IssuerCreateAndStoreCredentialDefResult createCredDefResult = Anoncreds.issuerCreateAndStoreCredentialDef(ctx.faberWallet, ctx.faberDid, schemaJson, "TAG1", null, configJson).get();
 		ctx.transcriptCredDefId = createCredDefResult.getCredDefId();
 
 		// 3. Faber sends the corresponding Credential Definition transaction to the Ledger
@@ -589,25 +627,29 @@ public class GettingStartedTest {
 		signAndSubmitRequest(ctx, ctx.faberWallet, ctx.faberDid, credDefRequest);
 	}
 	
-	void createJobCertificateCredentialDefinition(Context ctx) throws Exception {
+	void startJobCertificateCredentialDefinition(Context ctx) throws Exception {
 		
-		// 1. Acme get the Transcript Credential Schema
-
-		String getSchemaRequest = Ledger.buildGetSchemaRequest(ctx.acmeDid, ctx.jobCertificateSchemaId).get();
-		String getSchemaResponse = Ledger.submitRequest(ctx.pool, getSchemaRequest).get();
-		log.info(getSchemaResponse);
+		/* Acme starts generating the keys for the Job-Certificate Credential Definition
+		 * 
+		 * The keys of a Credential Definition that supports revocation take a while to generate.
+		 * Acme starts early, Faber creates its Credential Definition in the meantime.
+		 */
 		
-		// 2. Acme creates the Credential Definition related to the received Credential Schema
+		ctx.credDefGenerator = new CredDefGenerator(ctx.client, ctx.acmeWallet, ctx.acmeDid);
+		ctx.jobCertificateCredDefTask = ctx.credDefGenerator.generate(ctx.jobCertificateSchemaId, "TAG1", true);
+	}
+	
+	void createJobCertificateCredentialDefinition(Context ctx) throws Exception {
 		
-		String configJson = new JSONObject().put("support_revocation", true).toString();
-		ParseResponseResult parseSchemaResult = Ledger.parseGetSchemaResponse(getSchemaResponse).get();
-		IssuerCreateAndStoreCredentialDefResult createCredDefResult = Anoncreds.issuerCreateAndStoreCredentialDef(ctx.acmeWallet, ctx.acmeDid, parseSchemaResult.getObjectJson(), "TAG1", null, configJson).get();
-		ctx.jobCertificateCredDefId = createCredDefResult.getCredDefId();
-
-		// 3. Acme sends the corresponding Credential Definition transaction to the Ledger
+		/* 1. Acme gets the Transcript Credential Schema
+		 * 2. Acme creates the Credential Definition related to the received Credential Schema
+		 * 3. Acme sends the corresponding Credential Definition transaction to the Ledger
+		 * 
+		 * The generator does all three in the background, Acme waits for the published Credential Definition
+		 */
 		
-		String credDefRequest = Ledger.buildCredDefRequest(ctx.acmeDid, createCredDefResult.getCredDefJson()).get();
-		signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDid, credDefRequest);
+		ctx.jobCertificateCredDefId = ctx.jobCertificateCredDefTask.getPublished().get();
+		log.info(ctx.jobCertificateCredDefTask.toString());
 		
 		/* 4. Acme creates Revocation Registry
 		 * 
@@ -619,28 +661,10 @@ public class GettingStartedTest {
 		 * For the purpose of this demo, the validity tails are written in a file using a ‘blob storage’.
 		 */
 		
-		BlobStorageWriter tailsWriter = BlobStorageWriter.openWriter("default", getTailsWriterConfig()).get();
-
-		// 5. Acme creates a Revocation Registry for the given Credential Definition.
-		
-		String revRegDefTag = "Tag2";
-		String revRegDefConfig = new JSONObject().put("issuance_type", "ISSUANCE_ON_DEMAND").put("max_cred_num", 5).toString();
-		IssuerCreateAndStoreRevocRegResult createRevRegResult = Anoncreds.issuerCreateAndStoreRevocReg(ctx.acmeWallet, ctx.acmeDid, null, revRegDefTag, ctx.jobCertificateCredDefId, revRegDefConfig, tailsWriter).get();
-		String revRegEntryJson = createRevRegResult.getRevRegEntryJson();
-		String revRegDefJson = createRevRegResult.getRevRegDefJson();
-		ctx.revocRegistryId = createRevRegResult.getRevRegId();
+		// 5. Acme keeps a ready Revocation Registry, the next one is created in the background while the current one fills up
 		
-		// 6. Acme creates and submits the Revocation Registry Definition
-		
-		String revRegDefRequest = Ledger.buildRevocRegDefRequest(ctx.acmeDid, revRegDefJson).get();
-		String revRegDefResponse = signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDid, revRegDefRequest);
-		log.info(revRegDefResponse);
-		
-		// 7. Acme creates and submits the Revocation Registry Entry
-		
-		String revRegEntryRequest = Ledger.buildRevocRegEntryRequest(ctx.acmeDid, ctx.revocRegistryId, "CL_ACCUM", revRegEntryJson).get();
-		String revRegEntryResponse = signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDid, revRegEntryRequest);
-		log.info(revRegEntryResponse);
+		ctx.registryPool = new RevocationRegistryPool(ctx.client, ctx.tailsStore, ctx.acmeWallet, ctx.acmeDid, 5);
+		ctx.registryPool.provision(ctx.jobCertificateCredDefId);
 	}
 	
 	void getTranscriptFromFaber(Context ctx) throws Exception {
@@ -653,16 +677,18 @@ public class GettingStartedTest {
 		String transcriptCredOffer = Anoncreds.issuerCreateCredentialOffer(ctx.faberWallet, ctx.transcriptCredDefId).get();
 		String transcriptCredDefId = new JSONObject(transcriptCredOffer).getString("cred_def_id");
 		
-		/* 2. Alice gets Credential Definition from Ledger
+		/* 2. Alice gets Credential Schema and Credential Definition from Ledger
 		 * 
 		 * Alice wants to see the attributes that the Transcript Credential contains. 
 		 * These attributes are known because a Credential Schema for Transcript has been written to the Ledger.
+		 * 
+		 * Alice also needs to get the Credential Definition corresponding to the Credential Definition Id in the Transcript Credential Offer.
+		 * 
+		 * Both reads are in flight while Alice creates her Master Secret.
 		 */
 		
-		String getSchemaRequest = Ledger.buildGetSchemaRequest(ctx.faberDidForAlice, ctx.transcriptSchemaId).get();
-		String getSchemaResponse = Ledger.submitRequest(ctx.pool, getSchemaRequest).get();
-		ParseResponseResult parseSchemaResult = Ledger.parseGetSchemaResponse(getSchemaResponse).get();
-		log.info("Transcript Schema" + parseSchemaResult.getObjectJson());
+		CompletableFuture<String> transcriptSchemaFuture = ctx.client.getSchema(ctx.faberDidForAlice, ctx.transcriptSchemaId);
+		CompletableFuture<String> transcriptCredDefFuture = ctx.client.getCredDef(ctx.aliceDid, transcriptCredDefId);
 		
 		/* 3. Alice creates a Master Secret
 		 * 
@@ -674,14 +700,11 @@ public class GettingStartedTest {
 		
 		ctx.aliceMasterSecretId = Anoncreds.proverCreateMasterSecret(ctx.aliceWallet, null).get();
 		
-		/* 4. Alice get the Credential Definition
-		 * 
-		 * Alice also needs to get the Credential Definition corresponding to the Credential Definition Id in the Transcript Credential Offer.
-		 */
+		// 4. Alice receives the Credential Schema and Credential Definition
 		
-		String credDefResponse = submitRequest(ctx, Ledger.buildGetCredDefRequest(ctx.aliceDid, transcriptCredDefId).get());
-		ParseResponseResult parsedCredDefResponse = Ledger.parseGetCredDefResponse(credDefResponse).get();
-		String transcriptCredDef = parsedCredDefResponse.getObjectJson();
+		String transcriptSchema = transcriptSchemaFuture.get();
+		String transcriptCredDef = transcriptCredDefFuture.get();
+		log.info("Transcript Schema" + transcriptSchema);
 		
 		// 5. Alice creates a Credential Request of the issuance of the Transcript Credential
 
@@ -692,19 +715,26 @@ public class GettingStartedTest {
 		/* 6. Faber creates the Transcript Credential for Alice
 		 * 
 		 * Encoding is not standardized by Indy except that 32-bit integers are encoded as themselves.
+		 * The AttributeEncoder hashes all other values with SHA-256, like the Aries agents do.
 		 */
 		
-		String credValuesJson = new JSONObject()
-			.put("first_name", new JSONObject().put("raw", "Alice").put("encoded", "1139481716457488690172217916278103335"))
-			.put("last_name", new JSONObject().put("raw", "Garcia").put("encoded", "5321642780241790123587902456789123452"))
-			.put("degree", new JSONObject().put("raw", "Bachelor of Science, Marketing").put("encoded", "12434523576212321"))
-			.put("status", new JSONObject().put("raw", "graduated").put("encoded", "2213454313412354"))
-			.put("ssn", new JSONObject().put("raw", "123-45-6789").put("encoded", "3124141231422543541"))
-			.put("year", new JSONObject().put("raw", "2015").put("encoded", "2015"))
-			.put("average", new JSONObject().put("raw", "5").put("encoded", "5")).toString();
-		
-		IssuerCreateCredentialResult issuerCredentialResult = Anoncreds.issuerCreateCredential(ctx.faberWallet, transcriptCredOffer, credentialRequestJson, credValuesJson, null, 0).get();
-		String transcriptCredJson = issuerCredentialResult.getCredentialJson();
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("degree", "Bachelor of Science, Marketing");
+		rawValues.put("status", "graduated");
+		rawValues.put("ssn", "123-45-6789");
+		rawValues.put("year", "2015");
+		rawValues.put("average", "5");
+		String credValuesJson = AttributeEncoder.getDefault().encode(rawValues);
+		
+		// The issuance pipeline creates the credentials of many holders in parallel, here it is just Alice
+		
+		String transcriptCredJson;
+		try (IssuancePipeline issuer = new IssuancePipeline(ctx.client, ctx.faberWallet)) {
+			IssuedCredential issuedCredential = issuer.issue(transcriptCredOffer, credentialRequestJson, credValuesJson).get();
+			transcriptCredJson = issuedCredential.getCredentialJson();
+		}
 		log.info("IssuedCredential: " + transcriptCredJson);
 		
 		// 7. Alice stores Transcript Credential from Faber in her Wallet
@@ -727,47 +757,36 @@ public class GettingStartedTest {
 		 */
 		
 		String nonce = Anoncreds.generateNonce().get();
-		JSONArray transcriptRestrictions = new JSONArray().put(new JSONObject().put("cred_def_id", ctx.transcriptCredDefId));
-		
-		String proofRequestJson = new JSONObject()
-			.put("nonce", nonce)
-			.put("name", "Job-Application")
-			.put("version", "0.1")
-			.put("requested_attributes", new JSONObject()
-				.put("attr1_referent", new JSONObject().put("name", "first_name"))
-				.put("attr2_referent", new JSONObject().put("name", "last_name"))
-				.put("attr3_referent", new JSONObject().put("name", "degree").put("restrictions", transcriptRestrictions))
-				.put("attr4_referent", new JSONObject().put("name", "status").put("restrictions", transcriptRestrictions))
-				.put("attr5_referent", new JSONObject().put("name", "ssn").put("restrictions", transcriptRestrictions))
-				.put("attr6_referent", new JSONObject().put("name", "year").put("restrictions", transcriptRestrictions)))
-			.put("requested_predicates", new JSONObject()
-				.put("predicate1_referent", new JSONObject()
-					.put("name", "average")
-					.put("p_type", ">=")
-					.put("p_value", 4)
-					.put("restrictions", transcriptRestrictions)))
-			.toString();
+		String proofRequestJson = new ProofRequestBuilder("Job-Application", "0.1", nonce)
+			.attribute("attr1_referent", "first_name")
+			.attribute("attr2_referent", "last_name")
+			.attribute("attr3_referent", "degree", ctx.transcriptCredDefId)
+			.attribute("attr4_referent", "status", ctx.transcriptCredDefId)
+			.attribute("attr5_referent", "ssn", ctx.transcriptCredDefId)
+			.attribute("attr6_referent", "year", ctx.transcriptCredDefId)
+			.predicate("predicate1_referent", "average", ">=", 4, ctx.transcriptCredDefId)
+			.build();
 		
 		log.info("Job-Application Proof Request: " + proofRequestJson);
 
 		// 2. Alice searches her Wallet for Credentials that she can use for the creating of Proof for the Job-Application Proof Request
 		
-		CredentialsSearchForProofReq credentialsSearch = CredentialsSearchForProofReq.open(ctx.aliceWallet, proofRequestJson, null).get();
+		CredentialSearch credentialsSearch = CredentialSearch.open(ctx.aliceWallet, proofRequestJson, null);
 		
-		JSONArray credentialsForAttribute3 = new JSONArray(credentialsSearch.fetchNextCredentials("attr3_referent", 100).get());
-		String credentialIdForAttribute3 = credentialsForAttribute3.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute3 = credentialsSearch.first("attr3_referent");
+		String credentialIdForAttribute3 = credentialForAttribute3.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForAttribute4 = new JSONArray(credentialsSearch.fetchNextCredentials("attr4_referent", 100).get());
-		String credentialIdForAttribute4 = credentialsForAttribute4.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute4 = credentialsSearch.first("attr4_referent");
+		String credentialIdForAttribute4 = credentialForAttribute4.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForAttribute5 = new JSONArray(credentialsSearch.fetchNextCredentials("attr5_referent", 100).get());
-		String credentialIdForAttribute5 = credentialsForAttribute5.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute5 = credentialsSearch.first("attr5_referent");
+		String credentialIdForAttribute5 = credentialForAttribute5.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForAttribute6 = new JSONArray(credentialsSearch.fetchNextCredentials("attr6_referent", 100).get());
-		String credentialIdForAttribute6 = credentialsForAttribute6.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute6 = credentialsSearch.first("attr6_referent");
+		String credentialIdForAttribute6 = credentialForAttribute6.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForPredicate1 = new JSONArray(credentialsSearch.fetchNextCredentials("predicate1_referent", 100).get());
-		String credentialIdForPredicate1 = credentialsForPredicate1.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForPredicate1 = credentialsSearch.first("predicate1_referent");
+		String credentialIdForPredicate1 = credentialForPredicate1.getJSONObject("cred_info").getString("referent");
 		
 		credentialsSearch.close();
 		
@@ -780,37 +799,25 @@ public class GettingStartedTest {
 		 * - attributes for which creating of verifiable proof is not required
 		 */
 		
-		String credentialsJson = new JSONObject()
-			.put("self_attested_attributes", new JSONObject()
-					.put("attr1_referent", "Alice")
-					.put("attr2_referent", "Garcia"))
-			.put("requested_attributes", new JSONObject()
-				.put("attr3_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute3)
-					.put("revealed", true))
-				.put("attr4_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute4)
-					.put("revealed", true))
-				.put("attr5_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute5)
-					.put("revealed", true))
-				.put("attr6_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute6)
-					.put("revealed", true)))
-			.put("requested_predicates", new JSONObject()
-				.put("predicate1_referent", new JSONObject()
-					.put("cred_id",credentialIdForPredicate1)))
-			.toString();
+		String credentialsJson = new RequestedCredentialsBuilder()
+			.selfAttested("attr1_referent", "Alice")
+			.selfAttested("attr2_referent", "Garcia")
+			.attribute("attr3_referent", credentialIdForAttribute3)
+			.attribute("attr4_referent", credentialIdForAttribute4)
+			.attribute("attr5_referent", credentialIdForAttribute5)
+			.attribute("attr6_referent", credentialIdForAttribute6)
+			.predicate("predicate1_referent", credentialIdForPredicate1)
+			.build();
 		
 		// 4. Alice gets the Credential Schema and correspoding Credential Definition
 		
 		JSONObject schemasMap = new JSONObject();
 		JSONObject credDefsMap = new JSONObject();
 		
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialsForAttribute3);
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialsForAttribute4);
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialsForAttribute5);
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialsForAttribute6);
+		populateCredentialInfo(ctx, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialForAttribute3);
+		populateCredentialInfo(ctx, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialForAttribute4);
+		populateCredentialInfo(ctx, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialForAttribute5);
+		populateCredentialInfo(ctx, ctx.aliceDidForFaber, schemasMap, credDefsMap, credentialForAttribute6);
 		
 		String schemas = schemasMap.toString();
 		String credDefs = credDefsMap.toString();
@@ -818,7 +825,7 @@ public class GettingStartedTest {
 
 		// 5. Alice creates the Proof for Acme Job-Application Proof Request
 		
-		String proofJson = Anoncreds.proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
+		String proofJson = IndyCalls.getDefault().proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
 		JSONObject proof = new JSONObject(proofJson);
 		log.info("Proof: " + proof);
 		
@@ -840,11 +847,11 @@ public class GettingStartedTest {
 		assertEquals("123-45-6789", revealedAttrs.getJSONObject("attr5_referent").getString("raw"));
 		assertEquals("2015", revealedAttrs.getJSONObject("attr6_referent").getString("raw"));
 		
-		String revocRegDefs = new JSONObject().toString();
-		String revocRegs = new JSONObject().toString();
+		// The verifier resolves the artifacts of every identifier in the proof through the shared cache
 		
-		Boolean accepted = Anoncreds.verifierVerifyProof(proofRequestJson, proofJson, schemas, credDefs, revocRegDefs, revocRegs).get();
-		assertTrue(accepted);
+		try (ProofVerifier verifier = new ProofVerifier(ctx.client, ctx.acmeDid)) {
+			assertTrue(verifier.verify(proofRequestJson, proofJson).get());
+		}
 
 		// 7. Acme creates a Credential Offer for Alice
 		
@@ -858,9 +865,7 @@ public class GettingStartedTest {
 		 * Alice needs to get the Credential Definition corresponding to the Credential Definition Id in the Job-Certificate Credential Offer.
 		 */
 		
-		String credDefResponse = submitRequest(ctx, Ledger.buildGetCredDefRequest(ctx.aliceDid, ctx.jobCertificateCredDefId).get());
-		ParseResponseResult parsedCredDefResponse = Ledger.parseGetCredDefResponse(credDefResponse).get();
-		String jobCertificateCredDef = parsedCredDefResponse.getObjectJson();
+		String jobCertificateCredDef = ctx.artifactCache.getCredDef(ctx.pool, ctx.aliceDid, ctx.jobCertificateCredDefId);
 		
 		// 2. Alice creates a Credential Request
 		
@@ -874,40 +879,38 @@ public class GettingStartedTest {
 		 * takes the ID of the revocation registry created earlier by Acme and a handle to the blob storage containing the validity tails
 		 */
 		
-		String credValuesJson = new JSONObject()
-			.put("first_name", new JSONObject().put("raw", "Alice").put("encoded", "1139481716457488690172217916278103335"))
-			.put("last_name", new JSONObject().put("raw", "Garcia").put("encoded", "5321642780241790123587902456789123452"))
-			.put("employee_status", new JSONObject().put("raw", "Permanent").put("encoded", "2143135425425143112321314321"))
-			.put("salary", new JSONObject().put("raw", "2400").put("encoded", "2400"))
-			.put("experience", new JSONObject().put("raw", "10").put("encoded", "10")).toString();
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("last_name", "Garcia");
+		rawValues.put("employee_status", "Permanent");
+		rawValues.put("salary", "2400");
+		rawValues.put("experience", "10");
+		String credValuesJson = AttributeEncoder.getDefault().encode(rawValues);
 		
-		String revocRegId = ctx.revocRegistryId;
-		BlobStorageReader blobStorageReader = BlobStorageReader.openReader("default", getTailsWriterConfig()).get();
-		int blobStorageReaderHandle = blobStorageReader.getBlobStorageReaderHandle();
-			    			    		
-		IssuerCreateCredentialResult createCredentialResult = Anoncreds.issuerCreateCredential(ctx.acmeWallet, ctx.jobCertificateCredOffer, credentialRequestJson, credValuesJson, revocRegId, blobStorageReaderHandle).get();
-		String jobCertificateCredJson = createCredentialResult.getCredentialJson();
-		String revocRegDeltaJson = createCredentialResult.getRevocRegDeltaJson();
-		ctx.jobCertificateCredRevocId = createCredentialResult.getRevocId();
-		log.info("IssuedCredential: " + jobCertificateCredJson);
-		log.info("RevocRegDelta: " + revocRegDeltaJson);
-		log.info("RevocId: " + ctx.jobCertificateCredRevocId);
-
-		/* 4. Acme publishs a revocation registry entry
+		/* 4. Acme issues through the pipeline and publishes a revocation registry entry
 		 * 
-		 * Other parties can then verify the revocation state of the credential
+		 * The pipeline takes the next slot in an active Revocation Registry, which rolls over to a ready one when full. 
+		 * The batcher publishes the registry delta, so that other parties can verify the revocation state of the credential.
 		 */
 		
-		String revocRegEntryRequest = Ledger.buildRevocRegEntryRequest(ctx.acmeDid, revocRegId, "CL_ACCUM", revocRegDeltaJson).get();
-		signAndSubmitRequest(ctx, ctx.acmeWallet, ctx.acmeDid, revocRegEntryRequest);
+		IssuedCredential issuedCredential;
+		try (RevocationBatcher batcher = new RevocationBatcher(ctx.client, ctx.tailsStore, ctx.acmeWallet, ctx.acmeDid);
+				IssuancePipeline issuer = new IssuancePipeline(ctx.client, ctx.acmeWallet, 1, ctx.registryPool, batcher)) {
+			issuedCredential = issuer.issue(ctx.jobCertificateCredOffer, credentialRequestJson, credValuesJson).get();
+		}
+		String jobCertificateCredJson = issuedCredential.getCredentialJson();
+		ctx.revocRegistryId = issuedCredential.getRevRegId();
+		ctx.jobCertificateCredRevocId = issuedCredential.getCredRevId();
+		log.info("IssuedCredential: " + jobCertificateCredJson);
+		log.info("RevocId: " + ctx.jobCertificateCredRevocId);
+		
+		String revocRegId = ctx.revocRegistryId;
 		
 		// 5. Alice requests the Revocation Registry Definition before storing the Credential
 		
-		String revocRegDefRequest = Ledger.buildGetRevocRegDefRequest(ctx.aliceDidForAcme, revocRegId).get();
-		String revocRegDefResponse = Ledger.submitRequest(ctx.pool, revocRegDefRequest).get();
-		ParseResponseResult parseResponseResult = Ledger.parseGetRevocRegDefResponse(revocRegDefResponse).get();
-		String revocRegDefJson = parseResponseResult.getObjectJson();
+		String revocRegDefJson = ctx.artifactCache.getRevocRegDef(ctx.pool, ctx.aliceDidForAcme, revocRegId);
 		log.info("RevocRegDefResponse: " + revocRegDefJson);
+		ctx.tailsReader = ctx.tailsStore.getReaderFor(revocRegDefJson);
 		
 		/* 6. Alice stores Job-Certificate Credential from Acme in her Wallet
 		 * 
@@ -932,44 +935,27 @@ public class GettingStartedTest {
 		
 		String nonce = Anoncreds.generateNonce().get();
 		Long timestamp = System.currentTimeMillis() / 1000;
-		JSONArray jobCertificateRestrictions = new JSONArray().put(new JSONObject().put("cred_def_id", ctx.jobCertificateCredDefId));
-		
-		String proofRequestJson = new JSONObject()
-				.put("nonce", nonce)
-				.put("name", "Loan-Application-Basic")
-				.put("version", "0.1")
-				.put("requested_attributes", new JSONObject()
-					.put("attr1_referent", new JSONObject()
-						.put("name", "employee_status")
-						.put("restrictions", jobCertificateRestrictions)))
-				.put("requested_predicates", new JSONObject()
-					.put("predicate1_referent", new JSONObject()
-						.put("name", "salary")
-						.put("p_type", ">=")
-						.put("p_value", 2000)
-						.put("restrictions", jobCertificateRestrictions))
-					.put("predicate2_referent", new JSONObject()
-						.put("name", "experience")
-						.put("p_type", ">=")
-						.put("p_value", 1)
-						.put("restrictions", jobCertificateRestrictions)))
-				.put("non_revoked", new JSONObject().put("to", timestamp))
-				.toString();
+		String proofRequestJson = new ProofRequestBuilder("Loan-Application-Basic", "0.1", nonce)
+			.attribute("attr1_referent", "employee_status", ctx.jobCertificateCredDefId)
+			.predicate("predicate1_referent", "salary", ">=", 2000, ctx.jobCertificateCredDefId)
+			.predicate("predicate2_referent", "experience", ">=", 1, ctx.jobCertificateCredDefId)
+			.nonRevoked(null, timestamp)
+			.build();
 			
 		log.info("Loan-Application Proof Request: " + proofRequestJson);
 
 		// 8. Alice searches her Wallet for Credentials that she can use for creating a Proof for the Loan-Application Proof Request
 		
-		CredentialsSearchForProofReq credentialsSearch = CredentialsSearchForProofReq.open(ctx.aliceWallet, proofRequestJson, null).get();
+		CredentialSearch credentialsSearch = CredentialSearch.open(ctx.aliceWallet, proofRequestJson, null);
 		
-		JSONArray credentialsForAttribute1 = new JSONArray(credentialsSearch.fetchNextCredentials("attr1_referent", 100).get());
-		String credentialIdForAttribute1 = credentialsForAttribute1.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute1 = credentialsSearch.first("attr1_referent");
+		String credentialIdForAttribute1 = credentialForAttribute1.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForPredicate1 = new JSONArray(credentialsSearch.fetchNextCredentials("predicate1_referent", 100).get());
-		String credentialIdForPredicate1 = credentialsForPredicate1.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForPredicate1 = credentialsSearch.first("predicate1_referent");
+		String credentialIdForPredicate1 = credentialForPredicate1.getJSONObject("cred_info").getString("referent");
 		
-		JSONArray credentialsForPredicate2 = new JSONArray(credentialsSearch.fetchNextCredentials("predicate2_referent", 100).get());
-		String credentialIdForPredicate2 = credentialsForPredicate2.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForPredicate2 = credentialsSearch.first("predicate2_referent");
+		String credentialIdForPredicate2 = credentialForPredicate2.getJSONObject("cred_info").getString("referent");
 		
 		credentialsSearch.close();
 		
@@ -978,35 +964,34 @@ public class GettingStartedTest {
 		JSONObject schemasMap = new JSONObject();
 		JSONObject credDefsMap = new JSONObject();
 		
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForAcme, schemasMap, credDefsMap, credentialsForAttribute1);
+		populateCredentialInfo(ctx, ctx.aliceDidForAcme, schemasMap, credDefsMap, credentialForAttribute1);
 		
 		String schemas = schemasMap.toString();
 		String credDefs = credDefsMap.toString();
 
-		// 10. Proover (Alice) obtains the Revocation State
+		/* 10. Proover (Alice) obtains the Revocation State
+		 * 
+		 * The state is computed from the registry delta on the ledger and kept for later proofs. 
+		 * Its timestamp is the time of the last registry entry in the non-revoked interval.
+		 */
+		
+		RevocationStateStore revocationStates = new RevocationStateStore(ctx.client, ctx.tailsStore, ctx.aliceDidForThrift);
+		RevocationState revocationState = revocationStates.getState(revocRegId, ctx.jobCertificateCredRevocId, null, timestamp);
+		String revocState = revocationState.toStatesJson();
+		long stateTimestamp = revocationState.getTimestamp();
+		log.info("Revocation State: " + revocationState.getJson());
+		
+		// A second proof in the same interval reuses the state
 		
-		// [TODO] Explain how the prover (Alice) obtains revocRegDeltaJson, it comes from Anoncreds.issuerCreateCredential
-		String revocStateJson = Anoncreds.createRevocationState(blobStorageReaderHandle, revocRegDefJson, revocRegDeltaJson, timestamp, ctx.jobCertificateCredRevocId).get();
-		String revocState = new JSONObject().put(revocRegId, new JSONObject().put("" + timestamp, new JSONObject(revocStateJson))).toString();
-		log.info("Revocation State: " + revocStateJson);
+		assertSame(revocationState, revocationStates.getState(revocRegId, ctx.jobCertificateCredRevocId, null, timestamp));
 		
 		// 11. Alice provides Loan-Application Proof
 		
-		String credentialsJson = new JSONObject()
-			.put("self_attested_attributes", new JSONObject())
-			.put("requested_attributes", new JSONObject()
-				.put("attr1_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute1)
-					.put("revealed", true)
-					.put("timestamp", timestamp)))
-			.put("requested_predicates", new JSONObject()
-				.put("predicate1_referent", new JSONObject()
-					.put("cred_id",credentialIdForPredicate1)
-					.put("timestamp", timestamp))
-				.put("predicate2_referent", new JSONObject()
-					.put("cred_id",credentialIdForPredicate2)
-					.put("timestamp", timestamp)))
-			.toString();
+		String credentialsJson = new RequestedCredentialsBuilder()
+			.attribute("attr1_referent", credentialIdForAttribute1, true, stateTimestamp)
+			.predicate("predicate1_referent", credentialIdForPredicate1, stateTimestamp)
+			.predicate("predicate2_referent", credentialIdForPredicate2, stateTimestamp)
+			.build();
 		
 		/* 12. Alice creates the Proof for Thrift Loan-Application Proof Request
 		 * 
@@ -1014,7 +999,7 @@ public class GettingStartedTest {
 		 * that she has to share when all she’s trying to do right now is prove basic eligibility.
 		 */
 		
-		String proofJson = Anoncreds.proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
+		String proofJson = IndyCalls.getDefault().proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
 		JSONObject proof = new JSONObject(proofJson);
 		log.info("Proof: " + proof);
 
@@ -1025,11 +1010,11 @@ public class GettingStartedTest {
 		
 		assertEquals("Permanent", revealedAttrs.getJSONObject("attr1_referent").getString("raw"));
 		
-		String revocRegDefs = new JSONObject().put(revocRegId, new JSONObject(revocRegDefJson)).toString();
-		String revocRegs = new JSONObject().put(revocRegId, new JSONObject().put("" + timestamp, new JSONObject(revocRegDeltaJson))).toString();
+		// The verifier reads the registry state at the timestamp of the proof
 		
-		Boolean accepted = Anoncreds.verifierVerifyProof(proofRequestJson, proofJson, schemas, credDefs, revocRegDefs, revocRegs).get();
-		assertTrue(accepted);
+		try (ProofVerifier verifier = new ProofVerifier(ctx.client, ctx.thriftDid)) {
+			assertTrue(verifier.verify(proofRequestJson, proofJson).get());
+		}
 	}
 
 	void kycProcessWithThrift(Context ctx) throws Exception {
@@ -1037,31 +1022,26 @@ public class GettingStartedTest {
 		// 1. Alice gets a second Proof Request from Thrift Bank
 		
 		String nonce = Anoncreds.generateNonce().get();
-		String proofRequestJson = new JSONObject()
-				.put("nonce", nonce)
-				.put("name", "Loan-Application-KYC")
-				.put("version", "0.1")
-				.put("requested_attributes", new JSONObject()
-					.put("attr1_referent", new JSONObject().put("name", "first_name"))
-					.put("attr2_referent", new JSONObject().put("name", "last_name"))
-					.put("attr3_referent", new JSONObject().put("name", "ssn")))
-				.put("requested_predicates", new JSONObject())
-				.toString();
+		String proofRequestJson = new ProofRequestBuilder("Loan-Application-KYC", "0.1", nonce)
+			.attribute("attr1_referent", "first_name")
+			.attribute("attr2_referent", "last_name")
+			.attribute("attr3_referent", "ssn")
+			.build();
 			
 		log.info("Loan-Application-KYC Proof Request: " + proofRequestJson);
 		
 		// 2. Alice searches her Wallet for Credentials that she can use for creating a Proof for the Loan-Application-KYC Proof Request
 		
-		CredentialsSearchForProofReq credentialsSearch = CredentialsSearchForProofReq.open(ctx.aliceWallet, proofRequestJson, null).get();
+		CredentialSearch credentialsSearch = CredentialSearch.open(ctx.aliceWallet, proofRequestJson, null);
 		
-		JSONArray credentialsForAttribute1 = new JSONArray(credentialsSearch.fetchNextCredentials("attr1_referent", 100).get());
-		String credentialIdForAttribute1 = credentialsForAttribute1.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute1 = credentialsSearch.first("attr1_referent");
+		String credentialIdForAttribute1 = credentialForAttribute1.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForAttribute2 = new JSONArray(credentialsSearch.fetchNextCredentials("attr2_referent", 100).get());
-		String credentialIdForAttribute2 = credentialsForAttribute2.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute2 = credentialsSearch.first("attr2_referent");
+		String credentialIdForAttribute2 = credentialForAttribute2.getJSONObject("cred_info").getString("referent");
 
-		JSONArray credentialsForAttribute3 = new JSONArray(credentialsSearch.fetchNextCredentials("attr3_referent", 100).get());
-		String credentialIdForAttribute3 = credentialsForAttribute3.getJSONObject(0).getJSONObject("cred_info").getString("referent");
+		JSONObject credentialForAttribute3 = credentialsSearch.first("attr3_referent");
+		String credentialIdForAttribute3 = credentialForAttribute3.getJSONObject("cred_info").getString("referent");
 		
 		credentialsSearch.close();
 
@@ -1070,9 +1050,13 @@ public class GettingStartedTest {
 		JSONObject schemasMap = new JSONObject();
 		JSONObject credDefsMap = new JSONObject();
 		
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialsForAttribute1);
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialsForAttribute2);
-		populateCredentialInfo(ctx.pool, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialsForAttribute3);
+		// The Transcript artifacts have been seen before, so this makes no ledger reads
+		
+		long cacheMisses = ctx.artifactCache.getMissCount();
+		populateCredentialInfo(ctx, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialForAttribute1);
+		populateCredentialInfo(ctx, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialForAttribute2);
+		populateCredentialInfo(ctx, ctx.aliceDidForThrift, schemasMap, credDefsMap, credentialForAttribute3);
+		assertEquals(cacheMisses, ctx.artifactCache.getMissCount());
 		
 		String schemas = schemasMap.toString();
 		String credDefs = credDefsMap.toString();
@@ -1080,24 +1064,15 @@ public class GettingStartedTest {
 
 		// 4. Alice provides Loan-Application-KYC Proof
 		
-		String credentialsJson = new JSONObject()
-			.put("self_attested_attributes", new JSONObject())
-			.put("requested_attributes", new JSONObject()
-				.put("attr1_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute1)
-					.put("revealed", true))
-				.put("attr2_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute2)
-					.put("revealed", true))
-				.put("attr3_referent", new JSONObject()
-					.put("cred_id", credentialIdForAttribute3)
-					.put("revealed", true)))
-			.put("requested_predicates", new JSONObject())
-			.toString();
+		String credentialsJson = new RequestedCredentialsBuilder()
+			.attribute("attr1_referent", credentialIdForAttribute1)
+			.attribute("attr2_referent", credentialIdForAttribute2)
+			.attribute("attr3_referent", credentialIdForAttribute3)
+			.build();
 
 		// 5. Alice creates the Proof for Thrift Loan-Application-KYC Proof Request
 
-		String proofJson = Anoncreds.proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
+		String proofJson = IndyCalls.getDefault().proverCreateProof(ctx.aliceWallet, proofRequestJson, credentialsJson, ctx.aliceMasterSecretId, schemas, credDefs, revocState).get();
 		JSONObject proof = new JSONObject(proofJson);
 		log.info("Proof: " + proof);
 
@@ -1110,11 +1085,11 @@ public class GettingStartedTest {
 		assertEquals("Garcia", revealedAttrs.getJSONObject("attr2_referent").getString("raw"));
 		assertEquals("123-45-6789", revealedAttrs.getJSONObject("attr3_referent").getString("raw"));
 		
-		String revocRegDefs = new JSONObject().toString();
-		String revocRegs = new JSONObject().toString();
+		// The verifier resolves the artifacts of every identifier in the proof through the shared cache
 		
-		Boolean accepted = Anoncreds.verifierVerifyProof(proofRequestJson, proofJson, schemas, credDefs, revocRegDefs, revocRegs).get();
-		assertTrue(accepted);
+		try (ProofVerifier verifier = new ProofVerifier(ctx.client, ctx.thriftDid)) {
+			assertTrue(verifier.verify(proofRequestJson, proofJson).get());
+		}
 	}
 
 	void quitJobWithAcme(Context ctx) throws Exception {
@@ -1123,42 +1098,40 @@ public class GettingStartedTest {
 		
 		String revocRegId = ctx.revocRegistryId;
 		String credRevocId = ctx.jobCertificateCredRevocId; 
-		BlobStorageReader blobStorageReader = BlobStorageReader.openReader("default", getTailsWriterConfig()).get();
-		int blobStorageReaderHandle = blobStorageReader.getBlobStorageReaderHandle();
 		
-		Anoncreds.issuerRevokeCredential(ctx.acmeWallet, blobStorageReaderHandle, revocRegId, credRevocId);
+		// 2. Acme publishes the registry delta, revocations that arrive in the same window share one entry
+		
+		try (RevocationBatcher batcher = new RevocationBatcher(ctx.client, ctx.tailsStore, ctx.acmeWallet, ctx.acmeDid)) {
+			CompletableFuture<String> published = batcher.revoke(revocRegId, credRevocId);
+			batcher.flush();
+			published.get();
+		}
 	}
 
-	private String getTailsWriterConfig() {
-		return new JSONObject().put("base_dir", EnvironmentUtils.getIndyHomePath("tails")).put("uri_pattern", "").toString();
-	}
-	
-	private void populateCredentialInfo(Pool pool, String did, JSONObject schemas, JSONObject credDefs, JSONArray credentials) throws Exception {
-		for (JSONObject o : array2List(credentials)) {
+	private void populateCredentialInfo(Context ctx, String did, JSONObject schemas, JSONObject credDefs, JSONObject... credentials) throws Exception {
+		for (JSONObject o : credentials) {
 			JSONObject credInfo = o.getJSONObject("cred_info");
 			String schemaId = credInfo.getString("schema_id");
 			String credDefId = credInfo.getString("cred_def_id");
 			if (schemas.isNull(schemaId)) {
-				String getSchemaRequest = Ledger.buildGetSchemaRequest(did, schemaId).get();
-				String getSchemaResponse = Ledger.submitRequest(pool, getSchemaRequest).get();
-				ParseResponseResult parseSchemaResult = Ledger.parseGetSchemaResponse(getSchemaResponse).get();
-				String schemaJson = parseSchemaResult.getObjectJson();
+				String schemaJson = ctx.artifactCache.getSchema(ctx.pool, did, schemaId);
 				schemas.put(schemaId, new JSONObject(schemaJson));
 			}
 			if (credDefs.isNull(credDefId)) {
-				String getCredDefRequest = Ledger.buildGetCredDefRequest(did, credDefId).get();
-				String getCredDefResponse = Ledger.submitRequest(pool, getCredDefRequest).get();
-				ParseResponseResult parseCredDefResponse = Ledger.parseGetCredDefResponse(getCredDefResponse).get();
-				String credDefJson = parseCredDefResponse.getObjectJson();
+				String credDefJson = ctx.artifactCache.getCredDef(ctx.pool, did, credDefId);
 				credDefs.put(credDefId, new JSONObject(credDefJson));
 			}
 		}
 	}
 
-	private List<JSONObject> array2List(JSONArray credentials) {
-		List<JSONObject> result = new ArrayList<>();
-		credentials.forEach(o -> result.add((JSONObject) o));
-		return result;
+	private void onboard(Context ctx, NymEntry... entries) throws Exception {
+		Report report = new NymOnboarder(ctx.client).onboard(Arrays.stream(entries));
+		for (NymResult result : report.getResults()) {
+			if (!result.isSuccess()) {
+				log.warn("NYM failed: " + result.getEntry().getTargetDid(), result.getError());
+			}
+		}
+		log.info(report.toString());
 	}
 
 	private String signAndSubmitRequest(Context ctx, Wallet endorserWallet, String endorserDid, String request) throws Exception {
@@ -1166,7 +1139,7 @@ public class GettingStartedTest {
 	}
 
 	private String submitRequest(Context ctx, String req) throws Exception {
-		String res = Ledger.submitRequest(ctx.pool, req).get();
+		String res = IndyMetrics.getDefault().timed(IndyMetrics.submitOperation(req), () -> Ledger.submitRequest(ctx.pool, req)).get();
 		if ("REPLY".equals(new JSONObject(res).get("op"))) {
 			log.info("SubmitRequest: " + req);
 			log.info("SubmitResponse: " + res);
@@ -1181,23 +1154,39 @@ public class GettingStartedTest {
 		
 		log.info("Close Wallets");
 		
-		closeAndDeleteWallet(ctx.aliceWallet, ctx.aliceWalletConfig, ctx.aliceWalletKey);
-		closeAndDeleteWallet(ctx.thriftWallet, ctx.thriftWalletConfig, ctx.thriftWalletKey);
-		closeAndDeleteWallet(ctx.acmeWallet, ctx.acmeWalletConfig, ctx.acmeWalletKey);
-		closeAndDeleteWallet(ctx.faberWallet, ctx.faberWalletConfig, ctx.faberWalletKey);
-		closeAndDeleteWallet(ctx.governmentWallet, ctx.governmentWalletConfig, ctx.governmentWalletKey);
-		closeAndDeleteWallet(ctx.trusteeWallet, ctx.trusteeWalletConfig, ctx.trusteeWalletKey);
+		ctx.walletLeases.forEach(WalletManager.Lease::close);
+		
+		closeAndDeleteWallet(ctx, ctx.aliceWallet, ctx.aliceWalletConfig, ctx.aliceWalletKey);
+		closeAndDeleteWallet(ctx, ctx.thriftWallet, ctx.thriftWalletConfig, ctx.thriftWalletKey);
+		closeAndDeleteWallet(ctx, ctx.acmeWallet, ctx.acmeWalletConfig, ctx.acmeWalletKey);
+		closeAndDeleteWallet(ctx, ctx.faberWallet, ctx.faberWalletConfig, ctx.faberWalletKey);
+		closeAndDeleteWallet(ctx, ctx.governmentWallet, ctx.governmentWalletConfig, ctx.governmentWalletKey);
+		closeAndDeleteWallet(ctx, ctx.trusteeWallet, ctx.trusteeWalletConfig, ctx.trusteeWalletKey);
+		ctx.walletManager.close();
+		ctx.credDefGenerator.close();
+		ctx.registryPool.close();
+		ctx.tailsStore.close();
 		
 		log.info("Close and Delete Pool Ledger");
+		log.info(ctx.artifactCache.toString());
 
-		ctx.pool.closePoolLedger().get();
+		ctx.poolLease.close();
+		ctx.poolManager.close();
 		Pool.deletePoolLedgerConfig(ctx.poolName).get();
 	}
 
-	void closeAndDeleteWallet(Wallet wallet, String config, String key) throws Exception {
+	Wallet leaseWallet(Context ctx, String config, String key) throws Exception {
+		WalletManager.Lease lease = ctx.walletManager.lease(config, key);
+		ctx.walletLeases.add(lease);
+		return lease.getWallet();
+	}
+
+	void closeAndDeleteWallet(Context ctx, Wallet wallet, String config, String key) throws Exception {
 		if (wallet != null) {
-			wallet.closeWallet().get();
+			String walletId = new JSONObject(config).getString("id");
+			ctx.walletManager.close(walletId);
 			Wallet.deleteWallet(config, key).get();
+			ctx.walletKeyStore.deleteKey(walletId);
 		}
 	}
 }
@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.DiskArtifactStore;
+
+public class ArtifactCacheTest {
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+	
+	@Test
+	public void testLruEviction() throws Exception {
+		
+		ArtifactCache cache = new ArtifactCache(2);
+		cache.put("schema1", "{\"id\":\"schema1\"}");
+		cache.put("schema2", "{\"id\":\"schema2\"}");
+		
+		// Touch schema1, so that schema2 is the eldest
+		
+		assertEquals("{\"id\":\"schema1\"}", cache.get("schema1"));
+		cache.put("schema3", "{\"id\":\"schema3\"}");
+		
+		assertNull(cache.get("schema2"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getEvictionCount());
+	}
+	
+	@Test
+	public void testCoalescedLoad() throws Exception {
+		
+		ArtifactCache cache = new ArtifactCache(10);
+		AtomicInteger ledgerReads = new AtomicInteger();
+		CompletableFuture<String> ledgerRead = new CompletableFuture<>();
+		
+		Supplier<CompletableFuture<String>> loader = () -> {
+			ledgerReads.incrementAndGet();
+			return ledgerRead;
+		};
+		
+		// Concurrent duplicates wait on the read in flight
+		
+		CompletableFuture<String> load1 = cache.load("creddef1", loader);
+		CompletableFuture<String> load2 = cache.load("creddef1", loader);
+		ledgerRead.complete("{\"id\":\"creddef1\"}");
+		
+		assertEquals("{\"id\":\"creddef1\"}", load1.get());
+		assertEquals("{\"id\":\"creddef1\"}", load2.get());
+		assertEquals(1, ledgerReads.get());
+		assertEquals(1, cache.getCoalescedCount());
+		
+		// Later loads are served from the cache
+		
+		assertEquals("{\"id\":\"creddef1\"}", cache.load("creddef1", loader).get());
+		assertEquals(1, ledgerReads.get());
+	}
+	
+	@Test
+	public void testDiskTier() throws Exception {
+		
+		File file = new File(tmpFolder.getRoot(), "pool1.dat");
+		
+		try (DiskArtifactStore store = new DiskArtifactStore(file); ArtifactCache cache = new ArtifactCache(10, store)) {
+			cache.put("schema1", "{\"id\":\"schema1\"}");
+			cache.put("creddef1", "{\"id\":\"creddef1\",\"name\":\"Künstler\"}");
+		}
+		
+		// Simulate a torn write at the end of the file
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length());
+			raf.writeInt(100);
+		}
+		
+		// A cold cache serves the artifacts from disk
+		
+		try (DiskArtifactStore store = new DiskArtifactStore(file); ArtifactCache cache = new ArtifactCache(10, store)) {
+			assertEquals(2, store.size());
+			
+			assertEquals("{\"id\":\"creddef1\",\"name\":\"Künstler\"}", cache.get("creddef1"));
+			assertEquals("{\"id\":\"creddef1\",\"name\":\"Künstler\"}", cache.get("creddef1"));
+			assertNull(cache.get("revreg1"));
+			
+			assertEquals(1, cache.getDiskHitCount());
+			assertEquals(1, cache.getHitCount());
+			assertEquals(1, cache.getMissCount());
+			
+			store.put("revreg1", "{\"id\":\"revreg1\"}");
+			assertEquals("{\"id\":\"revreg1\"}", store.get("revreg1"));
+		}
+	}
+
+	@Test
+	public void testDiskLoad() throws Exception {
+		
+		File file = new File(tmpFolder.getRoot(), "pool3.dat");
+		
+		try (DiskArtifactStore store = new DiskArtifactStore(file)) {
+			store.put("schema1", "{\"id\":\"schema1\"}");
+			
+			ArtifactCache cache = new ArtifactCache(10, store);
+			AtomicInteger ledgerReads = new AtomicInteger();
+			Supplier<CompletableFuture<String>> loader = () -> {
+				ledgerReads.incrementAndGet();
+				return CompletableFuture.completedFuture("{\"id\":\"schema2\"}");
+			};
+			
+			// A load reads the disk tier before the ledger
+			
+			assertEquals("{\"id\":\"schema1\"}", cache.load("schema1", loader).get());
+			assertEquals(1, cache.getDiskHitCount());
+			assertEquals(0, ledgerReads.get());
+			
+			// What comes from the ledger is written to disk in the background, closing the cache waits for it
+			
+			assertEquals("{\"id\":\"schema2\"}", cache.load("schema2", loader).get());
+			assertEquals(1, ledgerReads.get());
+			assertEquals(1, cache.getMissCount());
+			cache.close();
+			assertTrue(store.contains("schema2"));
+		}
+	}
+
+	@Test
+	public void testStoreInUse() throws Exception {
+		
+		File file = new File(tmpFolder.getRoot(), "pool2.dat");
+		
+		// A second store for the same file in this JVM is read-only
+		
+		try (DiskArtifactStore store = new DiskArtifactStore(file)) {
+			store.put("schema1", "{\"id\":\"schema1\"}");
+			assertFalse(store.isReadOnly());
+			
+			try (DiskArtifactStore other = new DiskArtifactStore(file)) {
+				assertTrue(other.isReadOnly());
+				assertEquals("{\"id\":\"schema1\"}", other.get("schema1"));
+
+				// The read-only store sees what the owner appends later
+
+				for (int i = 2; i <= 10; i++) {
+					store.put("schema" + i, "{\"id\":\"schema" + i + "\"}");
+					assertEquals("{\"id\":\"schema" + i + "\"}", store.get("schema" + i));
+				}
+				assertEquals("{\"id\":\"schema7\"}", other.get("schema7"));
+				assertTrue(other.contains("schema10"));
+				assertEquals(10, other.size());
+				assertNull(other.get("schema11"));
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.utils.AttributeEncoder;
+
+public class AttributeEncoderTest {
+
+	@Test
+	public void testEncode() throws Exception {
+		
+		AttributeEncoder encoder = new AttributeEncoder(10);
+		
+		// 32-bit integers encode as themselves
+		
+		assertEquals("2015", encoder.encode("2015"));
+		assertEquals("-5", encoder.encode("-5"));
+		assertEquals("2147483647", encoder.encode("2147483647"));
+		assertEquals("-2147483648", encoder.encode("-2147483648"));
+		assertEquals("7", encoder.encode("007"));
+		assertEquals("0", encoder.encode("-0"));
+		
+		// Everything else is hashed
+		
+		assertEquals("27034640024117331033063128044004318218486816931520886405535659934417438781507", encoder.encode("Alice"));
+		assertEquals("26221484005389514539852548961319751347124425277437769688639924217837557266135", encoder.encode("2147483648"));
+		assertEquals(2, encoder.getMissCount());
+		
+		encoder.encode("Alice");
+		assertEquals(1, encoder.getHitCount());
+		assertEquals(2, encoder.getSize());
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		
+		AttributeEncoder encoder = new AttributeEncoder(2);
+		encoder.encode("a");
+		encoder.encode("b");
+		encoder.encode("a");
+		encoder.encode("c");
+		assertEquals(2, encoder.getSize());
+		
+		// The least recently used 'b' was evicted
+		
+		encoder.encode("a");
+		encoder.encode("b");
+		assertEquals(2, encoder.getHitCount());
+		assertEquals(4, encoder.getMissCount());
+	}
+
+	@Test
+	public void testEncodeCredential() throws Exception {
+		
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("year", "2015");
+		
+		AttributeEncoder encoder = AttributeEncoder.getDefault();
+		JSONObject values = new JSONObject(encoder.encode(rawValues));
+		assertEquals(2, values.length());
+		assertEquals("Alice", values.getJSONObject("first_name").getString("raw"));
+		assertEquals(encoder.encode("Alice"), values.getJSONObject("first_name").getString("encoded"));
+		assertEquals("2015", values.getJSONObject("year").getString("encoded"));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.utils.BulkDidCreator;
+import io.nessus.indy.utils.BulkDidCreator.DidArray;
+import io.nessus.indy.utils.IndyCalls;
+import io.nessus.indy.utils.WalletCredentials;
+import io.nessus.indy.utils.WalletKeyStore;
+
+public class BulkDidCreatorTest {
+
+	@Test
+	public void testSeededAcrossWallets() throws Exception {
+		
+		String configA = new JSONObject().put("id", "BulkA").toString();
+		String configB = new JSONObject().put("id", "BulkB").toString();
+		String key = WalletCredentials.raw(WalletKeyStore.generateKey()).toJson();
+		Wallet.createWallet(configA, key).get();
+		Wallet.createWallet(configB, key).get();
+		
+		try (Wallet walletA = Wallet.openWallet(configA, key).get(); Wallet walletB = Wallet.openWallet(configB, key).get()) {
+			
+			String[] seeds = new String[50];
+			seeds[7] = "000000000000000000000000Steward1";
+			
+			BulkDidCreator creator = new BulkDidCreator(8, IndyCalls.getDefault());
+			List<Wallet> wallets = Arrays.asList(walletA, walletB);
+			List<DidArray> results = creator.create(wallets, seeds);
+			assertEquals(2, results.size());
+			
+			for (int w = 0; w < wallets.size(); w++) {
+				DidArray dids = results.get(w);
+				assertEquals(seeds.length, dids.size());
+				for (int i = 0; i < dids.size(); i++) {
+					assertEquals(dids.getVerkey(i), Did.keyForLocalDid(wallets.get(w), dids.getDid(i)).get());
+				}
+			}
+			
+			// The seeded DID is the same in both wallets
+			
+			assertEquals(results.get(0).getDid(7), results.get(1).getDid(7));
+			
+		} finally {
+			Wallet.deleteWallet(configA, key).get();
+			Wallet.deleteWallet(configB, key).get();
+		}
+	}
+}
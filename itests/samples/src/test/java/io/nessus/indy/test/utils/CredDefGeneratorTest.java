@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.FakeLedger;
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.utils.CredDefGenerator;
+import io.nessus.indy.utils.CredDefGenerator.Stage;
+import io.nessus.indy.utils.CredDefGenerator.Task;
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IndyMetrics;
+import io.nessus.indy.utils.LedgerTransport;
+
+public class CredDefGeneratorTest {
+
+	@Test
+	public void testPregenerate() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("CredDefGenerator")) {
+			
+			IndyClient client = fixture.getClient();
+			String did = fixture.getDid();
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			
+			try (CredDefGenerator generator = new CredDefGenerator(client, fixture.getWallet(), did, 1)) {
+				
+				// Pre-generate the keys, the cred def stays in the wallet
+				
+				Task task = generator.pregenerate(schemaId, "TAG1", true);
+				assertSame(task, generator.pregenerate(schemaId, "TAG1", true));
+				
+				String credDefId = task.getGenerated().get();
+				assertEquals(Stage.GENERATED, task.getStage());
+				assertEquals(credDefId, task.getCredDefId());
+				assertFalse(task.getPublished().isDone());
+				
+				// Publish on rollout
+				
+				assertEquals(credDefId, task.publish().get());
+				assertEquals(Stage.PUBLISHED, task.getStage());
+				String credDefJson = client.getCredDef(did, credDefId).get();
+				assertEquals(credDefId, new JSONObject(credDefJson).getString("id"));
+				
+				// Generating the same cred def again returns the done task
+				
+				assertSame(task, generator.generate(schemaId, "TAG1", true));
+				assertSame(task, generator.getTask(schemaId, "TAG1"));
+			}
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("CredDefGenerator")) {
+			
+			String schemaId = fixture.createSchema("Transcript", "1.2", "first_name", "salary");
+			
+			try (CredDefGenerator generator = new CredDefGenerator(fixture.getClient(), fixture.getWallet(), fixture.getDid(), 1)) {
+				
+				// The second task waits behind the first one
+				
+				Task first = generator.generate(schemaId, "TAG1", true);
+				Task second = generator.generate(schemaId, "TAG2", true);
+				assertTrue(second.cancel());
+				assertEquals(Stage.CANCELLED, second.getStage());
+				assertTrue(second.getPublished().isCancelled());
+				
+				// A cancelled task is started over
+				
+				Task third = generator.generate(schemaId, "TAG2", false);
+				first.getPublished().get();
+				third.getPublished().get();
+				assertEquals(Stage.PUBLISHED, third.getStage());
+				assertFalse(third.cancel());
+			}
+		}
+	}
+
+	@Test
+	public void testRetryAfterPublishFailure() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("CredDefGenerator")) {
+			
+			String did = fixture.getDid();
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			
+			// A transport that loses the first cred def
+			
+			AtomicBoolean failure = new AtomicBoolean(true);
+			FakeLedger ledger = fixture.getLedger();
+			LedgerTransport transport = request -> {
+				String type = new JSONObject(request).getJSONObject("operation").getString("type");
+				if (FakeLedger.CRED_DEF.equals(type) && failure.getAndSet(false)) {
+					CompletableFuture<String> future = new CompletableFuture<>();
+					future.completeExceptionally(new IOException("Connection lost"));
+					return future;
+				}
+				return ledger.submit(request);
+			};
+			IndyClient client = new IndyClient(transport, new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY), new IndyMetrics());
+			
+			try (CredDefGenerator generator = new CredDefGenerator(client, fixture.getWallet(), did, 1)) {
+				
+				Task first = generator.generate(schemaId, "TAG1", true);
+				String credDefId = first.getGenerated().get();
+				try {
+					first.getPublished().get();
+					fail("ExecutionException expected");
+				} catch (ExecutionException ex) {
+					assertTrue(ex.getCause() instanceof IOException);
+				}
+				assertEquals(Stage.FAILED, first.getStage());
+				assertSame(first, generator.getTask(schemaId, "TAG1"));
+				
+				// The retry publishes the cred def that is in the wallet already
+				
+				Task second = generator.generate(schemaId, "TAG1", true);
+				assertNotSame(first, second);
+				assertEquals(credDefId, second.getPublished().get());
+				assertEquals(Stage.PUBLISHED, second.getStage());
+				assertEquals(credDefId, new JSONObject(client.getCredDef(did, credDefId).get()).getString("id"));
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.test.support.LedgerFixture.CredentialRequest;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.CredentialSearch;
+import io.nessus.indy.utils.ProofRequestBuilder;
+
+public class CredentialSearchTest {
+
+	@Test
+	public void testPagingAndAutoClose() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("CredentialSearch")) {
+			
+			Wallet wallet = fixture.getWallet();
+			
+			String schemaId = fixture.createSchema("Transcript", "1.2", "first_name", "average");
+			IssuerCreateAndStoreCredentialDefResult credDefResult = fixture.createCredDef(schemaId, "TAG1", false);
+			String credDefId = credDefResult.getCredDefId();
+			
+			// Store more credentials than fit in the first two pages
+			
+			for (int i = 0; i < 5; i++) {
+				CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+				Map<String, String> rawValues = new LinkedHashMap<>();
+				rawValues.put("first_name", "Alice" + i);
+				rawValues.put("average", "5");
+				String credValues = AttributeEncoder.getDefault().encode(rawValues);
+				IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(wallet, credReq.getCredOfferJson(), credReq.getCredReqJson(), credValues, null, 0).get();
+				Anoncreds.proverStoreCredential(wallet, null, credReq.getCredReqMetadataJson(), credResult.getCredentialJson(), credDefResult.getCredDefJson(), null).get();
+			}
+			
+			String proofRequest = new ProofRequestBuilder("Transcript-Proof", "0.1", Anoncreds.generateNonce().get())
+				.attribute("attr1_referent", "first_name", credDefId)
+				.predicate("predicate1_referent", "average", ">=", 4, credDefId)
+				.build();
+			
+			try (CredentialSearch search = CredentialSearch.open(wallet, proofRequest, null)) {
+				
+				// Pages of 1, 2 and 4 credentials, the last one short
+				
+				assertEquals(5, search.stream("attr1_referent").count());
+				assertFalse(search.isClosed());
+				
+				// The last pending referent closes the search
+				
+				assertNotNull(search.first("predicate1_referent"));
+				assertTrue(search.isClosed());
+				
+				// A closed search has nothing more to fetch
+				
+				assertFalse(search.iterator("attr1_referent").hasNext());
+				assertNull(search.first("predicate1_referent"));
+			}
+		}
+	}
+}
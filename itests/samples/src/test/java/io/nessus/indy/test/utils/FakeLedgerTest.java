@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.did.DidResults.CreateAndStoreMyDidResult;
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.test.support.FakeLedger;
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.NymOnboarder;
+import io.nessus.indy.utils.NymOnboarder.NymEntry;
+
+public class FakeLedgerTest {
+
+	Logger log = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void testClientOverFakeLedger() throws Exception {
+		
+		String walletConfig = new JSONObject().put("id", "FakeLedger").toString();
+		String walletKey = new JSONObject().put("key", "fake_ledger_key").toString();
+		Wallet.createWallet(walletConfig, walletKey).get();
+		
+		try (FakeLedger ledger = new FakeLedger(); Wallet wallet = Wallet.openWallet(walletConfig, walletKey).get()) {
+			
+			assertFalse(ledger.getNodeAliases().isEmpty());
+			ledger.setLatency(2, 2, TimeUnit.MILLISECONDS);
+			
+			ArtifactCache cache = new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY);
+			IndyClient client = new IndyClient(ledger, cache);
+			
+			String seed = new JSONObject().put("seed", "000000000000000000000000Trustee1").toString();
+			CreateAndStoreMyDidResult didResult = Did.createAndStoreMyDid(wallet, seed).get();
+			String did = didResult.getDid();
+			
+			// Onboard a batch of NYMs
+			
+			List<NymEntry> entries = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				CreateAndStoreMyDidResult res = Did.createAndStoreMyDid(wallet, "{}").get();
+				entries.add(new NymEntry(wallet, did, res.getDid(), res.getVerkey(), null));
+			}
+			NymOnboarder.Report report = new NymOnboarder(client).onboard(entries.stream());
+			log.info("{}", report);
+			assertEquals(0, report.getFailureCount());
+			
+			// Write a schema and read it back concurrently
+			
+			IssuerCreateSchemaResult schemaResult = Anoncreds.issuerCreateSchema(did, "Transcript", "1.2", 
+					new JSONArray(Arrays.asList("first_name","last_name")).toString()).get();
+			String schemaRequest = Ledger.buildSchemaRequest(did, schemaResult.getSchemaJson()).get();
+			client.signAndSubmit(wallet, did, schemaRequest).get();
+			
+			List<CompletableFuture<String>> reads = IntStream.range(0, 10)
+					.mapToObj(i -> client.getSchema(did, schemaResult.getSchemaId()))
+					.collect(Collectors.toList());
+			for (CompletableFuture<String> read : reads) {
+				JSONObject schema = new JSONObject(read.get());
+				assertEquals(schemaResult.getSchemaId(), schema.getString("id"));
+				assertTrue(schema.getInt("seqNo") > 0);
+			}
+			
+			// Only one of the reads went to the ledger
+			
+			assertEquals(1, cache.getMissCount());
+			
+			// A duplicate schema gets rejected
+			
+			try {
+				client.signAndSubmit(wallet, did, schemaRequest).get();
+				fail("ExecutionException expected");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause().getMessage(), ex.getCause().getMessage().startsWith("REJECT"));
+			}
+			
+		} finally {
+			Wallet.deleteWallet(walletConfig, walletKey).get();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.utils.IndyCalls;
+import io.nessus.indy.utils.IndyMetrics;
+import io.nessus.indy.utils.LatencyHistogram;
+import io.nessus.indy.utils.LatencyHistogram.Snapshot;
+
+public class IndyMetricsTest {
+
+	@Test
+	public void testPercentiles() throws Exception {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+		}
+		
+		// Percentiles are accurate to about 3%
+		
+		assertWithin(500, histogram.getValueAtPercentile(50.0, TimeUnit.MICROSECONDS));
+		assertWithin(990, histogram.getValueAtPercentile(99.0, TimeUnit.MICROSECONDS));
+		
+		Snapshot snapshot = histogram.snapshot("op");
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(500, snapshot.getMean());
+		assertEquals(1000, snapshot.getMax());
+	}
+
+	@Test
+	public void testTimedAndJmx() throws Exception {
+		
+		// A fresh instance, other tests record into the default one
+		
+		IndyMetrics metrics = new IndyMetrics();
+		
+		String request = "{\"operation\":{\"type\":\"107\"}}";
+		String operation = IndyMetrics.submitOperation(request);
+		assertEquals("ledger.submit.GET_SCHEMA", operation);
+		
+		metrics.timed(operation, () -> CompletableFuture.completedFuture("ok")).get();
+		CompletableFuture<String> failed = metrics.timed(operation, () -> {
+			throw new IllegalStateException("expected");
+		});
+		assertTrue(failed.isCompletedExceptionally());
+		
+		Snapshot snapshot = metrics.getSnapshot(operation);
+		assertEquals(2, snapshot.getCount());
+		assertEquals(1, snapshot.getErrorCount());
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName oname = new ObjectName(IndyMetrics.OBJECT_NAME + ",name=IndyMetricsTest");
+		assertTrue(metrics.register(oname.toString()));
+		try {
+			CompositeData data = (CompositeData) server.invoke(oname, "getSnapshot", 
+					new Object[] { operation }, new String[] { String.class.getName() });
+			assertEquals(2L, data.get("count"));
+		} finally {
+			server.unregisterMBean(oname);
+		}
+	}
+
+	@Test
+	public void testIndyCalls() throws Exception {
+		
+		IndyMetrics metrics = new IndyMetrics();
+		IndyCalls calls = new IndyCalls(metrics);
+		
+		calls.generateWalletKey("{}").get();
+		assertEquals(1, metrics.getSnapshot("wallet.generateWalletKey").getCount());
+		
+		calls.generateNonce().get();
+		assertEquals(1, metrics.getSnapshot("anoncreds.generateNonce").getCount());
+		
+		// A failed call is recorded as an error
+		
+		String config = new JSONObject().put("id", "unknown-" + UUID.randomUUID()).toString();
+		String credentials = new JSONObject().put("key", "unknown_key").toString();
+		try {
+			calls.openWallet(config, credentials).get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException ex) {
+			// expected
+		}
+		assertEquals(1, metrics.getSnapshot("wallet.openWallet").getErrorCount());
+	}
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue("Expected about " + expected + ", but was " + actual, Math.abs(actual - expected) <= expected * 0.03);
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hyperledger.indy.sdk.IndyException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.test.support.LedgerFixture.CredentialRequest;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IssuancePipeline;
+import io.nessus.indy.utils.IssuancePipeline.IssuanceEntry;
+import io.nessus.indy.utils.IssuancePipeline.IssuanceResult;
+import io.nessus.indy.utils.IssuancePipeline.IssuedCredential;
+import io.nessus.indy.utils.IssuancePipeline.Report;
+import io.nessus.indy.utils.RevocationBatcher;
+import io.nessus.indy.utils.RevocationRegistryPool;
+
+public class IssuancePipelineTest {
+
+	@Test
+	public void testRevocableIssuance() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("IssuancePipeline")) {
+			
+			IndyClient client = fixture.getClient();
+			String did = fixture.getDid();
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			
+			List<IssuanceEntry> entries = createEntries(fixture, credDefId, 10);
+			
+			// The first two issuances only go ahead once both of them are in a registry update
+			
+			CountDownLatch started = new CountDownLatch(2);
+			AtomicBoolean parallel = new AtomicBoolean();
+			
+			try (RevocationRegistryPool registries = new RevocationRegistryPool(client, fixture.getTailsStore(), fixture.getWallet(), did, 4, 1, 2);
+					RevocationBatcher batcher = new RevocationBatcher(client, fixture.getTailsStore(), fixture.getWallet(), did, 60000L) {
+						@Override
+						public CompletableFuture<String> update(String revRegId, RegistryUpdate update) throws InterruptedException, ExecutionException, IndyException {
+							return super.update(revRegId, () -> {
+								started.countDown();
+								if (started.await(10, TimeUnit.SECONDS)) {
+									parallel.set(true);
+								}
+								return update.apply();
+							});
+						}
+					};
+					IssuancePipeline pipeline = new IssuancePipeline(client, fixture.getWallet(), 2, registries, batcher)) {
+				
+				registries.provision(credDefId).get();
+				
+				Report report = pipeline.issue(entries.stream());
+				assertEquals(report.toString(), 10, report.getIssuedCount());
+				assertEquals(0, report.getFailureCount());
+				assertTrue(report.getThroughput() > 0);
+				
+				// Updates of one registry run one at a time, both registries were issued into at once
+				
+				assertTrue(parallel.get());
+				
+				// Every credential has its own slot, the two active registries hold eight
+				
+				Set<String> slots = new HashSet<>();
+				Set<String> revRegIds = new HashSet<>();
+				for (IssuanceResult result : report.getResults()) {
+					IssuedCredential cred = result.getCredential();
+					assertNotNull(cred.getRevRegId());
+					assertTrue(slots.add(cred.getRevRegId() + ":" + cred.getCredRevId()));
+					revRegIds.add(cred.getRevRegId());
+				}
+				assertEquals(2, registries.getRolloverCount());
+				assertTrue(revRegIds.size() >= 3);
+				
+				// The deltas went out as one entry per registry
+				
+				assertEquals(10, batcher.getDeltaCount());
+				assertEquals(revRegIds.size(), batcher.getEntryCount());
+			}
+		}
+	}
+
+	@Test
+	public void testIssuance() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("IssuancePipeline")) {
+			
+			String schemaId = fixture.createSchema("Transcript", "1.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", false).getCredDefId();
+			
+			List<IssuanceEntry> entries = createEntries(fixture, credDefId, 8);
+			
+			try (IssuancePipeline pipeline = new IssuancePipeline(fixture.getClient(), fixture.getWallet())) {
+				
+				IssuanceEntry first = entries.get(0);
+				IssuedCredential cred = pipeline.issue(first.getCredOfferJson(), first.getCredReqJson(), first.getCredValuesJson()).get();
+				assertEquals(credDefId, new JSONObject(cred.getCredentialJson()).getString("cred_def_id"));
+				assertNull(cred.getRevRegId());
+				
+				Report report = pipeline.issue(entries.stream());
+				assertEquals(report.toString(), 8, report.getIssuedCount());
+			}
+		}
+	}
+
+	private List<IssuanceEntry> createEntries(LedgerFixture fixture, String credDefId, int count) throws Exception {
+		List<IssuanceEntry> entries = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+			Map<String, String> rawValues = new LinkedHashMap<>();
+			rawValues.put("first_name", "Holder" + i);
+			rawValues.put("salary", "" + (2000 + i));
+			entries.add(new IssuanceEntry(credReq.getCredOfferJson(), credReq.getCredReqJson(), AttributeEncoder.getDefault().encode(rawValues)));
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.pool.Pool;
+import org.junit.Test;
+
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IndyConstants;
+import io.nessus.indy.utils.LedgerTransport;
+import io.nessus.indy.utils.PoolManager;
+
+public class PoolManagerTest {
+
+	// The DID of the trustee seed in the genesis transactions
+	static final String TRUSTEE_DID = "V4SGRU86Z58d6TV7PBUe6f";
+
+	@Test
+	public void testLeaseAndReopen() throws Exception {
+		
+		Pool.setProtocolVersion(IndyConstants.PROTOCOL_VERSION).get();
+		
+		try (PoolManager poolManager = new PoolManager(PoolManager.DEFAULT_IDLE_TIMEOUT)) {
+			
+			// Concurrent leases share the same handle
+			
+			Pool pool;
+			try (PoolManager.Lease lease1 = poolManager.lease("pool2"); PoolManager.Lease lease2 = poolManager.lease("pool2")) {
+				pool = lease1.getPool();
+				assertSame(pool, lease2.getPool());
+				
+				// An invalidated handle gets reopened on the next lease
+				
+				lease2.invalidate();
+			}
+			
+			try (PoolManager.Lease lease = poolManager.lease("pool2")) {
+				assertNotSame(pool, lease.getPool());
+			}
+			
+		} finally {
+			Pool.deletePoolLedgerConfig("pool2").get();
+		}
+	}
+	
+	@Test
+	public void testIdleClose() throws Exception {
+		
+		Pool.setProtocolVersion(IndyConstants.PROTOCOL_VERSION).get();
+		
+		try (PoolManager poolManager = new PoolManager(200)) {
+			
+			Pool pool;
+			try (PoolManager.Lease lease = poolManager.lease("pool3")) {
+				pool = lease.getPool();
+			}
+			assertTrue(poolManager.isOpen("pool3"));
+			
+			// An unused handle gets closed after the idle timeout
+			
+			for (int i = 0; i < 100 && poolManager.isOpen("pool3"); i++) {
+				Thread.sleep(20);
+			}
+			assertFalse(poolManager.isOpen("pool3"));
+			
+			try (PoolManager.Lease lease = poolManager.lease("pool3")) {
+				assertNotSame(pool, lease.getPool());
+			}
+			
+		} finally {
+			Pool.deletePoolLedgerConfig("pool3").get();
+		}
+	}
+	
+	@Test
+	public void testReopenAfterFailure() throws Exception {
+		
+		Pool.setProtocolVersion(IndyConstants.PROTOCOL_VERSION).get();
+		
+		try (PoolManager poolManager = new PoolManager(PoolManager.DEFAULT_IDLE_TIMEOUT)) {
+			
+			LedgerTransport transport = poolManager.transport("pool4");
+			String request = Ledger.buildGetNymRequest(null, TRUSTEE_DID).get();
+			IndyClient.checkReply(transport.submit(request).get());
+			
+			// Kill the handle behind the manager's back
+			
+			Pool dead;
+			try (PoolManager.Lease lease = poolManager.lease("pool4")) {
+				dead = lease.getPool();
+				dead.closePoolLedger().get();
+			}
+			
+			// The failed request invalidates the handle
+			
+			try {
+				transport.submit(request).get();
+				fail("ExecutionException expected");
+			} catch (ExecutionException ex) {
+				assertTrue(PoolManager.isPoolFailure(ex));
+			}
+			assertFalse(poolManager.isOpen("pool4"));
+			
+			// The next request reopens the pool
+			
+			IndyClient.checkReply(transport.submit(request).get());
+			try (PoolManager.Lease lease = poolManager.lease("pool4")) {
+				assertNotSame(dead, lease.getPool());
+			}
+			
+		} finally {
+			Pool.deletePoolLedgerConfig("pool4").get();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.utils.JsonWriter;
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.RequestedCredentialsBuilder;
+
+public class ProofRequestBuilderTest {
+
+	@Test
+	public void testProofRequest() throws Exception {
+		
+		String credDefId = "NcYxiDXkpYi6ov5FcYDi1e:3:CL:15:TAG1";
+		String json = new ProofRequestBuilder("Job-Application", "0.1", "123432421212")
+			.attribute("attr1_referent", "first_name")
+			.attribute("attr2_referent", "degree", credDefId)
+			.predicate("predicate1_referent", "average", ">=", 4, credDefId)
+			.nonRevoked(null, 1600000000L)
+			.build();
+		
+		JSONArray restrictions = new JSONArray().put(new JSONObject().put("cred_def_id", credDefId));
+		JSONObject expected = new JSONObject()
+			.put("nonce", "123432421212")
+			.put("name", "Job-Application")
+			.put("version", "0.1")
+			.put("requested_attributes", new JSONObject()
+				.put("attr1_referent", new JSONObject().put("name", "first_name"))
+				.put("attr2_referent", new JSONObject().put("name", "degree").put("restrictions", restrictions)))
+			.put("requested_predicates", new JSONObject()
+				.put("predicate1_referent", new JSONObject()
+					.put("name", "average")
+					.put("p_type", ">=")
+					.put("p_value", 4)
+					.put("restrictions", restrictions)))
+			.put("non_revoked", new JSONObject().put("to", 1600000000));
+		
+		assertTrue(json, expected.similar(new JSONObject(json)));
+		assertFalse(json, new JSONObject(json).getJSONObject("requested_attributes").getJSONObject("attr1_referent").has("restrictions"));
+	}
+
+	@Test
+	public void testRequestedCredentials() throws Exception {
+		
+		String json = new RequestedCredentialsBuilder()
+			.selfAttested("attr1_referent", "Alice")
+			.attribute("attr2_referent", "cred1", true, 1600000000L)
+			.predicate("predicate1_referent", "cred1")
+			.build();
+		
+		JSONObject expected = new JSONObject()
+			.put("self_attested_attributes", new JSONObject().put("attr1_referent", "Alice"))
+			.put("requested_attributes", new JSONObject()
+				.put("attr2_referent", new JSONObject().put("cred_id", "cred1").put("revealed", true).put("timestamp", 1600000000)))
+			.put("requested_predicates", new JSONObject()
+				.put("predicate1_referent", new JSONObject().put("cred_id", "cred1")));
+		
+		assertTrue(json, expected.similar(new JSONObject(json)));
+		
+		// Empty sections are still present
+		
+		assertEquals("{\"self_attested_attributes\":{},\"requested_attributes\":{},\"requested_predicates\":{}}", new RequestedCredentialsBuilder().build());
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		
+		String value = "a\"b\\c\n\t\u0001 </";
+		String json = JsonWriter.local()
+			.beginObject()
+			.field("value", value)
+			.name("list").beginArray().value(1L).value(true).value((String) null).endArray()
+			.endObject()
+			.toString();
+		
+		JSONObject obj = new JSONObject(json);
+		assertEquals(value, obj.getString("value"));
+		assertEquals(3, obj.getJSONArray("list").length());
+		assertTrue(json, obj.getJSONArray("list").isNull(2));
+	}
+}
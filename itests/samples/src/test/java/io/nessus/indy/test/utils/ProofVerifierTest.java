@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.test.support.LedgerFixture.CredentialRequest;
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.ProofVerifier;
+import io.nessus.indy.utils.ProofVerifier.ProofEntry;
+import io.nessus.indy.utils.ProofVerifier.ProofResult;
+import io.nessus.indy.utils.ProofVerifier.Report;
+import io.nessus.indy.utils.RequestedCredentialsBuilder;
+import io.nessus.indy.utils.VerificationCache;
+
+public class ProofVerifierTest {
+
+	Logger log = LoggerFactory.getLogger(getClass());
+
+	@Test
+	public void testBatchVerification() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("ProofVerifier")) {
+			
+			IndyClient client = fixture.getClient();
+			ArtifactCache cache = client.getArtifactCache();
+			Wallet wallet = fixture.getWallet();
+			String did = fixture.getDid();
+			
+			// Write the schema and cred def
+			
+			String schemaId = fixture.createSchema("Transcript", "1.2", "first_name", "average");
+			String schemaJson = client.getSchema(did, schemaId).get();
+			IssuerCreateAndStoreCredentialDefResult credDefResult = fixture.createCredDef(schemaId, "TAG1", false);
+			String credDefId = credDefResult.getCredDefId();
+			
+			// Issue a credential to a prover in the same wallet
+			
+			CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+			Map<String, String> rawValues = new LinkedHashMap<>();
+			rawValues.put("first_name", "Alice");
+			rawValues.put("average", "5");
+			String credValues = AttributeEncoder.getDefault().encode(rawValues);
+			IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(wallet, credReq.getCredOfferJson(), credReq.getCredReqJson(), credValues, null, 0).get();
+			String credId = Anoncreds.proverStoreCredential(wallet, null, credReq.getCredReqMetadataJson(), credResult.getCredentialJson(), credDefResult.getCredDefJson(), null).get();
+			String masterSecretId = fixture.getMasterSecretId();
+			
+			String schemas = new JSONObject().put(schemaId, new JSONObject(schemaJson)).toString();
+			String credDefs = new JSONObject().put(credDefId, new JSONObject(credDefResult.getCredDefJson())).toString();
+			String requestedCredentials = new RequestedCredentialsBuilder()
+				.attribute("attr1_referent", credId)
+				.predicate("predicate1_referent", credId)
+				.build();
+			
+			// Create a batch of proofs, the last one answers a different proof request
+			
+			List<ProofEntry> entries = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				String proofRequest = proofRequest(Anoncreds.generateNonce().get(), credDefId);
+				String proof = Anoncreds.proverCreateProof(wallet, proofRequest, requestedCredentials, masterSecretId, schemas, credDefs, "{}").get();
+				entries.add(new ProofEntry(proofRequest, proof));
+			}
+			String otherRequest = proofRequest(Anoncreds.generateNonce().get(), credDefId);
+			entries.add(new ProofEntry(otherRequest, entries.get(0).getProofJson()));
+			
+			cache.clear();
+			long reads = cache.getMissCount();
+			
+			try (ProofVerifier verifier = new ProofVerifier(client, did, 2)) {
+				
+				Report report = verifier.verify(entries.stream());
+				log.info("{}", report);
+				
+				assertEquals(11, report.getResults().size());
+				assertEquals(10, report.getVerifiedCount());
+				
+				ProofResult last = report.getResults().get(10);
+				assertFalse(last.isVerified());
+				
+				// Every artifact was read from the ledger once
+				
+				assertEquals(reads + 2, cache.getMissCount());
+				
+				assertTrue(verifier.verify(entries.get(1).getProofRequestJson(), entries.get(1).getProofJson()).get());
+			}
+			
+			// A resubmitted proof is served from the cache
+			
+			VerificationCache verifications = new VerificationCache();
+			try (ProofVerifier verifier = new ProofVerifier(client, did, 2, verifications)) {
+				ProofEntry entry = entries.get(2);
+				assertTrue(verifier.verify(entry.getProofRequestJson(), entry.getProofJson()).get());
+				assertTrue(verifier.verify(entry.getProofRequestJson(), entry.getProofJson()).get());
+				assertEquals(1, verifications.getHitCount());
+			}
+		}
+	}
+
+	private String proofRequest(String nonce, String credDefId) {
+		return new ProofRequestBuilder("Transcript-Proof", "0.1", nonce)
+			.attribute("attr1_referent", "first_name", credDefId)
+			.predicate("predicate1_referent", "average", ">=", 4, credDefId)
+			.build();
+	}
+}
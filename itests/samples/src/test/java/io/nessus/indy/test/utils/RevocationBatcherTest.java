@@ -0,0 +1,279 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.FakeLedger;
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.test.support.LedgerFixture.CredentialRequest;
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IndyMetrics;
+import io.nessus.indy.utils.LedgerNackException;
+import io.nessus.indy.utils.LedgerTransport;
+import io.nessus.indy.utils.RevocationBatcher;
+
+public class RevocationBatcherTest {
+
+	@Test
+	public void testMergedEntries() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationBatcher")) {
+			
+			IndyClient client = fixture.getClient();
+			Wallet wallet = fixture.getWallet();
+			String did = fixture.getDid();
+			
+			// Create and publish a revocable cred def and its registry
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			IssuerCreateAndStoreRevocRegResult revRegResult = fixture.createRevocReg(credDefId, "TAG1", 10);
+			String revRegId = revRegResult.getRevRegId();
+			int readerHandle = fixture.getTailsStore().getReaderFor(revRegResult.getRevRegDefJson()).getHandle();
+			
+			// Use a window that does not fire during the test
+			
+			try (RevocationBatcher batcher = new RevocationBatcher(client, fixture.getTailsStore(), wallet, did, 60000L)) {
+				
+				// Issue five credentials, their deltas go into one entry
+				
+				List<String> credRevIds = new ArrayList<>();
+				List<CompletableFuture<String>> published = new ArrayList<>();
+				for (int i = 0; i < 5; i++) {
+					CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+					Map<String, String> rawValues = new LinkedHashMap<>();
+					rawValues.put("first_name", "Alice");
+					rawValues.put("salary", "" + (2400 + i));
+					String credValues = AttributeEncoder.getDefault().encode(rawValues);
+					published.add(batcher.update(revRegId, () -> {
+						IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(wallet, credReq.getCredOfferJson(), credReq.getCredReqJson(), credValues, revRegId, readerHandle).get();
+						credRevIds.add(credResult.getRevocId());
+						return credResult.getRevocRegDeltaJson();
+					}));
+				}
+				batcher.flush();
+				for (CompletableFuture<String> future : published) {
+					future.get();
+				}
+				assertEquals(5, batcher.getDeltaCount());
+				assertEquals(1, batcher.getEntryCount());
+				
+				// Revoke three of them, they go into the next entry
+				
+				published.clear();
+				for (String credRevId : credRevIds.subList(0, 3)) {
+					published.add(batcher.revoke(revRegId, credRevId));
+				}
+				batcher.flush();
+				for (CompletableFuture<String> future : published) {
+					future.get();
+				}
+				assertEquals(8, batcher.getDeltaCount());
+				assertEquals(2, batcher.getEntryCount());
+				
+				// The ledger holds the accumulated registry
+				
+				long now = System.currentTimeMillis() / 1000;
+				JSONObject delta = new JSONObject(client.getRevocRegDelta(did, revRegId, -1, now).get().getObjectJson());
+				JSONArray revoked = delta.getJSONObject("value").getJSONArray("revoked");
+				assertEquals(3, revoked.length());
+			}
+		}
+	}
+
+	@Test
+	public void testRetryAfterFailure() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationBatcher")) {
+			
+			Wallet wallet = fixture.getWallet();
+			String did = fixture.getDid();
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			IssuerCreateAndStoreRevocRegResult revRegResult = fixture.createRevocReg(credDefId, "TAG1", 10);
+			String revRegId = revRegResult.getRevRegId();
+			int readerHandle = fixture.getTailsStore().getReaderFor(revRegResult.getRevRegDefJson()).getHandle();
+			
+			// A transport that loses the given number of registry entries
+			
+			AtomicInteger failures = new AtomicInteger();
+			FakeLedger ledger = fixture.getLedger();
+			LedgerTransport transport = request -> {
+				String type = new JSONObject(request).getJSONObject("operation").getString("type");
+				if (FakeLedger.REVOC_REG_ENTRY.equals(type) && failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+					CompletableFuture<String> future = new CompletableFuture<>();
+					future.completeExceptionally(new IOException("Connection lost"));
+					return future;
+				}
+				return ledger.submit(request);
+			};
+			IndyClient client = new IndyClient(transport, new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY), new IndyMetrics());
+			
+			try (RevocationBatcher batcher = new RevocationBatcher(client, fixture.getTailsStore(), wallet, did, 60000L, 2)) {
+				
+				// The first entry gets lost and is published together with the next delta
+				
+				failures.set(1);
+				List<String> credRevIds = new ArrayList<>();
+				CompletableFuture<String> first = issue(fixture, batcher, credDefId, revRegId, readerHandle, credRevIds);
+				batcher.flush();
+				assertFalse(first.isDone());
+				assertEquals(1, batcher.getRetryCount());
+				assertEquals(0, batcher.getEntryCount());
+				
+				CompletableFuture<String> second = issue(fixture, batcher, credDefId, revRegId, readerHandle, credRevIds);
+				batcher.flush();
+				first.get();
+				second.get();
+				assertEquals(1, batcher.getEntryCount());
+				
+				// After the last attempt the callers fail and the registry is out of sync
+				
+				failures.set(2);
+				CompletableFuture<String> revoked = batcher.revoke(revRegId, credRevIds.get(0));
+				batcher.flush();
+				assertFalse(revoked.isDone());
+				batcher.flush();
+				try {
+					revoked.get();
+					fail("ExecutionException expected");
+				} catch (ExecutionException ex) {
+					assertTrue(ex.getCause() instanceof IOException);
+				}
+				assertEquals(1, batcher.getEntryCount());
+				assertTrue(batcher.isOutOfSync(revRegId));
+				
+				// Later updates are refused and nothing is sent any more
+				
+				try {
+					batcher.revoke(revRegId, credRevIds.get(1));
+					fail("IllegalStateException expected");
+				} catch (IllegalStateException ex) {
+					// expected
+				}
+				long retries = batcher.getRetryCount();
+				batcher.flush();
+				assertEquals(retries, batcher.getRetryCount());
+			}
+		}
+	}
+
+	@Test
+	public void testRejectedEntry() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationBatcher")) {
+			
+			Wallet wallet = fixture.getWallet();
+			String did = fixture.getDid();
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			IssuerCreateAndStoreRevocRegResult revRegResult = fixture.createRevocReg(credDefId, "TAG1", 10);
+			String revRegId = revRegResult.getRevRegId();
+			int readerHandle = fixture.getTailsStore().getReaderFor(revRegResult.getRevRegDefJson()).getHandle();
+			
+			// A transport that writes the next registry entry, but loses the reply
+			
+			AtomicBoolean loseReply = new AtomicBoolean();
+			FakeLedger ledger = fixture.getLedger();
+			LedgerTransport transport = request -> {
+				String type = new JSONObject(request).getJSONObject("operation").getString("type");
+				CompletableFuture<String> response = ledger.submit(request);
+				if (FakeLedger.REVOC_REG_ENTRY.equals(type) && loseReply.getAndSet(false)) {
+					return response.thenCompose(res -> {
+						CompletableFuture<String> future = new CompletableFuture<>();
+						future.completeExceptionally(new IOException("Reply lost"));
+						return future;
+					});
+				}
+				return response;
+			};
+			IndyClient client = new IndyClient(transport, new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY), new IndyMetrics());
+			
+			try (RevocationBatcher batcher = new RevocationBatcher(client, fixture.getTailsStore(), wallet, did, 60000L)) {
+				
+				List<String> outOfSync = new ArrayList<>();
+				batcher.setOutOfSyncListener((id, th) -> outOfSync.add(id));
+				
+				// The entry is on the ledger, so sending it again gets rejected
+				
+				loseReply.set(true);
+				List<String> credRevIds = new ArrayList<>();
+				CompletableFuture<String> issued = issue(fixture, batcher, credDefId, revRegId, readerHandle, credRevIds);
+				batcher.flush();
+				assertEquals(1, batcher.getRetryCount());
+				batcher.flush();
+				try {
+					issued.get();
+					fail("ExecutionException expected");
+				} catch (ExecutionException ex) {
+					assertTrue(LedgerNackException.isNack(ex));
+				}
+				
+				// No more retries after the reject
+				
+				assertEquals(Arrays.asList(revRegId), outOfSync);
+				batcher.flush();
+				assertEquals(1, batcher.getRetryCount());
+			}
+		}
+	}
+
+	private CompletableFuture<String> issue(LedgerFixture fixture, RevocationBatcher batcher, String credDefId, String revRegId, int readerHandle, List<String> credRevIds) throws Exception {
+		CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("salary", "2400");
+		String credValues = AttributeEncoder.getDefault().encode(rawValues);
+		return batcher.update(revRegId, () -> {
+			IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(fixture.getWallet(), credReq.getCredOfferJson(), credReq.getCredReqJson(), credValues, revRegId, readerHandle).get();
+			credRevIds.add(credResult.getRevocId());
+			return credResult.getRevocRegDeltaJson();
+		});
+	}
+}
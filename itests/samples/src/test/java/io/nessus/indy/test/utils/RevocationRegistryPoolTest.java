@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.RevocationRegistryPool;
+import io.nessus.indy.utils.RevocationRegistryPool.Registry;
+
+public class RevocationRegistryPoolTest {
+
+	@Test
+	public void testRollover() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationRegistryPool")) {
+			
+			IndyClient client = fixture.getClient();
+			String did = fixture.getDid();
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			
+			try (RevocationRegistryPool pool = new RevocationRegistryPool(client, fixture.getTailsStore(), fixture.getWallet(), did, 2, 1)) {
+				
+				// The active registry and the spare one
+				
+				pool.provision(credDefId).get();
+				assertEquals(2, pool.getReadyCount(credDefId));
+				
+				// Two slots per registry
+				
+				Registry first = pool.acquire(credDefId);
+				assertSame(first, pool.acquire(credDefId));
+				assertEquals(2, first.getReservedCount());
+				assertEquals(0, pool.getRolloverCount());
+				
+				// The third issuance rolls over to the spare registry, another one gets created
+				
+				Registry second = pool.acquire(credDefId);
+				assertNotEquals(first.getRevRegId(), second.getRevRegId());
+				assertEquals(1, second.getReservedCount());
+				assertEquals(1, pool.getRolloverCount());
+				assertEquals(1, pool.getReadyCount(credDefId));
+				
+				// The registry definition is on the ledger
+				
+				String revRegDefJson = client.getRevocRegDef(did, second.getRevRegId()).get();
+				assertNotNull(revRegDefJson);
+				assertEquals(second.getTailsReader().getTailsHash(), new JSONObject(revRegDefJson).getJSONObject("value").getString("tailsHash"));
+			}
+		}
+	}
+
+	@Test
+	public void testRoundRobin() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationRegistryPool")) {
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			
+			try (RevocationRegistryPool pool = new RevocationRegistryPool(fixture.getClient(), fixture.getTailsStore(), fixture.getWallet(), fixture.getDid(), 2, 0, 2)) {
+				
+				pool.provision(credDefId).get();
+				
+				// Consecutive slots are in different registries
+				
+				Registry first = pool.acquire(credDefId);
+				Registry second = pool.acquire(credDefId);
+				assertNotEquals(first.getRevRegId(), second.getRevRegId());
+				assertEquals(2, pool.getActive(credDefId).size());
+				assertSame(first, pool.acquire(credDefId));
+				assertSame(second, pool.acquire(credDefId));
+				assertEquals(0, pool.getStallCount());
+				
+				// Both are full, without spare registries the next issuance waits for a new one
+				
+				Registry third = pool.acquire(credDefId);
+				assertEquals(2, pool.getRolloverCount());
+				assertEquals(1, pool.getStallCount());
+				assertEquals(1, third.getReservedCount());
+			}
+		}
+	}
+}
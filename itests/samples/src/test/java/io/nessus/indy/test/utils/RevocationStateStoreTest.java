@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateCredentialResult;
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.test.support.LedgerFixture.CredentialRequest;
+import io.nessus.indy.utils.AttributeEncoder;
+import io.nessus.indy.utils.RevocationStateStore;
+import io.nessus.indy.utils.RevocationStateStore.RevocationState;
+
+public class RevocationStateStoreTest {
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("RevocationStateStore")) {
+			
+			// Create and publish a revocable cred def and its registry
+			
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			IssuerCreateAndStoreRevocRegResult revRegResult = fixture.createRevocReg(credDefId, "TAG1", 10);
+			String revRegId = revRegResult.getRevRegId();
+			int readerHandle = fixture.getTailsStore().getReaderFor(revRegResult.getRevRegDefJson()).getHandle();
+			
+			String credRevId = issue(fixture, credDefId, revRegId, readerHandle);
+			
+			RevocationStateStore store = new RevocationStateStore(fixture.getClient(), fixture.getTailsStore(), fixture.getDid());
+			long now = ledgerTime();
+			RevocationState state = store.getState(revRegId, credRevId, null, now);
+			assertTrue(state.getTimestamp() <= now);
+			assertTrue(new JSONObject(state.toStatesJson()).getJSONObject(revRegId).has("" + state.getTimestamp()));
+			
+			// The state is reused while there is no newer registry entry
+			
+			assertSame(state, store.getState(revRegId, credRevId, null, now));
+			Thread.sleep(1100);
+			assertSame(state, store.getState(revRegId, credRevId, null, ledgerTime()));
+			assertEquals(1, store.size());
+			
+			// Another issuance moves the state forward
+			
+			issue(fixture, credDefId, revRegId, readerHandle);
+			RevocationState updated = store.getState(revRegId, credRevId, null, ledgerTime());
+			assertNotSame(state, updated);
+			assertTrue(updated.getTimestamp() > state.getTimestamp());
+			
+			// An interval before the cached state gets a state of its own
+			
+			RevocationState earlier = store.getState(revRegId, credRevId, null, state.getTimestamp());
+			assertEquals(state.getTimestamp(), earlier.getTimestamp());
+			assertSame(updated, store.getState(revRegId, credRevId, null, ledgerTime()));
+			
+			// An interval that starts after the last entry gets the same state, with a timestamp in the interval
+			
+			assertSame(updated, store.getState(revRegId, credRevId, updated.getTimestamp(), ledgerTime()));
+			Thread.sleep(1100);
+			long from = ledgerTime();
+			RevocationState inInterval = store.getState(revRegId, credRevId, from, from);
+			assertEquals(from, inInterval.getTimestamp());
+			assertEquals(from, new JSONObject(inInterval.getJson()).getLong("timestamp"));
+			assertEquals(new JSONObject(updated.getJson()).get("witness").toString(), new JSONObject(inInterval.getJson()).get("witness").toString());
+		}
+	}
+
+	private String issue(LedgerFixture fixture, String credDefId, String revRegId, int readerHandle) throws Exception {
+		CredentialRequest credReq = fixture.createCredentialRequest(credDefId);
+		Map<String, String> rawValues = new LinkedHashMap<>();
+		rawValues.put("first_name", "Alice");
+		rawValues.put("salary", "2400");
+		String credValues = AttributeEncoder.getDefault().encode(rawValues);
+		IssuerCreateCredentialResult credResult = Anoncreds.issuerCreateCredential(fixture.getWallet(), credReq.getCredOfferJson(), credReq.getCredReqJson(), credValues, revRegId, readerHandle).get();
+		fixture.submit(Ledger.buildRevocRegEntryRequest(fixture.getDid(), revRegId, "CL_ACCUM", credResult.getRevocRegDeltaJson()).get());
+		// Registry entries are a second apart
+		Thread.sleep(1100);
+		return credResult.getRevocId();
+	}
+
+	private long ledgerTime() {
+		return System.currentTimeMillis() / 1000;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.junit.Test;
+
+import io.nessus.indy.test.support.LedgerFixture;
+import io.nessus.indy.utils.TailsStore;
+import io.nessus.indy.utils.TailsStore.TailsReader;
+
+public class TailsStoreTest {
+
+	@Test
+	public void testSharedReader() throws Exception {
+		
+		try (LedgerFixture fixture = new LedgerFixture("TailsStore")) {
+			
+			TailsStore store = fixture.getTailsStore();
+			String schemaId = fixture.createSchema("Job-Certificate", "0.2", "first_name", "salary");
+			String credDefId = fixture.createCredDef(schemaId, "TAG1", true).getCredDefId();
+			IssuerCreateAndStoreRevocRegResult revRegResult = fixture.createRevocReg(credDefId, "TAG1", 100);
+			String revRegDefJson = revRegResult.getRevRegDefJson();
+			
+			// One reader per tails hash
+			
+			TailsReader reader = store.getReaderFor(revRegDefJson);
+			assertSame(reader, store.getReader(reader.getTailsHash()));
+			assertEquals(1, store.getReaderCount());
+			
+			assertTrue(reader.getFile().exists());
+			assertTrue(reader.getTailsCount() >= 100);
+			reader.prefetch(10, 20);
+			
+			// The readers of all tails files share one libindy handle
+			
+			TailsReader other = store.getReaderFor(fixture.createRevocReg(credDefId, "TAG2", 10).getRevRegDefJson());
+			assertNotSame(reader, other);
+			assertEquals(reader.getHandle(), other.getHandle());
+			assertEquals(2, store.getReaderCount());
+			
+			// The reader is closed with the store, or when its registry is retired
+			
+			assertTrue(store.close(reader.getTailsHash()));
+			assertTrue(reader.isClosed());
+			assertFalse(store.close(reader.getTailsHash()));
+			assertEquals(1, store.getReaderCount());
+			try {
+				reader.getHandle();
+				fail("IllegalStateException expected");
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+	}
+}
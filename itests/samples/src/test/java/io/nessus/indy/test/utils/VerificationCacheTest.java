@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.nessus.indy.utils.ProofRequestBuilder;
+import io.nessus.indy.utils.VerificationCache;
+
+public class VerificationCacheTest {
+
+	@Test
+	public void testLoad() throws Exception {
+		
+		VerificationCache cache = new VerificationCache(10, 60000);
+		AtomicInteger verifications = new AtomicInteger();
+		
+		String proofRequest = proofRequest("1234", null);
+		String proof = "{\"proof\":{}}";
+		
+		assertTrue(cache.load(proofRequest, proof, () -> verify(verifications, true)).get());
+		assertTrue(cache.load(proofRequest, proof, () -> verify(verifications, true)).get());
+		assertEquals(1, verifications.get());
+		assertEquals(1, cache.getHitCount());
+		
+		// A different nonce or interval never matches
+		
+		assertNull(cache.get(proofRequest("1235", null), proof));
+		assertNull(cache.get(proofRequest("1234", 1600000000L), proof));
+		assertNull(cache.get(proofRequest, "{\"proof\":{\"other\":1}}"));
+		
+		// Errors are not cached
+		
+		String otherProof = "{\"proof\":{\"error\":1}}";
+		CompletableFuture<Boolean> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("Invalid structure"));
+		try {
+			cache.load(proofRequest, otherProof, () -> failed).get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException ex) {
+			// expected
+		}
+		assertNull(cache.get(proofRequest, otherProof));
+		assertEquals(false, cache.load(proofRequest, otherProof, () -> verify(verifications, false)).get());
+		assertEquals(false, cache.get(proofRequest, otherProof));
+	}
+
+	@Test
+	public void testBounds() throws Exception {
+		
+		VerificationCache cache = new VerificationCache(2, 50);
+		String proof = "{\"proof\":{}}";
+		
+		cache.put(proofRequest("1", null), proof, true);
+		cache.put(proofRequest("2", null), proof, true);
+		cache.put(proofRequest("3", null), proof, true);
+		assertEquals(2, cache.size());
+		assertNull(cache.get(proofRequest("1", null), proof));
+		assertEquals(true, cache.get(proofRequest("3", null), proof));
+		
+		// Results expire after the ttl
+		
+		Thread.sleep(100);
+		assertNull(cache.get(proofRequest("3", null), proof));
+	}
+
+	private CompletableFuture<Boolean> verify(AtomicInteger verifications, boolean result) {
+		verifications.incrementAndGet();
+		return CompletableFuture.completedFuture(result);
+	}
+
+	private String proofRequest(String nonce, Long to) {
+		return new ProofRequestBuilder("Job-Application", "0.1", nonce)
+			.attribute("attr1_referent", "first_name")
+			.nonRevoked(null, to)
+			.build();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.nessus.indy.utils.WalletCredentials;
+import io.nessus.indy.utils.WalletCredentials.KeyDerivation;
+import io.nessus.indy.utils.WalletKeyStore;
+
+public class WalletKeyStoreTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@Test
+	public void testStoredKeys() throws Exception {
+		
+		WalletKeyStore keyStore = new WalletKeyStore(new File(tmp.getRoot(), "keys"));
+		assertNull(keyStore.getKey("Faber"));
+		
+		keyStore.putKey("Faber", "3x8nPWHBnNGkPLoJHSuwYvkhSkD8VUNLtqVN9WJBr3Ai");
+		assertEquals("3x8nPWHBnNGkPLoJHSuwYvkhSkD8VUNLtqVN9WJBr3Ai", keyStore.getKey("Faber"));
+		
+		File keyFile = new File(keyStore.getDirectory(), "Faber.key");
+		assertTrue(keyFile.canRead());
+		
+		JSONObject json = new JSONObject(keyStore.getCredentials("Faber").toJson());
+		assertEquals("RAW", json.getString("key_derivation_method"));
+		
+		assertTrue(keyStore.deleteKey("Faber"));
+		assertFalse(keyFile.exists());
+	}
+	
+	@Test
+	public void testCredentialsJson() throws Exception {
+		
+		WalletCredentials credentials = WalletCredentials.argon2iInt("passphrase")
+				.withRekey("3x8nPWHBnNGkPLoJHSuwYvkhSkD8VUNLtqVN9WJBr3Ai", KeyDerivation.RAW);
+		
+		JSONObject json = new JSONObject(credentials.toJson());
+		assertEquals("passphrase", json.getString("key"));
+		assertEquals("ARGON2I_INT", json.getString("key_derivation_method"));
+		assertEquals("RAW", json.getString("rekey_derivation_method"));
+		
+		// The key does not show up in logs
+		
+		assertFalse(credentials.toString().contains("passphrase"));
+	}
+	
+	@Test
+	public void testRekeyDefaultDerivation() throws Exception {
+		
+		// Without a derivation the new key is derived like the old one
+		
+		WalletCredentials credentials = WalletCredentials.argon2iInt("passphrase").withRekey("other", null);
+		
+		JSONObject json = new JSONObject(credentials.toJson());
+		assertEquals("other", json.getString("rekey"));
+		assertEquals("ARGON2I_INT", json.getString("rekey_derivation_method"));
+	}
+	
+	@Test
+	public void testOwnerOnlyPermissions() throws Exception {
+		
+		File dir = new File(tmp.getRoot(), "keys");
+		Assume.assumeTrue(Files.getFileAttributeView(tmp.getRoot().toPath(), PosixFileAttributeView.class) != null);
+		
+		WalletKeyStore keyStore = new WalletKeyStore(dir);
+		keyStore.putKey("Faber", "3x8nPWHBnNGkPLoJHSuwYvkhSkD8VUNLtqVN9WJBr3Ai");
+		
+		File keyFile = new File(keyStore.getDirectory(), "Faber.key");
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(keyFile.toPath())));
+		assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.toPath())));
+		
+		// No temporary key file is left behind
+		
+		assertEquals(1, dir.list().length);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * Wildfly Camel :: Testsuite
+ * %%
+ * Copyright (C) 2013 - 2014 RedHat
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package io.nessus.indy.test.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.UUID;
+
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import io.nessus.indy.utils.WalletManager;
+
+public class WalletManagerTest {
+
+	@Test
+	public void testLeaseAndEvict() throws Exception {
+		
+		String configA = walletConfig();
+		String configB = walletConfig();
+		String key = new JSONObject().put("key", "wallet_key").toString();
+		Wallet.createWallet(configA, key).get();
+		Wallet.createWallet(configB, key).get();
+		
+		try (WalletManager walletManager = new WalletManager(1, WalletManager.DEFAULT_IDLE_TIMEOUT)) {
+			
+			// Concurrent leases share the same handle
+			
+			Wallet wallet;
+			try (WalletManager.Lease lease1 = walletManager.lease(configA, key); WalletManager.Lease lease2 = walletManager.lease(configA, key)) {
+				wallet = lease1.getWallet();
+				assertSame(wallet, lease2.getWallet());
+				
+				// Other credentials do not get the open handle
+				
+				try {
+					walletManager.lease(configA, new JSONObject().put("key", "other_key").toString());
+					fail("IllegalArgumentException expected");
+				} catch (IllegalArgumentException ex) {
+					// expected
+				}
+			}
+			
+			// An idle handle is reused
+			
+			try (WalletManager.Lease lease = walletManager.lease(configA, key)) {
+				assertSame(wallet, lease.getWallet());
+			}
+			
+			// Leasing a second wallet closes the least recently used idle one
+			
+			try (WalletManager.Lease lease = walletManager.lease(configB, key)) {
+				assertEquals(1, walletManager.getOpenCount());
+			}
+			
+			try (WalletManager.Lease lease = walletManager.lease(configA, key)) {
+				assertNotSame(wallet, lease.getWallet());
+			}
+			
+		} finally {
+			Wallet.deleteWallet(configA, key).get();
+			Wallet.deleteWallet(configB, key).get();
+		}
+	}
+
+	@Test
+	public void testIdleClose() throws Exception {
+		
+		String config = walletConfig();
+		String key = new JSONObject().put("key", "wallet_key").toString();
+		Wallet.createWallet(config, key).get();
+		
+		try (WalletManager walletManager = new WalletManager(WalletManager.DEFAULT_MAX_OPEN, 200L)) {
+			
+			Wallet wallet;
+			try (WalletManager.Lease lease = walletManager.lease(config, key)) {
+				wallet = lease.getWallet();
+			}
+			assertEquals(1, walletManager.getOpenCount());
+			
+			// The released handle is closed after the idle timeout
+			
+			long deadline = System.currentTimeMillis() + 5000;
+			while (walletManager.getOpenCount() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, walletManager.getOpenCount());
+			
+			try (WalletManager.Lease lease = walletManager.lease(config, key)) {
+				assertNotSame(wallet, lease.getWallet());
+			}
+			
+		} finally {
+			Wallet.deleteWallet(config, key).get();
+		}
+	}
+
+	private String walletConfig() {
+		return new JSONObject().put("id", "Wallet-" + UUID.randomUUID()).toString();
+	}
+}
@@ -0,0 +1,404 @@
+package io.nessus.indy.test.support;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.nessus.indy.utils.LedgerTransport;
+import io.nessus.indy.utils.PoolUtils;
+
+/**
+ * An in-process stand-in for an indy pool, for performance tests of the client layer without a running pool.
+ *
+ * It does not speak the node wire protocol. Instead it plugs in as {@link LedgerTransport} and understands the
+ * request json that libindy builds and signs. Replies use the json layout that the libindy parse functions expect.
+ *
+ * Supported are NYM, SCHEMA, CRED_DEF, REVOC_REG_DEF, REVOC_REG_ENTRY and the corresponding GET requests.
+ * Signatures and permissions are not checked. As on a real pool, a registry entry is rejected unless its previous
+ * accumulator is the current one. Every reply is delayed by the configured latency plus random jitter.
+ */
+public class FakeLedger implements LedgerTransport, AutoCloseable {
+
+	public static final String NYM = "1";
+	public static final String GET_NYM = "105";
+	public static final String SCHEMA = "101";
+	public static final String GET_SCHEMA = "107";
+	public static final String CRED_DEF = "102";
+	public static final String GET_CRED_DEF = "108";
+	public static final String REVOC_REG_DEF = "113";
+	public static final String REVOC_REG_ENTRY = "114";
+	public static final String GET_REVOC_REG_DEF = "115";
+	public static final String GET_REVOC_REG = "116";
+	public static final String GET_REVOC_REG_DELTA = "117";
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final List<JSONObject> nodeTxns = new ArrayList<>();
+
+	private final Map<String, JSONObject> nyms = new HashMap<>();
+	private final Map<String, JSONObject> schemas = new HashMap<>();
+	private final Map<Integer, String> schemaIds = new HashMap<>();
+	private final Map<String, JSONObject> credDefs = new HashMap<>();
+	private final Map<String, JSONObject> revRegDefs = new HashMap<>();
+	private final Map<String, List<JSONObject>> revRegEntries = new HashMap<>();
+
+	private final ScheduledExecutorService scheduler;
+
+	private volatile long latency;
+	private volatile long jitter;
+	private int seqNo;
+
+	/**
+	 * Create a fake ledger from the genesis txns that {@link PoolUtils} provides.
+	 */
+	public FakeLedger() throws IOException {
+		this(PoolUtils.getGenesisTxnFile());
+	}
+
+	public FakeLedger(File genesisFile) throws IOException {
+		for (String line : FileUtils.readLines(genesisFile, StandardCharsets.UTF_8)) {
+			if (!line.trim().isEmpty()) {
+				nodeTxns.add(new JSONObject(line));
+			}
+		}
+		scheduler = Executors.newScheduledThreadPool(1, r -> {
+			Thread thread = new Thread(r, "FakeLedger");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * The aliases of the validator nodes in the genesis txns.
+	 */
+	public List<String> getNodeAliases() {
+		List<String> result = new ArrayList<>();
+		for (JSONObject txn : nodeTxns) {
+			result.add(txn.getJSONObject("txn").getJSONObject("data").getJSONObject("data").getString("alias"));
+		}
+		return result;
+	}
+
+	/**
+	 * Set the base latency and the maximum random jitter that is added to every reply.
+	 */
+	public void setLatency(long latency, long jitter, TimeUnit unit) {
+		this.latency = unit.toMicros(latency);
+		this.jitter = unit.toMicros(jitter);
+	}
+
+	public synchronized int getSeqNo() {
+		return seqNo;
+	}
+
+	@Override
+	public CompletableFuture<String> submit(String request) {
+		String response = handle(request);
+		CompletableFuture<String> future = new CompletableFuture<>();
+		long delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+		if (delay > 0) {
+			scheduler.schedule(() -> future.complete(response), delay, TimeUnit.MICROSECONDS);
+		} else {
+			future.complete(response);
+		}
+		return future;
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	synchronized String handle(String request) {
+		JSONObject req;
+		try {
+			req = new JSONObject(request);
+		} catch (RuntimeException ex) {
+			return reqnack(null, "Invalid request json");
+		}
+		JSONObject op = req.optJSONObject("operation");
+		if (op == null)
+			return reqnack(req, "Missing operation");
+
+		String type = op.optString("type");
+		long txnTime = System.currentTimeMillis() / 1000;
+		switch (type) {
+			case NYM:
+				return nym(req, op, txnTime);
+			case GET_NYM:
+				return getNym(req, op);
+			case SCHEMA:
+				return schema(req, op, txnTime);
+			case GET_SCHEMA:
+				return getSchema(req, op);
+			case CRED_DEF:
+				return credDef(req, op, txnTime);
+			case GET_CRED_DEF:
+				return getCredDef(req, op);
+			case REVOC_REG_DEF:
+				return revRegDef(req, op, txnTime);
+			case GET_REVOC_REG_DEF:
+				return getRevRegDef(req, op);
+			case REVOC_REG_ENTRY:
+				return revRegEntry(req, op, txnTime);
+			case GET_REVOC_REG:
+				return getRevReg(req, op);
+			case GET_REVOC_REG_DELTA:
+				return getRevRegDelta(req, op);
+			default:
+				log.warn("Unsupported txn type: {}", type);
+				return reqnack(req, "Unsupported txn type: " + type);
+		}
+	}
+
+	private String nym(JSONObject req, JSONObject op, long txnTime) {
+		String dest = op.getString("dest");
+		JSONObject nym = nyms.get(dest);
+		if (nym == null) {
+			nym = new JSONObject().put("dest", dest).put("identifier", req.optString("identifier"));
+			nyms.put(dest, nym);
+		}
+		if (op.has("verkey")) nym.put("verkey", op.get("verkey"));
+		if (op.has("role")) nym.put("role", op.get("role"));
+		nym.put("seqNo", ++seqNo).put("txnTime", txnTime);
+		return writeReply(req, op, txnTime);
+	}
+
+	private String getNym(JSONObject req, JSONObject op) {
+		JSONObject nym = nyms.get(op.getString("dest"));
+		JSONObject result = readResult(req, op, nym);
+		if (nym != null) {
+			result.put("data", nym.toString());
+		}
+		return reply(result);
+	}
+
+	private String schema(JSONObject req, JSONObject op, long txnTime) {
+		JSONObject data = op.getJSONObject("data");
+		String dest = req.getString("identifier");
+		String id = dest + ":2:" + data.getString("name") + ":" + data.getString("version");
+		if (schemas.containsKey(id))
+			return reject(req, "Schema already exists: " + id);
+		schemas.put(id, new JSONObject().put("dest", dest).put("data", data).put("seqNo", ++seqNo).put("txnTime", txnTime));
+		schemaIds.put(seqNo, id);
+		return writeReply(req, op, txnTime);
+	}
+
+	private String getSchema(JSONObject req, JSONObject op) {
+		JSONObject data = op.getJSONObject("data");
+		String id = op.getString("dest") + ":2:" + data.getString("name") + ":" + data.getString("version");
+		JSONObject schema = schemas.get(id);
+		JSONObject result = readResult(req, op, schema).put("dest", op.getString("dest"));
+		result.put("data", schema != null ? schema.getJSONObject("data") : data);
+		return reply(result);
+	}
+
+	private String credDef(JSONObject req, JSONObject op, long txnTime) {
+		String id = credDefId(req.getString("identifier"), op);
+		if (!schemaIds.containsKey(op.getInt("ref")))
+			return reject(req, "Schema not found: " + op.get("ref"));
+		if (credDefs.containsKey(id))
+			return reject(req, "Credential definition already exists: " + id);
+		credDefs.put(id, new JSONObject().put("data", op.getJSONObject("data")).put("seqNo", ++seqNo).put("txnTime", txnTime));
+		return writeReply(req, op, txnTime);
+	}
+
+	private String getCredDef(JSONObject req, JSONObject op) {
+		String id = credDefId(op.getString("origin"), op);
+		JSONObject credDef = credDefs.get(id);
+		JSONObject result = readResult(req, op, credDef);
+		for (String key : new String[] { "ref", "signature_type", "origin", "tag" }) {
+			result.put(key, op.opt(key));
+		}
+		result.put("data", credDef != null ? credDef.getJSONObject("data") : JSONObject.NULL);
+		return reply(result);
+	}
+
+	private String revRegDef(JSONObject req, JSONObject op, long txnTime) {
+		String id = op.getString("id");
+		if (!credDefs.containsKey(op.getString("credDefId")))
+			return reject(req, "Credential definition not found: " + op.get("credDefId"));
+		if (revRegDefs.containsKey(id))
+			return reject(req, "Revocation registry already exists: " + id);
+		JSONObject data = new JSONObject(op.toString());
+		data.remove("type");
+		data.put("ver", "1.0");
+		revRegDefs.put(id, new JSONObject().put("data", data).put("seqNo", ++seqNo).put("txnTime", txnTime));
+		revRegEntries.put(id, new ArrayList<>());
+		return writeReply(req, op, txnTime);
+	}
+
+	private String getRevRegDef(JSONObject req, JSONObject op) {
+		JSONObject revRegDef = revRegDefs.get(op.getString("id"));
+		JSONObject result = readResult(req, op, revRegDef).put("id", op.getString("id"));
+		result.put("data", revRegDef != null ? revRegDef.getJSONObject("data") : JSONObject.NULL);
+		return reply(result);
+	}
+
+	private String revRegEntry(JSONObject req, JSONObject op, long txnTime) {
+		String id = op.getString("revocRegDefId");
+		List<JSONObject> entries = revRegEntries.get(id);
+		if (entries == null)
+			return reject(req, "Revocation registry not found: " + id);
+		JSONObject value = op.getJSONObject("value");
+		if (!entries.isEmpty()) {
+			Object accum = entries.get(entries.size() - 1).getJSONObject("value").get("accum");
+			if (!String.valueOf(accum).equals(value.optString("prevAccum", null)))
+				return reject(req, "Previous accumulator does not match: " + id);
+		}
+		entries.add(new JSONObject().put("value", value).put("seqNo", ++seqNo).put("txnTime", txnTime));
+		return writeReply(req, op, txnTime);
+	}
+
+	private String getRevReg(JSONObject req, JSONObject op) {
+		String id = op.getString("revocRegDefId");
+		JSONObject entry = entryAt(id, op.getLong("timestamp"));
+		JSONObject result = readResult(req, op, entry).put("revocRegDefId", id);
+		if (entry != null) {
+			result.put("data", accumData(id, entry));
+		}
+		return reply(result);
+	}
+
+	private String getRevRegDelta(JSONObject req, JSONObject op) {
+		String id = op.getString("revocRegDefId");
+		long to = op.getLong("to");
+		long from = op.optLong("from", -1);
+
+		JSONObject entryTo = entryAt(id, to);
+		JSONObject result = readResult(req, op, entryTo).put("revocRegDefId", id);
+		if (entryTo == null)
+			return reply(result);
+
+		JSONObject entryFrom = from >= 0 ? entryAt(id, from) : null;
+		Map<Integer, Boolean> stateTo = stateAt(id, to);
+		Map<Integer, Boolean> stateFrom = entryFrom != null ? stateAt(id, from) : Collections.emptyMap();
+
+		Set<Integer> issued = new TreeSet<>();
+		Set<Integer> revoked = new TreeSet<>();
+		for (Map.Entry<Integer, Boolean> en : stateTo.entrySet()) {
+			Boolean prev = stateFrom.get(en.getKey());
+			if (en.getValue() && !Boolean.TRUE.equals(prev)) issued.add(en.getKey());
+			if (!en.getValue() && !Boolean.FALSE.equals(prev)) revoked.add(en.getKey());
+		}
+
+		JSONObject value = new JSONObject()
+				.put("accum_to", accumData(id, entryTo))
+				.put("issued", new JSONArray(issued))
+				.put("revoked", new JSONArray(revoked));
+		if (entryFrom != null) {
+			value.put("accum_from", accumData(id, entryFrom));
+		}
+		result.put("data", new JSONObject()
+				.put("revocDefType", "CL_ACCUM")
+				.put("revocRegDefId", id)
+				.put("value", value));
+		return reply(result);
+	}
+
+	// The last registry entry at or before the given time
+	private JSONObject entryAt(String id, long timestamp) {
+		JSONObject result = null;
+		for (JSONObject entry : revRegEntries.getOrDefault(id, Collections.emptyList())) {
+			if (entry.getLong("txnTime") <= timestamp) result = entry;
+		}
+		return result;
+	}
+
+	// Credential index to issued (true) or revoked (false) at the given time
+	private Map<Integer, Boolean> stateAt(String id, long timestamp) {
+		Map<Integer, Boolean> state = new TreeMap<>();
+		for (JSONObject entry : revRegEntries.getOrDefault(id, Collections.emptyList())) {
+			if (entry.getLong("txnTime") > timestamp) break;
+			JSONObject value = entry.getJSONObject("value");
+			JSONArray issued = value.optJSONArray("issued");
+			JSONArray revoked = value.optJSONArray("revoked");
+			for (int i = 0; issued != null && i < issued.length(); i++) state.put(issued.getInt(i), true);
+			for (int i = 0; revoked != null && i < revoked.length(); i++) state.put(revoked.getInt(i), false);
+		}
+		return state;
+	}
+
+	private JSONObject accumData(String id, JSONObject entry) {
+		return new JSONObject()
+				.put("revocDefType", "CL_ACCUM")
+				.put("revocRegDefId", id)
+				.put("txnTime", entry.getLong("txnTime"))
+				.put("seqNo", entry.getInt("seqNo"))
+				.put("value", new JSONObject().put("accum", entry.getJSONObject("value").get("accum")));
+	}
+
+	private String credDefId(String origin, JSONObject op) {
+		return origin + ":3:" + op.optString("signature_type", "CL") + ":" + op.get("ref") + ":" + op.getString("tag");
+	}
+
+	private JSONObject readResult(JSONObject req, JSONObject op, JSONObject found) {
+		JSONObject result = new JSONObject()
+				.put("type", op.getString("type"))
+				.put("identifier", req.opt("identifier"))
+				.put("reqId", req.opt("reqId"))
+				.put("data", JSONObject.NULL)
+				.put("seqNo", found != null ? found.get("seqNo") : JSONObject.NULL)
+				.put("txnTime", found != null ? found.get("txnTime") : JSONObject.NULL)
+				.put("state_proof", new JSONObject());
+		return result;
+	}
+
+	private String writeReply(JSONObject req, JSONObject op, long txnTime) {
+		JSONObject data = new JSONObject(op.toString());
+		data.remove("type");
+		JSONObject txn = new JSONObject()
+				.put("type", op.getString("type"))
+				.put("data", data)
+				.put("protocolVersion", req.opt("protocolVersion"))
+				.put("metadata", new JSONObject()
+						.put("from", req.opt("identifier"))
+						.put("reqId", req.opt("reqId")));
+		JSONObject result = new JSONObject()
+				.put("ver", "1")
+				.put("txn", txn)
+				.put("txnMetadata", new JSONObject().put("seqNo", seqNo).put("txnTime", txnTime))
+				.put("reqSignature", new JSONObject());
+		return reply(result);
+	}
+
+	private String reply(JSONObject result) {
+		return new JSONObject().put("op", "REPLY").put("result", result).toString();
+	}
+
+	private String reject(JSONObject req, String reason) {
+		return nack("REJECT", req, reason);
+	}
+
+	private String reqnack(JSONObject req, String reason) {
+		return nack("REQNACK", req, reason);
+	}
+
+	private String nack(String op, JSONObject req, String reason) {
+		return new JSONObject()
+				.put("op", op)
+				.put("identifier", req != null ? req.opt("identifier") : JSONObject.NULL)
+				.put("reqId", req != null ? req.opt("reqId") : JSONObject.NULL)
+				.put("reason", reason)
+				.toString();
+	}
+}
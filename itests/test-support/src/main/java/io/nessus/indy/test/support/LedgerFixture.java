@@ -0,0 +1,170 @@
+package io.nessus.indy.test.support;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.hyperledger.indy.sdk.anoncreds.Anoncreds;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreCredentialDefResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateAndStoreRevocRegResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.IssuerCreateSchemaResult;
+import org.hyperledger.indy.sdk.anoncreds.AnoncredsResults.ProverCreateCredentialRequestResult;
+import org.hyperledger.indy.sdk.did.Did;
+import org.hyperledger.indy.sdk.ledger.Ledger;
+import org.hyperledger.indy.sdk.wallet.Wallet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import io.nessus.indy.utils.ArtifactCache;
+import io.nessus.indy.utils.EnvironmentUtils;
+import io.nessus.indy.utils.IndyClient;
+import io.nessus.indy.utils.IndyMetrics;
+import io.nessus.indy.utils.TailsStore;
+
+/**
+ * A {@link FakeLedger}, a client for it and a fresh wallet with one DID that acts as issuer and prover.
+ *
+ * The wallet id is unique, so that a run that crashed before deleting its wallet does not break the next one.
+ * The client has its own artifact cache and metrics.
+ */
+public class LedgerFixture implements AutoCloseable {
+
+	private final FakeLedger ledger;
+	private final IndyClient client;
+	private final TailsStore tailsStore;
+	private final String walletConfig;
+	private final String walletKey;
+	private final Wallet wallet;
+	private final String did;
+	private String masterSecretId;
+
+	public LedgerFixture(String name) throws Exception {
+		walletConfig = new JSONObject().put("id", name + "-" + UUID.randomUUID()).toString();
+		walletKey = new JSONObject().put("key", "ledger_fixture_key").toString();
+		Wallet.createWallet(walletConfig, walletKey).get();
+		wallet = Wallet.openWallet(walletConfig, walletKey).get();
+		did = Did.createAndStoreMyDid(wallet, "{}").get().getDid();
+		ledger = new FakeLedger();
+		client = new IndyClient(ledger, new ArtifactCache(ArtifactCache.DEFAULT_CAPACITY), new IndyMetrics());
+		tailsStore = new TailsStore(EnvironmentUtils.getIndyHomePath("tails"), true);
+	}
+
+	public FakeLedger getLedger() {
+		return ledger;
+	}
+
+	public IndyClient getClient() {
+		return client;
+	}
+
+	public TailsStore getTailsStore() {
+		return tailsStore;
+	}
+
+	public Wallet getWallet() {
+		return wallet;
+	}
+
+	public String getDid() {
+		return did;
+	}
+
+	/**
+	 * Create and publish a schema.
+	 *
+	 * @return the schema id
+	 */
+	public String createSchema(String name, String version, String... attrNames) throws Exception {
+		IssuerCreateSchemaResult result = Anoncreds.issuerCreateSchema(did, name, version, new JSONArray(Arrays.asList(attrNames)).toString()).get();
+		submit(Ledger.buildSchemaRequest(did, result.getSchemaJson()).get());
+		return result.getSchemaId();
+	}
+
+	/**
+	 * Create and publish a cred def for the given published schema.
+	 */
+	public IssuerCreateAndStoreCredentialDefResult createCredDef(String schemaId, String tag, boolean supportRevocation) throws Exception {
+		// The cred def needs the schema as read from the ledger, which carries the seqNo
+		String schemaJson = client.getSchema(did, schemaId).get();
+		String configJson = new JSONObject().put("support_revocation", supportRevocation).toString();
+		IssuerCreateAndStoreCredentialDefResult result = Anoncreds.issuerCreateAndStoreCredentialDef(wallet, did, schemaJson, tag, null, configJson).get();
+		submit(Ledger.buildCredDefRequest(did, result.getCredDefJson()).get());
+		return result;
+	}
+
+	/**
+	 * Create a revocation registry for the given cred def and publish its definition and first entry.
+	 */
+	public IssuerCreateAndStoreRevocRegResult createRevocReg(String credDefId, String tag, int maxCredNum) throws Exception {
+		String configJson = new JSONObject().put("issuance_type", "ISSUANCE_ON_DEMAND").put("max_cred_num", maxCredNum).toString();
+		IssuerCreateAndStoreRevocRegResult result = Anoncreds.issuerCreateAndStoreRevocReg(wallet, did, null, tag, credDefId, configJson, tailsStore.openWriter()).get();
+		submit(Ledger.buildRevocRegDefRequest(did, result.getRevRegDefJson()).get());
+		submit(Ledger.buildRevocRegEntryRequest(did, result.getRevRegId(), "CL_ACCUM", result.getRevRegEntryJson()).get());
+		return result;
+	}
+
+	/**
+	 * Create a credential offer for the given cred def and the request of the prover for it.
+	 */
+	public CredentialRequest createCredentialRequest(String credDefId) throws Exception {
+		if (masterSecretId == null) {
+			masterSecretId = Anoncreds.proverCreateMasterSecret(wallet, null).get();
+		}
+		String credDefJson = client.getCredDef(did, credDefId).get();
+		String credOffer = Anoncreds.issuerCreateCredentialOffer(wallet, credDefId).get();
+		ProverCreateCredentialRequestResult result = Anoncreds.proverCreateCredentialReq(wallet, did, credOffer, credDefJson, masterSecretId).get();
+		return new CredentialRequest(credOffer, result.getCredentialRequestJson(), result.getCredentialRequestMetadataJson());
+	}
+
+	/**
+	 * The prover master secret, which the first credential request creates.
+	 */
+	public String getMasterSecretId() {
+		return masterSecretId;
+	}
+
+	/**
+	 * Sign and submit the given request with the fixture DID.
+	 */
+	public String submit(String request) throws Exception {
+		return client.signAndSubmit(wallet, did, request).get();
+	}
+
+	@Override
+	public void close() throws Exception {
+		try {
+			tailsStore.close();
+			ledger.close();
+			wallet.closeWallet().get();
+		} finally {
+			Wallet.deleteWallet(walletConfig, walletKey).get();
+		}
+	}
+
+	/**
+	 * A credential offer and the prover's request for it.
+	 */
+	public static class CredentialRequest {
+
+		private final String credOfferJson;
+		private final String credReqJson;
+		private final String credReqMetadataJson;
+
+		CredentialRequest(String credOfferJson, String credReqJson, String credReqMetadataJson) {
+			this.credOfferJson = credOfferJson;
+			this.credReqJson = credReqJson;
+			this.credReqMetadataJson = credReqMetadataJson;
+		}
+
+		public String getCredOfferJson() {
+			return credOfferJson;
+		}
+
+		public String getCredReqJson() {
+			return credReqJson;
+		}
+
+		public String getCredReqMetadataJson() {
+			return credReqMetadataJson;
+		}
+	}
+}